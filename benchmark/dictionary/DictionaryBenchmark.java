@@ -0,0 +1,611 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures the wall-clock cost and allocation of the Dictionary operations,
+ * for every combination of implementation, size, key distribution, key type
+ * and operation. Each benchmark runs a number of untimed warmup iterations so
+ * that the JIT has compiled the code under test, followed by measured
+ * iterations of a fixed duration. Reported figures are the mean throughput in
+ * operations per second, the mean time per operation with its standard
+ * deviation across iterations, and the bytes allocated per operation by the
+ * benchmark thread.
+ *
+ * Arguments are name=value pairs, where a value may be a comma-separated
+ * list:
+ *
+ * <pre>
+ * impl=BINARY_SEARCH_TREE,RED_BLACK_TREE  (default: all)
+ * size=1000,10000                         (default: 1000,10000)
+ * dist=RANDOM,SORTED,ZIPFIAN              (default: all)
+ * key=STRING,INTEGER                      (default: all)
+ * op=PUT,GET,REMOVE,ITERATE               (default: all)
+ * warmup=3 iterations=5 time=500 seed=42  (time is per iteration, in ms)
+ * </pre>
+ *
+ * Setup work, such as filling the dictionary before timing removes, is
+ * excluded from both the time and the allocation figures.
+ *
+ * Hardware events such as cache misses are counted by running the benchmark
+ * under Linux perf, with the option perf=CONTROL,ACK naming the FIFOs given
+ * to perf's --control option. The counters are then enabled only around the
+ * timed part of each measured iteration, and the total number of operations
+ * timed is printed last, to divide the counts by. perf counts every thread
+ * of the JVM, and sums over every benchmark in a run, so run one at a time:
+ *
+ * <pre>
+ * mkfifo ctl ack
+ * perf stat -e cache-misses,L1-dcache-load-misses -D -1 \
+ *     --control fifo:ctl,ack java dictionary.DictionaryBenchmark \
+ *     impl=B_PLUS_TREE size=1000000 dist=RANDOM key=INTEGER op=GET \
+ *     perf=ctl,ack
+ * </pre>
+ *
+ * and the same with impl=BINARY_SEARCH_TREE, giving the misses per get of
+ * each.
+ */
+public class DictionaryBenchmark {
+
+    /**
+     * The dictionaries under test. A new implementation is benchmarked by
+     * adding a constant here.
+     */
+    public enum Implementation {
+        BINARY_SEARCH_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new BinarySearchTree<K, Integer>();
+            }
+        },
+        ORDERED_LINKED_LIST {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new OrderedLinkedList<K, Integer>();
+            }
+        },
+        LINKED_HASH_INDEXED {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new LinkedHashIndexedDictionary<K, Integer>();
+            }
+        },
+        RED_BLACK_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new RedBlackTree<K, Integer>();
+            }
+        },
+        SKIP_LIST {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new SkipListDictionary<K, Integer>(0.5, new Random());
+            }
+        },
+        B_PLUS_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new BPlusTreeDictionary<K, Integer>();
+            }
+        },
+        CONCURRENT {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new ConcurrentDictionary<K, Integer>();
+            }
+        },
+        SYNCHRONIZED_RED_BLACK_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new SynchronizedDictionary<K, Integer>(
+                        new RedBlackTree<K, Integer>());
+            }
+        },
+        PERSISTENT_BINARY_SEARCH_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new PersistentBinarySearchTree<K, Integer>();
+            }
+        },
+        /** Compared with RED_BLACK_TREE, the cost of recording metrics. */
+        INSTRUMENTED_RED_BLACK_TREE {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                return new InstrumentedDictionary<K, Integer>(
+                        new RedBlackTree<K, Integer>());
+            }
+        },
+        /**
+         * Stored in a temporary directory, with the default memtable of 65536
+         * keys, so only larger sizes measure flushing and compaction.
+         */
+        LSM {
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create() {
+                throw new UnsupportedOperationException("Needs a key codec");
+            }
+
+            @Override
+            <K extends Comparable<? super K>> Dictionary<K, Integer> create(
+                    Codec<K> keyCodec) {
+                try {
+                    File directory =
+                            Files.createTempDirectory("benchmark").toFile();
+                    // Deleted at exit once close() has left it empty.
+                    directory.deleteOnExit();
+                    return new LsmDictionary<K, Integer>(directory, keyCodec,
+                            Codecs.integerCodec());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+
+        abstract <K extends Comparable<? super K>> Dictionary<K, Integer>
+                create();
+
+        /**
+         * Creates a dictionary for keys of the codec's type, which only
+         * dictionaries that store their entries in files need.
+         */
+        <K extends Comparable<? super K>> Dictionary<K, Integer> create(
+                Codec<K> keyCodec) {
+            return create();
+        }
+    }
+
+    public enum KeyType {
+        STRING, INTEGER
+    }
+
+    public enum Operation {
+        /** Inserts every key into an empty dictionary. */
+        PUT,
+        /** Looks up keys in a full dictionary. */
+        GET,
+        /** Removes every key from a full dictionary. */
+        REMOVE,
+        /** Iterates over a full dictionary. */
+        ITERATE
+    }
+
+    // Consumes results so that the JIT cannot eliminate the work.
+    private static volatile int sink;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final long seed;
+    private final AllocationCounter allocations;
+    private final PerfControl perf;
+    private long countedOps;
+
+    public DictionaryBenchmark(int warmupIterations,
+            int measurementIterations, long iterationMillis, long seed) {
+        this(warmupIterations, measurementIterations, iterationMillis, seed,
+                null);
+    }
+
+    private DictionaryBenchmark(int warmupIterations,
+            int measurementIterations, long iterationMillis, long seed,
+            PerfControl perf) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1000000L;
+        this.seed = seed;
+        this.allocations = new AllocationCounter();
+        this.perf = perf;
+        this.countedOps = 0;
+    }
+
+    public static void main(String[] args) {
+        List<Implementation> impls = Arrays.asList(Implementation.values());
+        List<Integer> sizes = Arrays.asList(1000, 10000);
+        List<KeyDistribution> dists = Arrays.asList(KeyDistribution.values());
+        List<KeyType> keyTypes = Arrays.asList(KeyType.values());
+        List<Operation> ops = Arrays.asList(Operation.values());
+        int warmup = 3;
+        int iterations = 5;
+        long time = 500;
+        long seed = 42;
+        PerfControl perf = null;
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value: "
+                        + arg);
+            }
+            String name = arg.substring(0, eq);
+            String[] values = arg.substring(eq + 1).split(",");
+
+            if (name.equals("impl")) {
+                impls = parse(Implementation.class, values);
+            } else if (name.equals("size")) {
+                sizes = new ArrayList<Integer>();
+                for (String value : values) {
+                    sizes.add(Integer.parseInt(value));
+                }
+            } else if (name.equals("dist")) {
+                dists = parse(KeyDistribution.class, values);
+            } else if (name.equals("key")) {
+                keyTypes = parse(KeyType.class, values);
+            } else if (name.equals("op")) {
+                ops = parse(Operation.class, values);
+            } else if (name.equals("warmup")) {
+                warmup = Integer.parseInt(values[0]);
+            } else if (name.equals("iterations")) {
+                iterations = Integer.parseInt(values[0]);
+            } else if (name.equals("time")) {
+                time = Long.parseLong(values[0]);
+            } else if (name.equals("seed")) {
+                seed = Long.parseLong(values[0]);
+            } else if (name.equals("perf")) {
+                if (values.length != 2) {
+                    throw new IllegalArgumentException(
+                            "Expected perf=CONTROL,ACK");
+                }
+                perf = new PerfControl(new File(values[0]),
+                        new File(values[1]));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+
+        DictionaryBenchmark benchmark =
+                new DictionaryBenchmark(warmup, iterations, time, seed, perf);
+        System.out.println(Result.HEADER);
+        for (Implementation impl : impls) {
+            for (int size : sizes) {
+                for (KeyDistribution dist : dists) {
+                    for (KeyType keyType : keyTypes) {
+                        for (Operation op : ops) {
+                            System.out.println(benchmark.run(impl, size, dist,
+                                    keyType, op));
+                        }
+                    }
+                }
+            }
+        }
+        if (perf != null) {
+            System.out.println("Operations counted by perf: "
+                    + benchmark.countedOps);
+        }
+    }
+
+    private static <E extends Enum<E>> List<E> parse(Class<E> type,
+            String[] values) {
+        List<E> res = new ArrayList<E>();
+        for (String value : values) {
+            res.add(Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT)));
+        }
+        return res;
+    }
+
+    /**
+     * Runs a single benchmark.
+     *
+     * @return the measurements, averaged over the measured iterations
+     */
+    public Result run(Implementation impl, int size, KeyDistribution dist,
+            KeyType keyType, Operation op) {
+        Workload workload = new Workload(impl, size, dist, keyType, op);
+
+        switch (keyType) {
+        case STRING:
+            String[] strings = new String[size];
+            for (int i = 0; i < size; i++) {
+                // Zero-padded so that string order matches index order.
+                strings[i] = String.format("key-%010d", i);
+            }
+            return measure(impl.create(Codecs.stringCodec()), strings,
+                    workload);
+        default:
+            Integer[] integers = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                integers[i] = i;
+            }
+            return measure(impl.create(Codecs.integerCodec()), integers,
+                    workload);
+        }
+    }
+
+    private <K extends Comparable<? super K>> Result measure(
+            Dictionary<K, Integer> d, K[] keys, Workload workload) {
+        int n = keys.length;
+        int[] order = workload.dist.insertionOrder(n, new Random(seed));
+        int[] stream = workload.dist.accessStream(n, n, new Random(seed));
+
+        if (workload.op == Operation.GET || workload.op == Operation.ITERATE) {
+            fill(d, keys, order);
+        }
+
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(d, keys, order, stream, workload.op, false);
+        }
+
+        double[] nanosPerOp = new double[measurementIterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            long[] sample =
+                    iteration(d, keys, order, stream, workload.op, true);
+            totalOps += sample[0];
+            totalNanos += sample[1];
+            totalBytes += sample[2];
+            nanosPerOp[i] = (double) sample[1] / sample[0];
+        }
+
+        dispose(d);
+        return new Result(workload, totalOps, totalNanos,
+                allocations.isSupported() ? (double) totalBytes / totalOps
+                        : Double.NaN, stdDev(nanosPerOp));
+    }
+
+    // Deletes the files of a dictionary that stores its entries in them.
+    private static void dispose(Dictionary<?, ?> d) {
+        if (d instanceof Closeable) {
+            d.clear();
+            try {
+                ((Closeable) d).close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+     * Repeats the operation until the iteration time has elapsed. Returns the
+     * number of operations, the nanoseconds spent in them and the bytes they
+     * allocated. Hardware events are counted only if measured is true.
+     */
+    private <K extends Comparable<? super K>> long[] iteration(
+            Dictionary<K, Integer> d, K[] keys, int[] order, int[] stream,
+            Operation op, boolean measured) {
+        boolean counted = measured && perf != null;
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        long deadline = System.nanoTime() + iterationNanos;
+        int h = 0;
+
+        do {
+            if (op == Operation.PUT) {
+                d.clear();
+            } else if (op == Operation.REMOVE) {
+                d.clear();
+                fill(d, keys, order);
+            }
+
+            if (counted) {
+                perf.enable();
+            }
+            long startBytes = allocations.current();
+            long start = System.nanoTime();
+            switch (op) {
+            case PUT:
+                for (int index : order) {
+                    d.put(keys[index], index);
+                }
+                break;
+            case GET:
+                for (int index : stream) {
+                    h += d.get(keys[index]);
+                }
+                break;
+            case REMOVE:
+                for (int index : order) {
+                    d.remove(keys[index]);
+                }
+                break;
+            case ITERATE:
+                for (DictionaryEntry<K, Integer> entry : d) {
+                    h += entry.getValue();
+                }
+                break;
+            }
+            nanos += System.nanoTime() - start;
+            bytes += allocations.current() - startBytes;
+            if (counted) {
+                perf.disable();
+            }
+            ops += op == Operation.GET ? stream.length : keys.length;
+        } while (System.nanoTime() < deadline);
+
+        if (counted) {
+            countedOps += ops;
+        }
+
+        sink += h;
+        return new long[] { ops, nanos, bytes };
+    }
+
+    private static <K extends Comparable<? super K>> void fill(
+            Dictionary<K, Integer> d, K[] keys, int[] order) {
+        for (int index : order) {
+            d.put(keys[index], index);
+        }
+    }
+
+    private static double stdDev(double[] samples) {
+        double mean = 0;
+        for (double sample : samples) {
+            mean += sample;
+        }
+        mean /= samples.length;
+
+        double squares = 0;
+        for (double sample : samples) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        return samples.length > 1 ? Math.sqrt(squares / (samples.length - 1))
+                : 0;
+    }
+
+    // The parameters of a single benchmark.
+    private static class Workload {
+
+        private final Implementation impl;
+        private final int size;
+        private final KeyDistribution dist;
+        private final KeyType keyType;
+        private final Operation op;
+
+        public Workload(Implementation impl, int size, KeyDistribution dist,
+                KeyType keyType, Operation op) {
+            this.impl = impl;
+            this.size = size;
+            this.dist = dist;
+            this.keyType = keyType;
+            this.op = op;
+        }
+    }
+
+    /**
+     * The measurements of a single benchmark.
+     */
+    public static class Result {
+
+        private static final String HEADER = String.format(Locale.ROOT,
+                "%-28s %8s %-8s %-8s %-8s %14s %12s %10s %10s",
+                "Implementation", "Size", "Dist", "Key", "Op", "ops/s",
+                "ns/op", "error", "B/op");
+
+        private final Workload workload;
+        private final long ops;
+        private final long nanos;
+        private final double bytesPerOp;
+        private final double stdDev;
+
+        private Result(Workload workload, long ops, long nanos,
+                double bytesPerOp, double stdDev) {
+            this.workload = workload;
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytesPerOp = bytesPerOp;
+            this.stdDev = stdDev;
+        }
+
+        public double opsPerSecond() {
+            return ops * 1e9 / nanos;
+        }
+
+        public double nanosPerOp() {
+            return (double) nanos / ops;
+        }
+
+        /**
+         * @return the bytes allocated per operation, or NaN if the JVM does
+         *         not support per-thread allocation counting
+         */
+        public double bytesPerOp() {
+            return bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%-28s %8d %-8s %-8s %-8s %14.0f %12.2f %10.2f %10.2f",
+                    workload.impl, workload.size, workload.dist,
+                    workload.keyType, workload.op, opsPerSecond(),
+                    nanosPerOp(), stdDev, bytesPerOp);
+        }
+    }
+
+    /*
+     * Turns the counters of a perf stat process on and off through the FIFOs
+     * given to its --control option, waiting for each command to be
+     * acknowledged.
+     */
+    private static class PerfControl {
+
+        private final OutputStream control;
+        private final InputStream ack;
+
+        public PerfControl(File control, File ack) {
+            try {
+                this.control = new FileOutputStream(control);
+                this.ack = new FileInputStream(ack);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void enable() {
+            send("enable\n");
+        }
+
+        public void disable() {
+            send("disable\n");
+        }
+
+        private void send(String command) {
+            try {
+                control.write(command.getBytes(StandardCharsets.US_ASCII));
+                control.flush();
+                // perf replies "ack\n" followed by a NUL, which is skipped
+                // at the start of the next reply.
+                int c;
+                do {
+                    c = ack.read();
+                    if (c < 0) {
+                        throw new EOFException("perf closed its ack FIFO");
+                    }
+                } while (c != '\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /*
+     * Reads the number of bytes allocated by the current thread, where the
+     * JVM supports it.
+     */
+    private static class AllocationCounter {
+
+        private final com.sun.management.ThreadMXBean bean;
+
+        public AllocationCounter() {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            com.sun.management.ThreadMXBean counter = null;
+
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                counter = (com.sun.management.ThreadMXBean) threads;
+                if (counter.isThreadAllocatedMemorySupported()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                } else {
+                    counter = null;
+                }
+            }
+            this.bean = counter;
+        }
+
+        public boolean isSupported() {
+            return bean != null;
+        }
+
+        public long current() {
+            return bean == null ? 0 : bean.getThreadAllocatedBytes(Thread
+                    .currentThread().getId());
+        }
+    }
+}
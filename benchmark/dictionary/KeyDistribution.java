@@ -0,0 +1,115 @@
+package dictionary;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The order in which a benchmark touches the n keys of a dictionary. Keys are
+ * identified by their index 0..n-1 in ascending key order.
+ *
+ * Given two Randoms with the same seed, the keys that ZIPFIAN makes hottest in
+ * accessStream are the ones it puts first in insertionOrder.
+ */
+public enum KeyDistribution {
+
+    /** Every key is equally likely, in no particular order. */
+    RANDOM,
+
+    /** Keys in ascending order, which degenerates unbalanced trees. */
+    SORTED,
+
+    /**
+     * A few keys receive most of the accesses. Popularity is scattered over
+     * the key space rather than following key order, so hot keys are not all
+     * in one corner of a tree.
+     */
+    ZIPFIAN;
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    /**
+     * @param n
+     *            The number of keys
+     * @param random
+     *            A source of random data
+     * @return a permutation of 0..n-1 giving the order to insert the keys in
+     */
+    public int[] insertionOrder(int n, Random random) {
+        switch (this) {
+        case SORTED:
+            return identity(n);
+        default:
+            // For ZIPFIAN the permutation ranks the keys by popularity.
+            return permutation(n, random);
+        }
+    }
+
+    /**
+     * @param n
+     *            The number of keys
+     * @param count
+     *            The number of accesses to generate
+     * @param random
+     *            A source of random data
+     * @return count key indices in 0..n-1, in the order to access them
+     */
+    public int[] accessStream(int n, int count, Random random) {
+        int[] stream = new int[count];
+
+        switch (this) {
+        case SORTED:
+            for (int i = 0; i < count; i++) {
+                stream[i] = i % n;
+            }
+            break;
+        case RANDOM:
+            for (int i = 0; i < count; i++) {
+                stream[i] = random.nextInt(n);
+            }
+            break;
+        case ZIPFIAN:
+            int[] byPopularity = permutation(n, random);
+            double[] cdf = zipfCdf(n);
+            for (int i = 0; i < count; i++) {
+                int rank = Arrays.binarySearch(cdf, random.nextDouble());
+                rank = rank >= 0 ? rank : Math.min(-(rank + 1), n - 1);
+                stream[i] = byPopularity[rank];
+            }
+            break;
+        }
+        return stream;
+    }
+
+    private static int[] identity(int n) {
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
+    private static int[] permutation(int n, Random random) {
+        int[] indices = identity(n);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = indices[i];
+            indices[i] = indices[j];
+            indices[j] = tmp;
+        }
+        return indices;
+    }
+
+    // Cumulative probabilities of ranks 0..n-1, with rank r weighted 1/(r+1)^s.
+    private static double[] zipfCdf(int n) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+}
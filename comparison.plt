@@ -3,4 +3,8 @@ set xlabel "Dictionary Size"
 set ylabel "Average Number of Comparisons"
 set pointsize 0.35
 plot "BinarySearchTree.dat"   title "Binary Search Tree" with points lc rgb 'black', \
-     "OrderedLinkedList.dat"  title "Ordered Linked List" with points lc rgb 'black'
+     "OrderedLinkedList.dat"  title "Ordered Linked List" with points lc rgb 'black', \
+     "RedBlackTree.dat"       title "Red-Black Tree" with points lc rgb 'black', \
+     "SkipListDictionary.dat" title "Skip List" with points lc rgb 'black', \
+     "BPlusTreeDictionary.dat" title "B+ Tree" with points lc rgb 'black', \
+     "LinkedHashIndexedDictionary.dat" title "Linked Hash Indexed" with points lc rgb 'black'
@@ -0,0 +1,571 @@
+package dictionary;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/*
+ * B+tree based implementation of the Dictionary interface. Each node holds up
+ * to fanOut - 1 keys in a contiguous array, so a search touches one node per
+ * level of a tree that is only log_fanOut(n) deep, and binary searches within
+ * the node rather than chasing a pointer per comparison. Key-value pairs live
+ * only in the leaves, which are linked in ascending order so that iteration
+ * is a sequential scan. Internal nodes hold separator keys: every key in
+ * child i is less than keys[i], and every key in child i + 1 is greater than
+ * or equal to it. All leaves are at the same depth and every node except the
+ * root is at least half full. Duplicate keys are not permitted.
+ */
+public class BPlusTreeDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V> {
+
+    private static final int DEFAULT_FAN_OUT = 32;
+
+    private final int maxKeys;
+    private final int minKeys;
+    private Node root;
+    private int numElems;
+    private int modCount;
+
+    // Set by insert when a node splits, for the caller to link in.
+    private Object splitKey;
+    private Node splitNode;
+
+    public BPlusTreeDictionary() {
+        this(DEFAULT_FAN_OUT);
+    }
+
+    /**
+     * @param fanOut
+     *            the maximum number of children of an internal node, which is
+     *            also one more than the maximum number of entries in a leaf
+     */
+    public BPlusTreeDictionary(int fanOut) {
+        if (fanOut < 3) {
+            throw new IllegalArgumentException("Fan-out must be at least 3");
+        }
+
+        this.maxKeys = fanOut - 1;
+        this.minKeys = maxKeys / 2;
+        this.root = null;
+        this.numElems = 0;
+        this.modCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    /**
+     * @return the entry with the smallest key, or null if the dictionary is
+     *         empty
+     */
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        if (root == null) {
+            return null;
+        }
+
+        Node leaf = leftmostLeaf();
+        return new ImmutableDictionaryEntry<K, V>(key(leaf, 0),
+                value(leaf, 0));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        Node node = root;
+
+        if (node != null) {
+            while (!node.leaf) {
+                node = node.children[childIndex(node, key)];
+            }
+
+            int index = search(node, key);
+            if (index >= 0) {
+                return value(node, index);
+            }
+        }
+        throw new NoSuchElementException("Key not found");
+    }
+
+    /*
+     * Binary search over the keys of a node. Returns the index of the key if
+     * present, or (-(insertion point) - 1) otherwise.
+     */
+    private int search(Node node, K key) {
+        int low = 0;
+        int high = node.count - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = key(node, mid).compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Index of the child of an internal node whose range contains the key.
+    private int childIndex(Node node, K key) {
+        int index = search(node, key);
+        return index >= 0 ? index + 1 : -(index + 1);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (root == null) {
+            root = new Node(true, maxKeys);
+        }
+
+        if (insert(root, key, value)) {
+            Node newRoot = new Node(false, maxKeys);
+            newRoot.keys[0] = splitKey;
+            newRoot.children[0] = root;
+            newRoot.children[1] = splitNode;
+            newRoot.count = 1;
+            root = newRoot;
+            splitKey = null;
+            splitNode = null;
+        }
+    }
+
+    /*
+     * Inserts into the subtree rooted at node. Returns true if the node had
+     * to split, in which case splitKey and splitNode hold the separator and
+     * the new right sibling.
+     */
+    private boolean insert(Node node, K key, V value) {
+        if (node.leaf) {
+            int index = search(node, key);
+            if (index >= 0) {
+                node.values[index] = value;
+                return false;
+            }
+
+            node.insertKey(-(index + 1), key, value, null);
+            numElems++;
+            modCount++;
+        } else {
+            int index = childIndex(node, key);
+            if (!insert(node.children[index], key, value)) {
+                return false;
+            }
+            node.insertKey(index, splitKey, null, splitNode);
+        }
+
+        if (node.count <= maxKeys) {
+            return false;
+        }
+        split(node);
+        return true;
+    }
+
+    private void split(Node node) {
+        Node right = new Node(node.leaf, maxKeys);
+        int mid = node.count / 2;
+
+        if (node.leaf) {
+            right.count = node.count - mid;
+            System.arraycopy(node.keys, mid, right.keys, 0, right.count);
+            System.arraycopy(node.values, mid, right.values, 0, right.count);
+            node.clearFrom(mid);
+            right.next = node.next;
+            node.next = right;
+            splitKey = right.keys[0];
+        } else {
+            // The middle key moves up rather than being copied.
+            right.count = node.count - mid - 1;
+            System.arraycopy(node.keys, mid + 1, right.keys, 0, right.count);
+            System.arraycopy(node.children, mid + 1, right.children, 0,
+                    right.count + 1);
+            splitKey = node.keys[mid];
+            node.clearFrom(mid);
+        }
+        splitNode = right;
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        if (!removeKey(key)) {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    private boolean removeKey(K key) {
+        if (root == null || !delete(root, key)) {
+            return false;
+        }
+
+        if (root.count == 0) {
+            root = root.leaf ? null : root.children[0];
+        }
+        numElems--;
+        modCount++;
+        return true;
+    }
+
+    private boolean delete(Node node, K key) {
+        if (node.leaf) {
+            int index = search(node, key);
+            if (index < 0) {
+                return false;
+            }
+            node.removeKey(index, index);
+            return true;
+        }
+
+        int index = childIndex(node, key);
+        Node child = node.children[index];
+        if (!delete(child, key)) {
+            return false;
+        }
+
+        if (child.count < minKeys) {
+            rebalance(node, index);
+        }
+        return true;
+    }
+
+    // Restores the minimum occupancy of parent's child at the given index.
+    private void rebalance(Node parent, int index) {
+        Node child = parent.children[index];
+        Node left = index > 0 ? parent.children[index - 1] : null;
+        Node right = index < parent.count ? parent.children[index + 1] : null;
+
+        if (left != null && left.count > minKeys) {
+            borrowFromLeft(parent, index, left, child);
+        } else if (right != null && right.count > minKeys) {
+            borrowFromRight(parent, index, child, right);
+        } else if (left != null) {
+            merge(parent, index - 1, left, child);
+        } else {
+            merge(parent, index, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Node parent, int index, Node left, Node child) {
+        int last = left.count - 1;
+
+        if (child.leaf) {
+            child.insertKey(0, left.keys[last], left.values[last], null);
+            parent.keys[index - 1] = child.keys[0];
+        } else {
+            System.arraycopy(child.children, 0, child.children, 1,
+                    child.count + 1);
+            child.children[0] = left.children[last + 1];
+            System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+            child.keys[0] = parent.keys[index - 1];
+            child.count++;
+            parent.keys[index - 1] = left.keys[last];
+        }
+        left.clearFrom(last);
+    }
+
+    private void borrowFromRight(Node parent, int index, Node child, Node right) {
+        if (child.leaf) {
+            child.keys[child.count] = right.keys[0];
+            child.values[child.count] = right.values[0];
+            child.count++;
+            right.removeKey(0, 0);
+            parent.keys[index] = right.keys[0];
+        } else {
+            child.keys[child.count] = parent.keys[index];
+            child.children[child.count + 1] = right.children[0];
+            child.count++;
+            parent.keys[index] = right.keys[0];
+            right.removeKey(0, 0);
+        }
+    }
+
+    // Moves all of right into left and drops the separator between them.
+    private void merge(Node parent, int sepIndex, Node left, Node right) {
+        if (left.leaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+            System.arraycopy(right.values, 0, left.values, left.count,
+                    right.count);
+            left.count += right.count;
+            left.next = right.next;
+        } else {
+            left.keys[left.count] = parent.keys[sepIndex];
+            System.arraycopy(right.keys, 0, left.keys, left.count + 1,
+                    right.count);
+            System.arraycopy(right.children, 0, left.children,
+                    left.count + 1, right.count + 1);
+            left.count += right.count + 1;
+        }
+        parent.removeKey(sepIndex, sepIndex + 1);
+    }
+
+    /**
+     * Adds the entries of the other dictionary. When it is large enough
+     * compared with this tree, the two are merged in one pass and the tree is
+     * bulk loaded from the merged entries.
+     */
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        if (!BulkOperations.worthRebuilding(numElems, other.size())) {
+            Dictionary.super.putAll(other);
+            return;
+        }
+
+        Object[] keys = new Object[numElems + other.size()];
+        Object[] values = new Object[keys.length];
+        int n = BulkOperations.merge(iterator(), other.iterator(), keys,
+                values);
+        rebuild(keys, values, n);
+    }
+
+    /**
+     * Removes the given keys. When there are enough of them compared with the
+     * size of the tree, they are sorted and removed in a single pass over the
+     * leaves, after which the tree is bulk loaded from the remaining entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Iterable<? extends K> keys) {
+        Object[] removed = BulkOperations.sortedKeys(keys);
+        if (!BulkOperations.worthRebuilding(numElems, removed.length)) {
+            boolean changed = false;
+            for (Object key : removed) {
+                changed |= removeKey((K) key);
+            }
+            return changed;
+        }
+
+        Object[] newKeys = new Object[numElems];
+        Object[] newValues = new Object[numElems];
+        int n = BulkOperations.retainAbsent(iterator(), removed, newKeys,
+                newValues);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(newKeys, newValues, n);
+        return true;
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single pass over the
+     * leaves, bulk loading the tree again if any were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        Object[] keys = new Object[numElems];
+        Object[] values = new Object[numElems];
+        int n = BulkOperations.retainUnless(iterator(), filter, keys, values);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(keys, values, n);
+        return true;
+    }
+
+    /*
+     * Replaces the tree with one built bottom-up from sorted arrays. Entries
+     * are spread evenly over as few leaves as will hold them, and each level
+     * of internal nodes is built the same way over the level below, so every
+     * node but the root is at least half full.
+     */
+    private void rebuild(Object[] keys, Object[] values, int n) {
+        root = null;
+        numElems = n;
+        modCount++;
+        if (n == 0) {
+            return;
+        }
+
+        int count = (n + maxKeys - 1) / maxKeys;
+        Node[] nodes = new Node[count];
+        Object[] lowest = new Object[count];
+        Node prev = null;
+        for (int i = 0, from = 0; i < count; i++) {
+            int to = (int) ((long) n * (i + 1) / count);
+            Node leaf = new Node(true, maxKeys);
+            leaf.count = to - from;
+            System.arraycopy(keys, from, leaf.keys, 0, leaf.count);
+            System.arraycopy(values, from, leaf.values, 0, leaf.count);
+            if (prev != null) {
+                prev.next = leaf;
+            }
+            prev = leaf;
+            nodes[i] = leaf;
+            lowest[i] = keys[from];
+            from = to;
+        }
+
+        // Each level is written over the start of the arrays of the level
+        // below, which is never overtaken.
+        while (count > 1) {
+            int parents = (count + maxKeys) / (maxKeys + 1);
+            for (int i = 0, from = 0; i < parents; i++) {
+                int to = (int) ((long) count * (i + 1) / parents);
+                Node node = new Node(false, maxKeys);
+                node.count = to - from - 1;
+                System.arraycopy(nodes, from, node.children, 0, to - from);
+                System.arraycopy(lowest, from + 1, node.keys, 0, node.count);
+                nodes[i] = node;
+                lowest[i] = lowest[from];
+                from = to;
+            }
+            count = parents;
+        }
+        root = nodes[0];
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        numElems = 0;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(Node node, int index) {
+        return (K) node.keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Node node, int index) {
+        return (V) node.values[index];
+    }
+
+    private Node leftmostLeaf() {
+        Node node = root;
+        while (!node.leaf) {
+            node = node.children[0];
+        }
+        return node;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private Node leaf;
+        private int index;
+        private int oldModCount;
+
+        public DictionaryIterator() {
+            this.leaf = root == null ? null : leftmostLeaf();
+            this.index = 0;
+            this.oldModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return leaf != null && index < leaf.count;
+        }
+
+        @Override
+        public DictionaryEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            DictionaryEntry<K, V> res =
+                    new ImmutableDictionaryEntry<K, V>(key(leaf, index),
+                            value(leaf, index));
+            if (++index == leaf.count) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+     * A node of the tree. Arrays have room for one key more than the maximum
+     * so that a node can overflow before it is split.
+     */
+    private static class Node {
+
+        private final boolean leaf;
+        private final Object[] keys;
+        private final Object[] values;
+        private final Node[] children;
+        private Node next;
+        private int count;
+
+        public Node(boolean leaf, int maxKeys) {
+            this.leaf = leaf;
+            this.keys = new Object[maxKeys + 1];
+            this.values = leaf ? new Object[maxKeys + 1] : null;
+            this.children = leaf ? null : new Node[maxKeys + 2];
+            this.count = 0;
+        }
+
+        /*
+         * Inserts a key at the given index, along with its value in a leaf or
+         * the child to its right in an internal node.
+         */
+        public void insertKey(int index, Object key, Object value, Node child) {
+            System.arraycopy(keys, index, keys, index + 1, count - index);
+            keys[index] = key;
+            if (leaf) {
+                System.arraycopy(values, index, values, index + 1, count
+                        - index);
+                values[index] = value;
+            } else {
+                System.arraycopy(children, index + 1, children, index + 2,
+                        count - index);
+                children[index + 1] = child;
+            }
+            count++;
+        }
+
+        /*
+         * Removes the key at keyIndex, along with its value in a leaf or the
+         * child at childIndex in an internal node.
+         */
+        public void removeKey(int keyIndex, int childIndex) {
+            System.arraycopy(keys, keyIndex + 1, keys, keyIndex, count
+                    - keyIndex - 1);
+            if (leaf) {
+                System.arraycopy(values, keyIndex + 1, values, keyIndex, count
+                        - keyIndex - 1);
+                values[count - 1] = null;
+            } else {
+                System.arraycopy(children, childIndex + 1, children,
+                        childIndex, count - childIndex);
+                children[count] = null;
+            }
+            keys[count - 1] = null;
+            count--;
+        }
+
+        // Truncates the node to its first n keys, releasing the rest.
+        public void clearFrom(int n) {
+            for (int i = n; i < count; i++) {
+                keys[i] = null;
+                if (leaf) {
+                    values[i] = null;
+                } else {
+                    children[i + 1] = null;
+                }
+            }
+            count = n;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package dictionary;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import java.util.Stack;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /*
  * Binary search tree based implementation of the Dictionary
@@ -13,18 +20,67 @@ import java.util.Stack;
  * contains only nodes whose key-attributes are greater than key. A
  * linear order is defined on keys through the Comparable interface.
  * Duplicate keys are not permitted.
+ *
+ * Every node also records its parent and the size of its subtree, so rank and
+ * select run in O(height) and range queries in O(height + k).
  */
 public class BinarySearchTree<K extends Comparable<? super K>, V> implements
-        Dictionary<K, V> {
+        NavigableDictionary<K, V>, BoundedLookupDictionary<K, V> {
+
+    // Bulk loads at least this large are built by parallel subtasks.
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
 
     private BinarySearchTreeEntry<K, V> root;
     private int numElems;
     private int modCount;
+    private double rebalanceFactor;
 
     public BinarySearchTree() {
         this.root = null;
         this.numElems = 0;
         this.modCount = 0;
+        this.rebalanceFactor = 0;
+    }
+
+    /**
+     * Builds a height-balanced tree from entries in O(n) time, calling
+     * compareTo once per entry to check that they are in order. Large inputs
+     * are built by parallel subtasks.
+     * 
+     * @param entries
+     *            An iterator returning entries in strictly ascending order by
+     *            key
+     * @param size
+     *            The number of entries the iterator returns
+     * @throws IllegalArgumentException
+     *             if the keys are not in strictly ascending order, or the
+     *             iterator returns fewer than size entries
+     */
+    public static <K extends Comparable<? super K>, V> BinarySearchTree<K, V>
+            fromSorted(Iterator<? extends DictionaryEntry<K, V>> entries,
+                    int size) {
+        BinarySearchTree<K, V> tree = new BinarySearchTree<K, V>();
+        tree.putAllSorted(entries, size);
+        return tree;
+    }
+
+    /*
+     * As fromSorted, but always builds the tree as the entries are consumed,
+     * without the arrays of keys and values the parallel build collects. This
+     * suits inputs that are produced sequentially anyway, such as entries
+     * decoded from a file, as the extra memory is then O(log n).
+     */
+    static <K extends Comparable<? super K>, V> BinarySearchTree<K, V>
+            fromSortedStream(Iterator<? extends DictionaryEntry<K, V>> entries,
+                    int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+
+        BinarySearchTree<K, V> tree = new BinarySearchTree<K, V>();
+        tree.root = new SortedBuilder<K, V>(entries).build(size);
+        tree.numElems = size;
+        return tree;
     }
 
     @Override
@@ -44,7 +100,7 @@ public class BinarySearchTree<K extends Comparable<? super K>, V> implements
 
     @Override
     public V get(K key) throws NoSuchElementException {
-        BinarySearchTreeEntry<K, V> node = checkEntry(root, key);
+        BinarySearchTreeEntry<K, V> node = checkEntry(key);
 
         if (node != null) {
             return node.getValue();
@@ -53,130 +109,782 @@ public class BinarySearchTree<K extends Comparable<? super K>, V> implements
         }
     }
 
-    private BinarySearchTreeEntry<K, V> checkEntry(
-            BinarySearchTreeEntry<K, V> node, K key) {
-        if (node == null) {
-            return null;
+    @Override
+    public V get(K key, int maxSteps) throws NoSuchElementException {
+        BinarySearchTreeEntry<K, V> node = root;
+
+        for (int steps = 0; node != null; steps++) {
+            if (steps == maxSteps) {
+                throw new ConcurrentModificationException("Lookup gave up");
+            }
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node.getValue();
+            }
+            node = cmp < 0 ? node.getLeft() : node.getRight();
         }
+        throw new NoSuchElementException("Key not found");
+    }
 
-        if (node.getKey().compareTo(key) == 0) {
-            return node;
-        } else if (node.getKey().compareTo(key) < 0) {
-            return checkEntry(node.getLeft(), key);
-        } else {
-            return checkEntry(node.getRight(), key);
+    private BinarySearchTreeEntry<K, V> checkEntry(K key) {
+        BinarySearchTreeEntry<K, V> node = root;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.getLeft() : node.getRight();
         }
+        return null;
     }
 
     @Override
     public void put(K key, V value) {
-        insertElem(root, key, value);
-    }
+        BinarySearchTreeEntry<K, V> parent = null;
+        BinarySearchTreeEntry<K, V> node = root;
+        int cmp = 0;
+        int depth = 0;
 
-    private BinarySearchTreeEntry<K, V> insertElem(
-            BinarySearchTreeEntry<K, V> node, K k, V v) {
-        if (node == null) {
-            if (root == null) {
-                root = new BinarySearchTreeEntry<K, V>(k, v);
-            } else {
-                node = new BinarySearchTreeEntry<K, V>(k, v);
+        while (node != null) {
+            cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                node.setValue(value);
+                return;
             }
-            numElems++;
-            modCount++;
-        } else if (node.getKey().compareTo(k) == 0) {
-            node.setValue(v);
-        } else if (node.getKey().compareTo(k) < 0) {
-            node.setRight(insertElem(node.getRight(), k, v));
+            parent = node;
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+            depth++;
+        }
+
+        BinarySearchTreeEntry<K, V> entry =
+                new BinarySearchTreeEntry<K, V>(key, value);
+        entry.setParent(parent);
+        if (parent == null) {
+            root = entry;
+        } else if (cmp < 0) {
+            parent.setLeft(entry);
         } else {
-            node.setLeft(insertElem(node.getLeft(), k, v));
+            parent.setRight(entry);
+        }
+
+        for (node = parent; node != null; node = node.getParent()) {
+            node.setSize(node.getSize() + 1);
+        }
+        numElems++;
+        modCount++;
+
+        if (rebalanceFactor > 0
+                && depth + 1 > rebalanceFactor
+                        * TreeStats.minimumHeight(numElems)) {
+            rebalanceAbove(entry);
         }
-        return node;
     }
 
     @Override
     public void remove(K key) throws NoSuchElementException {
-        deleteElem(root, key);
-    }
+        BinarySearchTreeEntry<K, V> node = find(key);
 
-    private BinarySearchTreeEntry<K, V> deleteElem(
-            BinarySearchTreeEntry<K, V> node, K key) {
         if (node == null) {
             throw new NoSuchElementException("Key not found");
-        } else if (node.getKey().compareTo(key) == 0) {
-            if (node.equals(root)) {
-                root = deleteNode(node);
-            } else {
-                node = deleteNode(node);
+        }
+        unlink(node);
+    }
+
+    private BinarySearchTreeEntry<K, V> find(Object key) {
+        BinarySearchTreeEntry<K, V> node = root;
+
+        while (node != null) {
+            int cmp = BulkOperations.compare(key, node.getKey());
+            if (cmp == 0) {
+                return node;
             }
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
 
-            modCount++;
-            numElems--;
-        } else if (node.getKey().compareTo(key) > 0) {
-            node.setLeft(deleteElem(node.getLeft(), key));
+    // Removes a node from the tree, updating the sizes of its ancestors.
+    private void unlink(BinarySearchTreeEntry<K, V> node) {
+        BinarySearchTreeEntry<K, V> parent = node.getParent();
+        BinarySearchTreeEntry<K, V> replacement = deleteNode(node);
+        if (replacement != null) {
+            replacement.setParent(parent);
+        }
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.getLeft() == node) {
+            parent.setLeft(replacement);
         } else {
-            node.setRight(deleteElem(node.getRight(), key));
+            parent.setRight(replacement);
         }
-        return node;
+
+        for (node = parent; node != null; node = node.getParent()) {
+            node.setSize(node.getSize() - 1);
+        }
+        modCount++;
+        numElems--;
     }
 
+    /*
+     * Returns the subtree that should take the place of node once it is
+     * removed. A node with two children is replaced by its in-order
+     * successor, which is unlinked from the right subtree without any further
+     * key comparisons.
+     */
     private BinarySearchTreeEntry<K, V> deleteNode(
             BinarySearchTreeEntry<K, V> node) {
-        if (node.getLeft() == null || node.getRight() == null) {
-            if (node.getLeft() == null) {
-                return node.getRight();
-            } else if (node.getRight() == null) {
-                return node.getLeft();
-            } else {
-                return null;
+        if (node.getLeft() == null) {
+            return node.getRight();
+        } else if (node.getRight() == null) {
+            return node.getLeft();
+        }
+
+        BinarySearchTreeEntry<K, V> successorParent = node;
+        BinarySearchTreeEntry<K, V> successor = node.getRight();
+        while (successor.getLeft() != null) {
+            successorParent = successor;
+            successor = successor.getLeft();
+        }
+
+        for (BinarySearchTreeEntry<K, V> p = successorParent; p != node; p =
+                p.getParent()) {
+            p.setSize(p.getSize() - 1);
+        }
+
+        if (successorParent != node) {
+            successorParent.setLeft(successor.getRight());
+            if (successor.getRight() != null) {
+                successor.getRight().setParent(successorParent);
             }
-        } else {
-            BinarySearchTreeEntry<K, V> newNode = findLeft(node.getRight());
-            BinarySearchTreeEntry<K, V> newRight = deleteLeft(node.getRight());
-            newNode.setRight(newRight);
-            newNode.setLeft(node.getLeft());
-            return newNode;
+            successor.setRight(node.getRight());
+            node.getRight().setParent(successor);
         }
+        successor.setLeft(node.getLeft());
+        node.getLeft().setParent(successor);
+        successor.setSize(node.getSize() - 1);
+        return successor;
     }
 
-    private BinarySearchTreeEntry<K, V> findLeft(
-            BinarySearchTreeEntry<K, V> node) {
-        if (node.getLeft() == null) {
-            return node;
+    /**
+     * @return the shape of the tree, found in one O(n) walk that follows
+     *         parent links and so needs no stack
+     */
+    public TreeStats stats() {
+        int[] levels = new int[8];
+        int height = 0;
+        BinarySearchTreeEntry<K, V> node = root;
+        BinarySearchTreeEntry<K, V> prev = null;
+        int depth = 0;
+
+        // A pre-order walk, which comes back up to each node from its children.
+        while (node != null) {
+            BinarySearchTreeEntry<K, V> up = node.getParent();
+            if (prev == up) {
+                if (depth == levels.length) {
+                    levels = Arrays.copyOf(levels, 2 * levels.length);
+                }
+                levels[depth]++;
+                height = Math.max(height, depth + 1);
+
+                if (node.getLeft() != null) {
+                    prev = node;
+                    node = node.getLeft();
+                    depth++;
+                    continue;
+                }
+            }
+            if (prev != node.getRight() && node.getRight() != null) {
+                prev = node;
+                node = node.getRight();
+                depth++;
+                continue;
+            }
+            prev = node;
+            node = up;
+            depth--;
+        }
+        return new TreeStats(Arrays.copyOf(levels, height));
+    }
+
+    /**
+     * Rebuilds the tree in place with the Day-Stout-Warren algorithm, so that
+     * it is as low as possible and every level but the last is full. This
+     * takes O(n) time and O(1) extra space, and makes no key comparisons.
+     */
+    public void rebalance() {
+        if (root != null) {
+            rebuildSubtree(root);
+        }
+    }
+
+    /**
+     * Sets whether put rebalances the tree. When the factor c is positive,
+     * a put that adds a node lower than c times the least possible height
+     * for the size rebuilds part of the tree. The part is the subtree of the
+     * lowest ancestor of the new node that is itself more than c times as
+     * high as it need be, as in a scapegoat tree, so the cost is amortised
+     * over the puts that made it unbalanced.
+     * 
+     * @param factor
+     *            The factor c, which must be greater than 1, or 0 to turn
+     *            automatic rebalancing off
+     */
+    public void setAutoRebalance(double factor) {
+        if (factor != 0 && !(factor > 1)) {
+            throw new IllegalArgumentException(
+                    "Rebalance factor must be greater than 1, or 0");
+        }
+        rebalanceFactor = factor;
+    }
+
+    // Rebuilds the subtree of the lowest ancestor of node that is too high.
+    private void rebalanceAbove(BinarySearchTreeEntry<K, V> node) {
+        int height = 1;
+        for (BinarySearchTreeEntry<K, V> a = node.getParent(); a != null; a =
+                a.getParent()) {
+            height++;
+            if (height > rebalanceFactor
+                    * TreeStats.minimumHeight(a.getSize())) {
+                rebuildSubtree(a);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Rebuilds the subtree rooted at top with the Day-Stout-Warren algorithm:
+     * right rotations first turn it into a vine, a list linked by right
+     * children, and then repeated left rotations of every other node compress
+     * the vine into a complete tree. A temporary node stands above the
+     * subtree so that the rotations never need to check for the top.
+     */
+    private void rebuildSubtree(BinarySearchTreeEntry<K, V> top) {
+        BinarySearchTreeEntry<K, V> parent = top.getParent();
+        boolean isLeft = parent != null && parent.getLeft() == top;
+
+        BinarySearchTreeEntry<K, V> pseudo =
+                new BinarySearchTreeEntry<K, V>(null, null);
+        pseudo.setRight(top);
+        int n = treeToVine(pseudo);
+
+        int leaves = n + 1 - Integer.highestOneBit(n + 1);
+        compress(pseudo, leaves);
+        for (int m = n - leaves; m > 1; m /= 2) {
+            compress(pseudo, m / 2);
+        }
+
+        BinarySearchTreeEntry<K, V> built = pseudo.getRight();
+        built.setParent(parent);
+        if (parent == null) {
+            root = built;
+        } else if (isLeft) {
+            parent.setLeft(built);
         } else {
-            return findLeft(node.getLeft());
+            parent.setRight(built);
         }
+        resize(built);
+        modCount++;
     }
 
-    private BinarySearchTreeEntry<K, V> deleteLeft(
-            BinarySearchTreeEntry<K, V> node) {
-        if (node.getLeft() == null) {
-            return node.getRight();
+    // Flattens the tree below pseudo into a vine and returns its length.
+    private static <K, V> int treeToVine(BinarySearchTreeEntry<K, V> pseudo) {
+        BinarySearchTreeEntry<K, V> tail = pseudo;
+        BinarySearchTreeEntry<K, V> rest = tail.getRight();
+        int n = 0;
+
+        while (rest != null) {
+            BinarySearchTreeEntry<K, V> left = rest.getLeft();
+            if (left == null) {
+                rest.setParent(tail);
+                tail = rest;
+                rest = rest.getRight();
+                n++;
+            } else {
+                rest.setLeft(left.getRight());
+                left.setRight(rest);
+                rest = left;
+                tail.setRight(left);
+            }
+        }
+        return n;
+    }
+
+    // Rotates left every other one of the first 2 * count nodes of the vine.
+    private static <K, V> void compress(BinarySearchTreeEntry<K, V> pseudo,
+            int count) {
+        BinarySearchTreeEntry<K, V> scanner = pseudo;
+        for (int i = 0; i < count; i++) {
+            BinarySearchTreeEntry<K, V> child = scanner.getRight();
+            BinarySearchTreeEntry<K, V> next = child.getRight();
+            scanner.setRight(next);
+            next.setParent(scanner);
+
+            BinarySearchTreeEntry<K, V> inner = next.getLeft();
+            child.setRight(inner);
+            if (inner != null) {
+                inner.setParent(child);
+            }
+            next.setLeft(child);
+            child.setParent(next);
+            scanner = next;
+        }
+    }
+
+    // Recomputes the subtree sizes below top in a post-order walk.
+    private static <K, V> void resize(BinarySearchTreeEntry<K, V> top) {
+        BinarySearchTreeEntry<K, V> node = top;
+        BinarySearchTreeEntry<K, V> prev = top.getParent();
+
+        while (true) {
+            BinarySearchTreeEntry<K, V> up = node.getParent();
+            if (prev == up && node.getLeft() != null) {
+                prev = node;
+                node = node.getLeft();
+                continue;
+            }
+            if (prev != node.getRight() && node.getRight() != null) {
+                prev = node;
+                node = node.getRight();
+                continue;
+            }
+
+            node.setSize(1 + BinarySearchTreeEntry.sizeOf(node.getLeft())
+                    + BinarySearchTreeEntry.sizeOf(node.getRight()));
+            if (node == top) {
+                return;
+            }
+            prev = node;
+            node = up;
+        }
+    }
+
+    /**
+     * Adds all of the given entries, replacing the values of any keys already
+     * present, and rebuilds the whole tree height-balanced. This takes
+     * O(n + size) time, calling compareTo once per entry to check the order
+     * of the input and at most once per entry to merge it with the tree.
+     * 
+     * @param entries
+     *            An iterator returning entries in strictly ascending order by
+     *            key
+     * @param size
+     *            The number of entries the iterator returns
+     * @throws IllegalArgumentException
+     *             if the keys are not in strictly ascending order, or the
+     *             iterator returns fewer than size entries
+     */
+    public void putAllSorted(Iterator<? extends DictionaryEntry<K, V>> entries,
+            int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+
+        if (isEmpty() && size < PARALLEL_THRESHOLD) {
+            root = new SortedBuilder<K, V>(entries).build(size);
+            numElems = size;
+            modCount++;
+            return;
+        }
+
+        // When there is nothing to merge with, the input is checked while the
+        // tree is built so that the comparisons can run in parallel.
+        boolean merging = !isEmpty();
+        Object[] keys = new Object[numElems + size];
+        Object[] values = new Object[numElems + size];
+        int n = merge(entries, size, keys, values, merging);
+
+        rebuild(keys, values, n, !merging);
+    }
+
+    // Replaces the tree with a balanced one built from sorted arrays.
+    private void rebuild(Object[] keys, Object[] values, int n, boolean check) {
+        BuildTask<K, V> task = new BuildTask<K, V>(keys, values, 0, n, check);
+        if (n < PARALLEL_THRESHOLD) {
+            root = task.compute();
         } else {
-            BinarySearchTreeEntry<K, V> newChild = deleteLeft(node.getLeft());
-            node.setLeft(newChild);
-            return node;
+            root = ForkJoinPool.commonPool().invoke(task);
         }
+        numElems = n;
+        modCount++;
     }
 
+    /**
+     * Adds the entries of the other dictionary. When it is large enough
+     * compared with this tree, the two are merged in one pass and the tree is
+     * rebuilt balanced, as by putAllSorted.
+     */
     @Override
-    public void clear() {
-        deleteAll(root);
+    public void putAll(Dictionary<K, ? extends V> other) {
+        if (!BulkOperations.worthRebuilding(numElems, other.size())) {
+            NavigableDictionary.super.putAll(other);
+            return;
+        }
+
+        Object[] keys = new Object[numElems + other.size()];
+        Object[] values = new Object[keys.length];
+        int n = BulkOperations.merge(iterator(), other.iterator(), keys,
+                values);
+        rebuild(keys, values, n, false);
     }
 
-    private void deleteAll(BinarySearchTreeEntry<K, V> node) {
-        if (node == null) {
-            return;
+    /**
+     * Removes the given keys. When there are enough of them compared with the
+     * size of the tree, they are sorted and removed in a single in-order pass
+     * that rebuilds the tree balanced.
+     */
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        Object[] removed = BulkOperations.sortedKeys(keys);
+        if (!BulkOperations.worthRebuilding(numElems, removed.length)) {
+            int oldSize = numElems;
+            for (Object key : removed) {
+                BinarySearchTreeEntry<K, V> node = find(key);
+                if (node != null) {
+                    unlink(node);
+                }
+            }
+            return numElems != oldSize;
+        }
+
+        Object[] newKeys = new Object[numElems];
+        Object[] newValues = new Object[numElems];
+        int n = BulkOperations.retainAbsent(iterator(), removed, newKeys,
+                newValues);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(newKeys, newValues, n, false);
+        return true;
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single in-order pass,
+     * rebuilding the tree balanced if any were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        Object[] keys = new Object[numElems];
+        Object[] values = new Object[numElems];
+        int n = BulkOperations.retainUnless(iterator(), filter, keys, values);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(keys, values, n, false);
+        return true;
+    }
+
+    /*
+     * Merges the tree's entries with the sorted input into the given arrays,
+     * returning the number of distinct keys.
+     */
+    private int merge(Iterator<? extends DictionaryEntry<K, V>> entries,
+            int size, Object[] keys, Object[] values, boolean check) {
+        Iterator<DictionaryEntry<K, V>> existing = iterator();
+        DictionaryEntry<K, V> old = existing.hasNext() ? existing.next() : null;
+        K prev = null;
+        int n = 0;
+
+        for (int i = 0; i < size; i++) {
+            DictionaryEntry<K, V> entry = nextSorted(entries);
+            K key = entry.getKey();
+            if (check && prev != null && prev.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("Keys are not in order");
+            }
+            prev = key;
+
+            int cmp = -1;
+            while (old != null && (cmp = old.getKey().compareTo(key)) < 0) {
+                keys[n] = old.getKey();
+                values[n++] = old.getValue();
+                old = existing.hasNext() ? existing.next() : null;
+            }
+
+            keys[n] = key;
+            values[n++] = entry.getValue();
+            if (old != null && cmp == 0) {
+                old = existing.hasNext() ? existing.next() : null;
+            }
+        }
+
+        while (old != null) {
+            keys[n] = old.getKey();
+            values[n++] = old.getValue();
+            old = existing.hasNext() ? existing.next() : null;
+        }
+        return n;
+    }
+
+    private static <K, V> DictionaryEntry<K, V> nextSorted(
+            Iterator<? extends DictionaryEntry<K, V>> entries) {
+        if (!entries.hasNext()) {
+            throw new IllegalArgumentException("Fewer entries than size");
+        }
+        return entries.next();
+    }
+
+    /*
+     * Builds a balanced tree by consuming entries from an iterator in order,
+     * creating the left subtree before each node and the right subtree after.
+     */
+    private static class SortedBuilder<K extends Comparable<? super K>, V> {
+
+        private final Iterator<? extends DictionaryEntry<K, V>> entries;
+        private K prev;
+
+        public SortedBuilder(
+                Iterator<? extends DictionaryEntry<K, V>> entries) {
+            this.entries = entries;
+            this.prev = null;
+        }
+
+        public BinarySearchTreeEntry<K, V> build(int n) {
+            if (n == 0) {
+                return null;
+            }
+
+            int leftSize = n / 2;
+            BinarySearchTreeEntry<K, V> left = build(leftSize);
+
+            DictionaryEntry<K, V> entry = nextSorted(entries);
+            K key = entry.getKey();
+            if (prev != null && prev.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("Keys are not in order");
+            }
+            prev = key;
+
+            BinarySearchTreeEntry<K, V> node =
+                    new BinarySearchTreeEntry<K, V>(key, entry.getValue());
+            return link(node, left, build(n - leftSize - 1));
+        }
+    }
+
+    /*
+     * Builds a balanced tree from a range of sorted arrays, forking subtasks
+     * for the two halves of large ranges. If asked to, each node's key is
+     * checked against the key before it, so every key but the first is
+     * compared exactly once.
+     */
+    private static class BuildTask<K extends Comparable<? super K>, V> extends
+            RecursiveTask<BinarySearchTreeEntry<K, V>> {
+
+        private static final long serialVersionUID = 1L;
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+        private final Object[] keys;
+        private final Object[] values;
+        private final int lo, hi;
+        private final boolean check;
+
+        public BuildTask(Object[] keys, Object[] values, int lo, int hi,
+                boolean check) {
+            this.keys = keys;
+            this.values = values;
+            this.lo = lo;
+            this.hi = hi;
+            this.check = check;
         }
 
-        if (node.getLeft() != null) {
-            deleteAll(node.getLeft());
+        @Override
+        public BinarySearchTreeEntry<K, V> compute() {
+            if (hi - lo <= SEQUENTIAL_THRESHOLD) {
+                return build(lo, hi);
+            }
+
+            int mid = (lo + hi) >>> 1;
+            BuildTask<K, V> left =
+                    new BuildTask<K, V>(keys, values, lo, mid, check);
+            BuildTask<K, V> right =
+                    new BuildTask<K, V>(keys, values, mid + 1, hi, check);
+            left.fork();
+            BinarySearchTreeEntry<K, V> node = node(mid);
+            BinarySearchTreeEntry<K, V> rightChild = right.compute();
+            return link(node, left.join(), rightChild);
         }
 
+        private BinarySearchTreeEntry<K, V> build(int from, int to) {
+            if (from == to) {
+                return null;
+            }
+
+            int mid = (from + to) >>> 1;
+            BinarySearchTreeEntry<K, V> node = node(mid);
+            return link(node, build(from, mid), build(mid + 1, to));
+        }
+
+        @SuppressWarnings("unchecked")
+        private BinarySearchTreeEntry<K, V> node(int index) {
+            K key = (K) keys[index];
+            if (check && index > 0
+                    && ((K) keys[index - 1]).compareTo(key) >= 0) {
+                throw new IllegalArgumentException("Keys are not in order");
+            }
+            return new BinarySearchTreeEntry<K, V>(key, (V) values[index]);
+        }
+    }
+
+    // Makes left and right the children of node, which must have none yet.
+    private static <K, V> BinarySearchTreeEntry<K, V> link(
+            BinarySearchTreeEntry<K, V> node, BinarySearchTreeEntry<K, V> left,
+            BinarySearchTreeEntry<K, V> right) {
+        node.setLeft(left);
+        node.setRight(right);
+        if (left != null) {
+            left.setParent(node);
+        }
+        if (right != null) {
+            right.setParent(node);
+        }
+        node.setSize(1 + BinarySearchTreeEntry.sizeOf(left)
+                + BinarySearchTreeEntry.sizeOf(right));
+        return node;
+    }
+
+    @Override
+    public BinarySearchTreeEntry<K, V> floor(K key) {
+        BinarySearchTreeEntry<K, V> node = root;
+        BinarySearchTreeEntry<K, V> best = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node;
+            } else if (cmp < 0) {
+                node = node.getLeft();
+            } else {
+                best = node;
+                node = node.getRight();
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public BinarySearchTreeEntry<K, V> ceiling(K key) {
+        BinarySearchTreeEntry<K, V> node = root;
+        BinarySearchTreeEntry<K, V> best = null;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node;
+            } else if (cmp < 0) {
+                best = node;
+                node = node.getLeft();
+            } else {
+                node = node.getRight();
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int rank(K key) {
+        BinarySearchTreeEntry<K, V> node = root;
+        int rank = 0;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp < 0) {
+                node = node.getLeft();
+            } else {
+                rank += BinarySearchTreeEntry.sizeOf(node.getLeft());
+                if (cmp == 0) {
+                    return rank;
+                }
+                rank++;
+                node = node.getRight();
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public BinarySearchTreeEntry<K, V> select(int index)
+            throws IndexOutOfBoundsException {
+        if (index < 0 || index >= numElems) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        BinarySearchTreeEntry<K, V> node = root;
+        while (true) {
+            int leftSize = BinarySearchTreeEntry.sizeOf(node.getLeft());
+            if (index < leftSize) {
+                node = node.getLeft();
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.getRight();
+            }
+        }
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> rangeIterator(K from, K to) {
+        return new RangeIterator(from, to);
+    }
+
+    /**
+     * Returns a spliterator that splits the tree by position. Each split finds
+     * the entry at the middle position of its range by descending through
+     * subtree sizes, so both halves are exactly sized, and traversal follows
+     * parent links without allocating.
+     */
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return new TreeSpliterator(null, 0, -1, 0);
+    }
+
+    /**
+     * Passes every key and value to the action in ascending order by key,
+     * following parent links without allocating.
+     *
+     * @throws ConcurrentModificationException
+     *             if the action modifies the tree
+     */
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        int expectedModCount = modCount;
+        for (BinarySearchTreeEntry<K, V> node = leftmost(root); node != null;
+                node = successor(node)) {
+            action.accept(node.getKey(), node.getValue());
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private static <K, V> BinarySearchTreeEntry<K, V> leftmost(
+            BinarySearchTreeEntry<K, V> node) {
+        if (node != null) {
+            while (node.getLeft() != null) {
+                node = node.getLeft();
+            }
+        }
+        return node;
+    }
+
+    // The entry after node in ascending order, found through parent links.
+    private static <K, V> BinarySearchTreeEntry<K, V> successor(
+            BinarySearchTreeEntry<K, V> node) {
         if (node.getRight() != null) {
-            deleteAll(node.getRight());
+            return leftmost(node.getRight());
         }
 
-        remove(node.getKey());
+        BinarySearchTreeEntry<K, V> parent = node.getParent();
+        while (parent != null && node == parent.getRight()) {
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        numElems = 0;
+        modCount++;
     }
 
     @Override
@@ -184,22 +892,23 @@ public class BinarySearchTree<K extends Comparable<? super K>, V> implements
         return new DictionaryIterator();
     }
 
+    /*
+     * Steps from each entry to its successor through parent links, so
+     * iteration allocates nothing beyond the iterator itself.
+     */
     private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
 
-        private BinarySearchTreeEntry<K, V> curr;
+        private BinarySearchTreeEntry<K, V> next;
         private int oldModCount;
-        Stack<BinarySearchTreeEntry<K, V>> nodes =
-                new Stack<BinarySearchTreeEntry<K, V>>();
-        private int count;
 
         public DictionaryIterator() {
-            this.curr = root;
+            this.next = leftmost(root);
             this.oldModCount = modCount;
         }
 
         @Override
         public boolean hasNext() {
-            return count < size();
+            return next != null;
         }
 
         @Override
@@ -208,18 +917,62 @@ public class BinarySearchTree<K extends Comparable<? super K>, V> implements
                 throw new ConcurrentModificationException();
             }
 
-            while (curr != null) {
-                nodes.push(curr);
-                curr = curr.getLeft();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            BinarySearchTreeEntry<K, V> res = next;
+            next = successor(res);
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /*
+     * Iterates over the keys in [from, to). The first key is found by one
+     * descent from the root, after which each step follows parent links to
+     * the successor and compares only its key against the upper bound.
+     */
+    private class RangeIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private final K to;
+        private BinarySearchTreeEntry<K, V> next;
+        private int oldModCount;
+
+        public RangeIterator(K from, K to) {
+            this.to = to;
+            this.next = bound(ceiling(from));
+            this.oldModCount = modCount;
+        }
+
+        private BinarySearchTreeEntry<K, V> bound(
+                BinarySearchTreeEntry<K, V> node) {
+            return node != null && node.getKey().compareTo(to) < 0 ? node
+                    : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public DictionaryEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
             }
 
-            BinarySearchTreeEntry<K, V> res = null;
-            if (!nodes.empty()) {
-                res = nodes.pop();
-                curr = res.getRight();
+            if (next == null) {
+                throw new NoSuchElementException();
             }
 
-            count++;
+            BinarySearchTreeEntry<K, V> res = next;
+            next = bound(successor(res));
             return res;
         }
 
@@ -227,6 +980,104 @@ public class BinarySearchTree<K extends Comparable<? super K>, V> implements
         public void remove() {
             throw new UnsupportedOperationException();
         }
+    }
+
+    /*
+     * Covers the entries at positions [index, fence). The fence is set from
+     * the size of the tree when the spliterator is first used.
+     */
+    private class TreeSpliterator implements
+            Spliterator<DictionaryEntry<K, V>> {
+
+        private BinarySearchTreeEntry<K, V> next;
+        private int index;
+        private int fence;
+        private int expectedModCount;
+
+        public TreeSpliterator(BinarySearchTreeEntry<K, V> next, int index,
+                int fence, int expectedModCount) {
+            this.next = next;
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        private int fence() {
+            if (fence < 0) {
+                fence = numElems;
+                expectedModCount = modCount;
+                next = index < fence ? select(index) : null;
+            }
+            return fence;
+        }
+
+        @Override
+        public boolean tryAdvance(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            if (index >= fence()) {
+                return false;
+            }
+
+            BinarySearchTreeEntry<K, V> entry = next;
+            next = successor(entry);
+            index++;
+            action.accept(entry);
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            int hi = fence();
+            BinarySearchTreeEntry<K, V> entry = next;
+
+            for (; index < hi; index++) {
+                action.accept(entry);
+                entry = successor(entry);
+            }
+            next = entry;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<DictionaryEntry<K, V>> trySplit() {
+            int hi = fence();
+            int lo = index;
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            int mid = (lo + hi) >>> 1;
+            if (mid <= lo) {
+                return null;
+            }
+
+            TreeSpliterator prefix =
+                    new TreeSpliterator(next, lo, mid, expectedModCount);
+            index = mid;
+            next = select(mid);
+            return prefix;
+        }
 
+        @Override
+        public long estimateSize() {
+            return fence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return EntrySpliterators.SORTED_ENTRIES | Spliterator.SIZED
+                    | Spliterator.SUBSIZED;
+        }
+
+        @Override
+        public Comparator<? super DictionaryEntry<K, V>> getComparator() {
+            return EntrySpliterators.keyOrder();
+        }
     }
 }
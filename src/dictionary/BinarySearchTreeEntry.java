@@ -7,7 +7,8 @@ public class BinarySearchTreeEntry<K, V> implements DictionaryEntry<K, V> {
 
     private K key;
     private V value;
-    private BinarySearchTreeEntry<K, V> left, right;
+    private BinarySearchTreeEntry<K, V> left, right, parent;
+    private int size;
 
     public BinarySearchTreeEntry(K key, V value,
             BinarySearchTreeEntry<K, V> left, BinarySearchTreeEntry<K, V> right) {
@@ -15,11 +16,24 @@ public class BinarySearchTreeEntry<K, V> implements DictionaryEntry<K, V> {
         this.value = value;
         this.left = left;
         this.right = right;
+        this.size = 1 + sizeOf(left) + sizeOf(right);
+        if (left != null) {
+            left.parent = this;
+        }
+        if (right != null) {
+            right.parent = this;
+        }
     }
 
     public BinarySearchTreeEntry(K key, V value) {
         this.key = key;
         this.value = value;
+        this.size = 1;
+    }
+
+    // The number of nodes in the subtree rooted at node.
+    public static int sizeOf(BinarySearchTreeEntry<?, ?> node) {
+        return node == null ? 0 : node.size;
     }
 
     public BinarySearchTreeEntry<K, V> getLeft() {
@@ -38,6 +52,22 @@ public class BinarySearchTreeEntry<K, V> implements DictionaryEntry<K, V> {
         right = r;
     }
 
+    public BinarySearchTreeEntry<K, V> getParent() {
+        return parent;
+    }
+
+    public void setParent(BinarySearchTreeEntry<K, V> p) {
+        parent = p;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int s) {
+        size = s;
+    }
+
     @Override
     public K getKey() {
         return key;
@@ -0,0 +1,73 @@
+package dictionary;
+
+/*
+ * A Bloom filter over keys, sized for an expected number of keys and a target
+ * false-positive rate. Each key sets k bits chosen by double hashing a 64-bit
+ * mix of its hashCode, so equal keys always set the same bits. A key that was
+ * added is always reported as possibly present; an absent key is reported as
+ * possibly present with roughly the target probability, once the filter holds
+ * the expected number of keys. Keys cannot be removed.
+ */
+final class BloomFilter<K> {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final int mask;
+    private final int hashes;
+
+    BloomFilter(int expectedKeys, double falsePositiveRate) {
+        // The optimal number of bits is -n ln p / (ln 2)^2, rounded up here to
+        // a power of two so that a probe is a mask rather than a division.
+        double optimal = -Math.max(expectedKeys, 1)
+                * Math.log(falsePositiveRate) / (LN2 * LN2);
+        int size = (int) Math.min(Math.max(optimal, 64), 1 << 30);
+        size = Integer.highestOneBit(size - 1) << 1;
+
+        this.bits = new long[size >>> 6];
+        this.mask = size - 1;
+        this.hashes = (int) Math.max(1,
+                Math.round(-Math.log(falsePositiveRate) / LN2));
+    }
+
+    /**
+     * Adds the key, returning false if all of its bits were already set, in
+     * which case it was probably added before.
+     */
+    boolean add(K key) {
+        long hash = spread(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            long bit = 1L << index;
+            if ((bits[index >>> 6] & bit) == 0) {
+                bits[index >>> 6] |= bit;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // False only if the key was never added.
+    boolean mightContain(K key) {
+        long hash = spread(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int index = (h1 + i * h2) & mask;
+            if ((bits[index >>> 6] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Spreads the 32 bits of a hash code over both halves of a long.
+    private static long spread(int h) {
+        long z = h * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 32)) * 0xBF58476D1CE4E5B9L;
+        return z ^ (z >>> 29);
+    }
+}
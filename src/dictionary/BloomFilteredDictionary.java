@@ -0,0 +1,230 @@
+package dictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+/*
+ * Decorator that keeps a Bloom filter of the keys in any Dictionary, so that
+ * most lookups of an absent key are answered by a few hash probes without
+ * searching the wrapped dictionary. A miss answered by the filter throws a
+ * new NoSuchElementException with no stack trace, since filling one in would
+ * cost more than the probes; a miss that gets past the filter throws whatever
+ * the wrapped dictionary throws.
+ *
+ * The filter is probed by hash while the wrapped dictionary matches keys by
+ * compareTo, so keys must implement equals and hashCode consistently with
+ * compareTo. Otherwise a key equal to a stored one under compareTo but with a
+ * different hash code can be reported missing.
+ *
+ * Keys cannot be taken out of a Bloom filter, so a removed key stays in it
+ * and its lookups fall through to the dictionary. Once the removals since the
+ * filter was built reach a quarter of the keys added to it, or the keys added
+ * outgrow the size it was built for, the filter is marked stale and rebuilt
+ * from the dictionary at the next get or remove, sized for twice the entries
+ * then present. The O(n) rebuild is paid for by the changes that made it
+ * necessary. Entries removed through an iterator are not counted.
+ *
+ * Because get may rebuild the filter, a filtered dictionary is modified by
+ * reads. It is not thread-safe, and must not be wrapped in a
+ * SynchronizedDictionary, whose reads run concurrently with each other.
+ */
+public class BloomFilteredDictionary<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V> {
+
+    private static final int DEFAULT_EXPECTED_ENTRIES = 1024;
+
+    private final Dictionary<K, V> dictionary;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+    private BloomFilter<K> filter;
+    private int capacity;
+    private int additions;
+    private int removals;
+    private long filteredCount;
+    private long falsePositiveCount;
+    private long rebuildCount;
+
+    /**
+     * Creates a filter over the dictionary sized for the default number of
+     * entries, which grows as entries are added.
+     *
+     * @param dictionary
+     *            The dictionary to hold the entries
+     * @param falsePositiveRate
+     *            The target fraction of absent keys that get past the filter,
+     *            between 0 and 1 exclusive
+     */
+    public BloomFilteredDictionary(Dictionary<K, V> dictionary,
+            double falsePositiveRate) {
+        this(dictionary, DEFAULT_EXPECTED_ENTRIES, falsePositiveRate);
+    }
+
+    /**
+     * Creates a filter over the dictionary, adding any entries it already
+     * holds.
+     *
+     * @param dictionary
+     *            The dictionary to hold the entries
+     * @param expectedEntries
+     *            The number of entries the filter is first sized for
+     * @param falsePositiveRate
+     *            The target fraction of absent keys that get past the filter,
+     *            between 0 and 1 exclusive
+     */
+    public BloomFilteredDictionary(Dictionary<K, V> dictionary,
+            int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries < 0) {
+            throw new IllegalArgumentException(
+                    "Expected entries must not be negative");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(
+                    "False positive rate must be between 0 and 1");
+        }
+
+        this.dictionary = dictionary;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        rebuild();
+        this.rebuildCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        return dictionary.getRoot();
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (!filter().mightContain(key)) {
+            filteredCount++;
+            throw new KeyNotFoundException();
+        }
+
+        try {
+            return dictionary.get(key);
+        } catch (NoSuchElementException e) {
+            falsePositiveCount++;
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        dictionary.put(key, value);
+        if (filter.add(key)) {
+            additions++;
+        }
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        if (!filter().mightContain(key)) {
+            throw new KeyNotFoundException();
+        }
+
+        dictionary.remove(key);
+        removals++;
+    }
+
+    @Override
+    public void clear() {
+        dictionary.clear();
+        capacity = expectedEntries;
+        filter = new BloomFilter<K>(capacity, falsePositiveRate);
+        additions = 0;
+        removals = 0;
+    }
+
+    // The filter, first rebuilding it if it has gone stale.
+    private BloomFilter<K> filter() {
+        if (removals > additions >>> 2 || additions > capacity) {
+            rebuild();
+        }
+        return filter;
+    }
+
+    private void rebuild() {
+        capacity = (int) Math.min(Math.max(expectedEntries,
+                2L * dictionary.size()), Integer.MAX_VALUE);
+        BloomFilter<K> fresh = new BloomFilter<K>(capacity, falsePositiveRate);
+        int added = 0;
+        for (DictionaryEntry<K, V> entry : dictionary) {
+            if (fresh.add(entry.getKey())) {
+                added++;
+            }
+        }
+
+        filter = fresh;
+        additions = added;
+        removals = 0;
+        rebuildCount++;
+    }
+
+    /**
+     * @return the number of lookups of absent keys answered by the filter
+     */
+    public long getFilteredCount() {
+        return filteredCount;
+    }
+
+    /**
+     * @return the number of lookups of absent keys that got past the filter
+     */
+    public long getFalsePositiveCount() {
+        return falsePositiveCount;
+    }
+
+    /**
+     * @return the number of times the filter has been rebuilt
+     */
+    public long getRebuildCount() {
+        return rebuildCount;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return dictionary.iterator();
+    }
+
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return dictionary.spliterator();
+    }
+
+    public String toString() {
+        return dictionary.toString();
+    }
+
+    // Thrown for every miss the filter answers. It never fills in a stack
+    // trace, which is most of the cost of creating an exception.
+    private static final class KeyNotFoundException extends
+            NoSuchElementException {
+
+        private static final long serialVersionUID = 1L;
+
+        KeyNotFoundException() {
+            super("Key not found");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dictionary;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A Dictionary whose reads may run while a writer changes it, as they do
+ * under an optimistic stamp in a SynchronizedDictionary. size() only reads a
+ * count, and a bounded get gives up after visiting a given number of entries,
+ * so neither can loop however the structure changes underneath it. While a
+ * writer runs, either may return a wrong answer or throw any
+ * RuntimeException, which the caller must discard.
+ *
+ * <K> is type for the comparable key element <V> is type for the associated
+ * value element
+ */
+public interface BoundedLookupDictionary<K extends Comparable<? super K>, V>
+        extends Dictionary<K, V> {
+
+    /**
+     * As get(key), but visits at most maxSteps entries. A lookup that is not
+     * changed underneath visits at most size() entries.
+     *
+     * @param key
+     *            The key to look up
+     * @param maxSteps
+     *            The number of entries after which to give up
+     * @return the value associated with the key
+     * @throws NoSuchElementException
+     *             if the key is not found
+     * @throws java.util.ConcurrentModificationException
+     *             if the lookup gives up
+     */
+    public V get(K key, int maxSteps) throws NoSuchElementException;
+
+}
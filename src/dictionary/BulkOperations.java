@@ -0,0 +1,131 @@
+package dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/*
+ * Helpers for the bulk operations of the dictionaries. Each one walks the
+ * entries of a dictionary once, in ascending order, and collects the entries
+ * that survive the operation into parallel arrays of keys and values, which
+ * the dictionary then rebuilds itself from in a single linear pass.
+ */
+final class BulkOperations {
+
+    private BulkOperations() {
+    }
+
+    /*
+     * Whether it is cheaper to rebuild a dictionary of the given size than to
+     * make the given number of changes to it by searching for each one.
+     */
+    static boolean worthRebuilding(int size, int changes) {
+        long total = (long) size + changes;
+        int log = 64 - Long.numberOfLeadingZeros(total);
+        return (long) changes * log >= total;
+    }
+
+    /*
+     * Merges two ascending sequences of entries into the given arrays,
+     * keeping the incoming value for keys in both, and returns the number of
+     * distinct keys. The arrays must have room for both sequences.
+     */
+    static <K extends Comparable<? super K>, V> int merge(
+            Iterator<? extends DictionaryEntry<K, V>> existing,
+            Iterator<? extends DictionaryEntry<K, ? extends V>> incoming,
+            Object[] keys, Object[] values) {
+        DictionaryEntry<K, V> old = existing.hasNext() ? existing.next() : null;
+        int n = 0;
+
+        while (incoming.hasNext()) {
+            DictionaryEntry<K, ? extends V> entry = incoming.next();
+            K key = entry.getKey();
+
+            int cmp = -1;
+            while (old != null && (cmp = old.getKey().compareTo(key)) < 0) {
+                keys[n] = old.getKey();
+                values[n++] = old.getValue();
+                old = existing.hasNext() ? existing.next() : null;
+            }
+
+            keys[n] = key;
+            values[n++] = entry.getValue();
+            if (old != null && cmp == 0) {
+                old = existing.hasNext() ? existing.next() : null;
+            }
+        }
+
+        while (old != null) {
+            keys[n] = old.getKey();
+            values[n++] = old.getValue();
+            old = existing.hasNext() ? existing.next() : null;
+        }
+        return n;
+    }
+
+    // The given keys in ascending order, possibly with duplicates.
+    static <K extends Comparable<? super K>> Object[] sortedKeys(
+            Iterable<? extends K> keys) {
+        List<K> list = new ArrayList<K>();
+        for (K key : keys) {
+            list.add(key);
+        }
+
+        Object[] sorted = list.toArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /*
+     * Copies the entries whose keys do not appear in the ascending array of
+     * removed keys into the given arrays, and returns how many there were.
+     */
+    static <K extends Comparable<? super K>, V> int retainAbsent(
+            Iterator<? extends DictionaryEntry<K, V>> entries,
+            Object[] removed, Object[] keys, Object[] values) {
+        int n = 0;
+        int r = 0;
+
+        while (entries.hasNext()) {
+            DictionaryEntry<K, V> entry = entries.next();
+            K key = entry.getKey();
+
+            int cmp = 1;
+            while (r < removed.length && (cmp = compare(removed[r], key)) < 0) {
+                r++;
+            }
+            if (cmp != 0 || r == removed.length) {
+                keys[n] = key;
+                values[n++] = entry.getValue();
+            }
+        }
+        return n;
+    }
+
+    /*
+     * Copies the entries that do not satisfy the filter into the given arrays,
+     * and returns how many there were.
+     */
+    static <K extends Comparable<? super K>, V> int retainUnless(
+            Iterator<? extends DictionaryEntry<K, V>> entries,
+            Predicate<? super DictionaryEntry<K, V>> filter, Object[] keys,
+            Object[] values) {
+        int n = 0;
+
+        while (entries.hasNext()) {
+            DictionaryEntry<K, V> entry = entries.next();
+            if (!filter.test(entry)) {
+                keys[n] = entry.getKey();
+                values[n++] = entry.getValue();
+            }
+        }
+        return n;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>> int compare(Object a, K b) {
+        return ((K) a).compareTo(b);
+    }
+}
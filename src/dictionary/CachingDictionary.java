@@ -0,0 +1,263 @@
+package dictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/*
+ * Bounded cache decorator for any Dictionary. Every entry has a weight, one by
+ * default, and entries chosen by the eviction policy are removed whenever a
+ * put would take the total weight over the maximum. An entry heavier than the
+ * maximum is never stored. The policy tracks the resident keys, so a lookup
+ * of an absent key is answered without searching the wrapped dictionary, and
+ * the bookkeeping for each access takes O(1) time.
+ *
+ * get counts a hit or a miss and updates the policy, so unlike the wrapped
+ * dictionaries a cache is modified by reads. It is not thread-safe, and must
+ * not be wrapped in a SynchronizedDictionary, whose reads run concurrently;
+ * share it between threads only under an external lock. Iteration returns
+ * the entries in ascending order by key and does not count as access.
+ */
+public class CachingDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V> {
+
+    private final Dictionary<K, V> dictionary;
+    private final long maximumWeight;
+    private final ToLongBiFunction<? super K, ? super V> weigher;
+    private final EvictionPolicy<K> policy;
+    private long weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a cache holding at most maximumSize entries. Entries already in
+     * the dictionary are kept if there is room.
+     *
+     * @param dictionary
+     *            The dictionary to hold the entries
+     * @param maximumSize
+     *            The maximum number of entries
+     * @param policy
+     *            The policy choosing which entries to evict, which must not
+     *            be shared with another cache
+     */
+    public CachingDictionary(Dictionary<K, V> dictionary, long maximumSize,
+            EvictionPolicy<K> policy) {
+        this(dictionary, maximumSize, null, policy);
+    }
+
+    /**
+     * Creates a cache whose entries weigh at most maximumWeight in total.
+     * Entries already in the dictionary are kept if there is room.
+     *
+     * @param dictionary
+     *            The dictionary to hold the entries
+     * @param maximumWeight
+     *            The maximum total weight of the entries
+     * @param weigher
+     *            Gives the non-negative weight of an entry, or null to give
+     *            every entry a weight of one
+     * @param policy
+     *            The policy choosing which entries to evict, which must not
+     *            be shared with another cache
+     */
+    public CachingDictionary(Dictionary<K, V> dictionary, long maximumWeight,
+            ToLongBiFunction<? super K, ? super V> weigher,
+            EvictionPolicy<K> policy) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException(
+                    "Maximum weight must not be negative");
+        }
+
+        this.dictionary = dictionary;
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+        this.weight = 0;
+
+        policy.clear();
+        for (DictionaryEntry<K, V> entry : dictionary) {
+            long w = weigh(entry.getKey(), entry.getValue());
+            policy.recordInsert(entry.getKey(), w);
+            weight += w;
+        }
+        evict();
+        this.evictionCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        return dictionary.getRoot();
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (!policy.contains(key)) {
+            missCount++;
+            policy.recordMiss(key);
+            throw new NoSuchElementException("Key not found");
+        }
+
+        hitCount++;
+        policy.recordHit(key);
+        return dictionary.get(key);
+    }
+
+    /**
+     * Returns the value associated with the key, first computing it and
+     * adding it to the cache if the key is absent. This counts as a single
+     * hit or miss.
+     *
+     * @param key
+     *            The key to look for inside the dictionary
+     * @param loader
+     *            Computes the value for an absent key
+     * @return the value associated with the key
+     */
+    public V getOrCompute(K key, Function<? super K, ? extends V> loader) {
+        if (policy.contains(key)) {
+            hitCount++;
+            policy.recordHit(key);
+            return dictionary.get(key);
+        }
+
+        missCount++;
+        policy.recordMiss(key);
+        V value = loader.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Associates the value with the key. Room for a new key is made before it
+     * is added, so the policy never chooses it as its own victim. An entry
+     * heavier than the maximum is counted as evicted at once, and only
+     * removes any older value for the key.
+     */
+    @Override
+    public void put(K key, V value) {
+        long w = weigh(key, value);
+
+        if (w > maximumWeight) {
+            if (policy.contains(key)) {
+                remove(key);
+            }
+            evictionCount++;
+        } else if (policy.contains(key)) {
+            dictionary.put(key, value);
+            weight += w - policy.recordUpdate(key, w);
+        } else {
+            while (weight > maximumWeight - w) {
+                evictOne();
+            }
+            dictionary.put(key, value);
+            policy.recordInsert(key, w);
+            weight += w;
+        }
+        evict();
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        if (!policy.contains(key)) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        dictionary.remove(key);
+        weight -= policy.recordRemove(key);
+    }
+
+    @Override
+    public void clear() {
+        dictionary.clear();
+        policy.clear();
+        weight = 0;
+    }
+
+    private long weigh(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+
+        long w = weigher.applyAsLong(key, value);
+        if (w < 0) {
+            throw new IllegalArgumentException("Negative weight for " + key);
+        }
+        return w;
+    }
+
+    private void evict() {
+        while (weight > maximumWeight) {
+            evictOne();
+        }
+    }
+
+    private void evictOne() {
+        K victim = policy.victim();
+        weight -= policy.recordRemove(victim);
+        dictionary.remove(victim);
+        evictionCount++;
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * @return the number of lookups that found their key
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that did not find their key
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries removed to keep within the maximum
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the fraction of lookups that found their key, or 1 if there
+     *         have been none
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 1.0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return dictionary.iterator();
+    }
+
+    public String toString() {
+        return dictionary.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package dictionary;
+
+/**
+ * Converts keys or values to and from a binary form, for dictionaries that
+ * keep their entries outside the Java heap. decode(encode(x)) must return an
+ * object equal to x, and for keys it must also compare equal to x.
+ * 
+ * <T> is the type of object converted
+ */
+public interface Codec<T> {
+
+    /**
+     * @param value
+     *            The object to convert
+     * @return the binary form of the object
+     */
+    public byte[] encode(T value);
+
+    /**
+     * @param bytes
+     *            The binary form of an object, as returned by encode
+     * @return an object equal to the one that was encoded
+     */
+    public T decode(byte[] bytes);
+
+}
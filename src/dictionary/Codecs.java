@@ -0,0 +1,114 @@
+package dictionary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs for common key and value types.
+ */
+public final class Codecs {
+
+    private static final Codec<String> STRING = new Codec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private static final Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(4).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt();
+        }
+    };
+
+    private static final Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(8).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong();
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * @return a codec storing strings as UTF-8
+     */
+    public static Codec<String> stringCodec() {
+        return STRING;
+    }
+
+    /**
+     * @return a codec storing integers as 4 big-endian bytes
+     */
+    public static Codec<Integer> integerCodec() {
+        return INTEGER;
+    }
+
+    /**
+     * @return a codec storing longs as 8 big-endian bytes
+     */
+    public static Codec<Long> longCodec() {
+        return LONG;
+    }
+
+    /**
+     * @return a codec using Java serialisation, for any Serializable type.
+     *         This is compact enough for values but slow, so keys with a
+     *         dedicated codec should use it instead.
+     */
+    public static <T extends Serializable> Codec<T> serializableCodec() {
+        return new Codec<T>() {
+            @Override
+            public byte[] encode(T value) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try {
+                    ObjectOutputStream out = new ObjectOutputStream(bytes);
+                    out.writeObject(value);
+                    out.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T decode(byte[] bytes) {
+                try {
+                    ObjectInputStream in =
+                            new ObjectInputStream(new ByteArrayInputStream(
+                                    bytes));
+                    return (T) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,307 @@
+package dictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Lock-free skip list based implementation of the Dictionary interface, safe
+ * for use by any number of threads without external synchronisation. Entries
+ * are linked in ascending order by key on every level they occupy, as in the
+ * SkipListDictionary, but every link is updated by compare-and-set. An entry
+ * is removed by first marking its forward references, top level first, after
+ * which any thread that walks past it helps to unlink it. get never writes to
+ * shared state and never retries.
+ *
+ * Iterators are weakly consistent: they never throw
+ * ConcurrentModificationException, return each entry at most once, and
+ * reflect every entry present for the whole of the iteration. size() is exact
+ * only when no updates are in progress. Duplicate keys are not permitted.
+ */
+public class ConcurrentDictionary<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final ConcurrentDictionaryEntry<K, V> head;
+    private final LongAdder numElems;
+
+    public ConcurrentDictionary() {
+        this.head = new ConcurrentDictionaryEntry<K, V>(null, null, MAX_LEVEL);
+        this.numElems = new LongAdder();
+    }
+
+    @Override
+    public int size() {
+        long n = numElems.sum();
+        return n < 0 ? 0 : (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public ConcurrentDictionaryEntry<K, V> getRoot() {
+        return successor(head);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return getRoot() == null;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        boolean[] marked = { false };
+        ConcurrentDictionaryEntry<K, V> pred = head;
+        ConcurrentDictionaryEntry<K, V> curr = null;
+        ConcurrentDictionaryEntry<K, V> bound = null;
+        int boundCmp = 1;
+
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            curr = pred.getNext(level).getReference();
+            while (curr != null) {
+                ConcurrentDictionaryEntry<K, V> succ =
+                        curr.getNext(level).get(marked);
+                if (marked[0]) {
+                    curr = succ;
+                    continue;
+                }
+
+                if (curr != bound) {
+                    int cmp = curr.getKey().compareTo(key);
+                    if (cmp < 0) {
+                        pred = curr;
+                        curr = succ;
+                        continue;
+                    }
+                    bound = curr;
+                    boundCmp = cmp;
+                }
+                break;
+            }
+        }
+
+        if (curr != null && curr == bound && boundCmp == 0) {
+            return curr.getValue();
+        } else {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    /*
+     * Fills preds and succs with the entries either side of the key on every
+     * level, unlinking any marked entries passed on the way. Returns true if
+     * succs[0] holds the key.
+     */
+    private boolean find(K key, ConcurrentDictionaryEntry<K, V>[] preds,
+            ConcurrentDictionaryEntry<K, V>[] succs) {
+        boolean[] marked = { false };
+
+        retry: while (true) {
+            ConcurrentDictionaryEntry<K, V> pred = head;
+            ConcurrentDictionaryEntry<K, V> curr = null;
+            ConcurrentDictionaryEntry<K, V> bound = null;
+            int boundCmp = 1;
+
+            for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+                curr = pred.getNext(level).getReference();
+                while (curr != null) {
+                    ConcurrentDictionaryEntry<K, V> succ =
+                            curr.getNext(level).get(marked);
+                    if (marked[0]) {
+                        if (!pred.getNext(level).compareAndSet(curr, succ,
+                                false, false)) {
+                            continue retry;
+                        }
+                        curr = succ;
+                        continue;
+                    }
+
+                    if (curr != bound) {
+                        int cmp = curr.getKey().compareTo(key);
+                        if (cmp < 0) {
+                            pred = curr;
+                            curr = succ;
+                            continue;
+                        }
+                        bound = curr;
+                        boundCmp = cmp;
+                    }
+                    break;
+                }
+                preds[level] = pred;
+                succs[level] = curr;
+            }
+            return curr != null && curr == bound && boundCmp == 0;
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        ConcurrentDictionaryEntry<K, V>[] preds = newTower();
+        ConcurrentDictionaryEntry<K, V>[] succs = newTower();
+        int topLevel = randomLevel();
+
+        while (true) {
+            if (find(key, preds, succs)) {
+                succs[0].setValue(value);
+                return;
+            }
+
+            ConcurrentDictionaryEntry<K, V> entry =
+                    new ConcurrentDictionaryEntry<K, V>(key, value, topLevel);
+            for (int level = 0; level < topLevel; level++) {
+                entry.getNext(level).set(succs[level], false);
+            }
+
+            // Linking the bottom level is the point at which the entry
+            // becomes part of the dictionary.
+            if (!preds[0].getNext(0).compareAndSet(succs[0], entry, false,
+                    false)) {
+                continue;
+            }
+            numElems.increment();
+
+            boolean[] marked = { false };
+            for (int level = 1; level < topLevel; level++) {
+                while (true) {
+                    ConcurrentDictionaryEntry<K, V> succ = succs[level];
+                    ConcurrentDictionaryEntry<K, V> curr =
+                            entry.getNext(level).get(marked);
+                    if (marked[0]) {
+                        // Already being removed, so stop raising the tower.
+                        return;
+                    }
+                    if (curr != succ
+                            && !entry.getNext(level).compareAndSet(curr, succ,
+                                    false, false)) {
+                        continue;
+                    }
+                    if (preds[level].getNext(level).compareAndSet(succ, entry,
+                            false, false)) {
+                        break;
+                    }
+                    find(key, preds, succs);
+                }
+            }
+            return;
+        }
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        ConcurrentDictionaryEntry<K, V>[] preds = newTower();
+        ConcurrentDictionaryEntry<K, V>[] succs = newTower();
+
+        if (!find(key, preds, succs)) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        ConcurrentDictionaryEntry<K, V> victim = succs[0];
+        boolean[] marked = { false };
+        for (int level = victim.getLevel() - 1; level >= 1; level--) {
+            ConcurrentDictionaryEntry<K, V> succ =
+                    victim.getNext(level).get(marked);
+            while (!marked[0]) {
+                victim.getNext(level).compareAndSet(succ, succ, false, true);
+                succ = victim.getNext(level).get(marked);
+            }
+        }
+
+        // Whichever thread marks the bottom level is the one that removed it.
+        ConcurrentDictionaryEntry<K, V> succ = victim.getNext(0).get(marked);
+        while (true) {
+            boolean removed =
+                    victim.getNext(0).compareAndSet(succ, succ, false, true);
+            succ = victim.getNext(0).get(marked);
+            if (removed) {
+                numElems.decrement();
+                find(key, preds, succs);
+                return;
+            } else if (marked[0]) {
+                throw new NoSuchElementException("Key not found");
+            }
+        }
+    }
+
+    /*
+     * Removes every entry present when the call begins. Entries added by other
+     * threads while it runs may survive.
+     */
+    @Override
+    public void clear() {
+        for (DictionaryEntry<K, V> entry : this) {
+            try {
+                remove(entry.getKey());
+            } catch (NoSuchElementException e) {
+                // Already removed by another thread.
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentDictionaryEntry<K, V>[] newTower() {
+        return (ConcurrentDictionaryEntry<K, V>[])
+                new ConcurrentDictionaryEntry<?, ?>[MAX_LEVEL];
+    }
+
+    // Geometric distribution with p = 1/2, capped at MAX_LEVEL.
+    private static int randomLevel() {
+        int bits = ThreadLocalRandom.current().nextInt();
+        return Integer.numberOfTrailingZeros(bits | (1 << (MAX_LEVEL - 1))) + 1;
+    }
+
+    private static <K, V> ConcurrentDictionaryEntry<K, V> successor(
+            ConcurrentDictionaryEntry<K, V> entry) {
+        ConcurrentDictionaryEntry<K, V> next = entry.getNext(0).getReference();
+        while (next != null && next.isMarked()) {
+            next = next.getNext(0).getReference();
+        }
+        return next;
+    }
+
+    /**
+     * Returns a weakly consistent spliterator, which reports CONCURRENT and
+     * is not SIZED since the size may change while it runs.
+     */
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return EntrySpliterators.fromIterator(this, false,
+                Spliterator.CONCURRENT);
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private ConcurrentDictionaryEntry<K, V> next;
+
+        public DictionaryIterator() {
+            this.next = successor(head);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ConcurrentDictionaryEntry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            ConcurrentDictionaryEntry<K, V> res = next;
+            next = successor(next);
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
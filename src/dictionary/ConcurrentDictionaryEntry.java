@@ -0,0 +1,60 @@
+package dictionary;
+
+import java.util.concurrent.atomic.AtomicMarkableReference;
+
+/*
+ * Implementation class representing towers of the lock-free skip list. The
+ * mark bit on each forward reference records that the entry has been
+ * logically removed from that level.
+ */
+public class ConcurrentDictionaryEntry<K, V> implements DictionaryEntry<K, V> {
+
+    private final K key;
+    private volatile V value;
+    private final AtomicMarkableReference<ConcurrentDictionaryEntry<K, V>>[] next;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentDictionaryEntry(K key, V value, int level) {
+        this.key = key;
+        this.value = value;
+        this.next = (AtomicMarkableReference<ConcurrentDictionaryEntry<K, V>>[])
+                new AtomicMarkableReference<?>[level];
+        for (int i = 0; i < level; i++) {
+            next[i] =
+                    new AtomicMarkableReference<ConcurrentDictionaryEntry<K, V>>(
+                            null, false);
+        }
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public void setValue(V newVal) {
+        this.value = newVal;
+    }
+
+    public int getLevel() {
+        return next.length;
+    }
+
+    public AtomicMarkableReference<ConcurrentDictionaryEntry<K, V>> getNext(
+            int level) {
+        return next[level];
+    }
+
+    // An entry is in the dictionary until it is marked on the bottom level.
+    public boolean isMarked() {
+        return next[0].isMarked();
+    }
+
+    public String toString() {
+        return key + " -> " + value;
+    }
+}
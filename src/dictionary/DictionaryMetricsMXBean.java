@@ -0,0 +1,26 @@
+package dictionary;
+
+/**
+ * The management interface of an InstrumentedDictionary. Each operation's
+ * metrics appear as a composite attribute holding its count, misses, miss
+ * rate and latency percentiles in nanoseconds.
+ */
+public interface DictionaryMetricsMXBean {
+
+    /**
+     * @return the number of entries in the dictionary
+     */
+    public int getSize();
+
+    public OperationMetrics getGet();
+
+    public OperationMetrics getPut();
+
+    public OperationMetrics getRemove();
+
+    /**
+     * Forgets every recorded metric.
+     */
+    public void reset();
+
+}
@@ -0,0 +1,68 @@
+package dictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ * Helpers for the dictionaries that keep numbered files in a directory, such
+ * as DurableDictionary's log segments and LsmDictionary's runs.
+ */
+final class Directories {
+
+    private Directories() {
+    }
+
+    /**
+     * Makes the creation, renaming and deletion of files in the directory
+     * durable, where the platform allows a directory to be forced. An
+     * interrupt is set again only once the directory is forced.
+     */
+    static void sync(File directory) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            FileChannel channel =
+                    FileChannel.open(directory.toPath(),
+                            StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // Not every platform can force a directory.
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return the numbers of the files in the directory named prefix, a
+     *         number and suffix, in ascending order
+     */
+    static long[] list(File directory, String prefix, String suffix) {
+        String[] names = directory.list();
+        long[] numbers = new long[names == null ? 0 : names.length];
+        int n = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            String name = names[i];
+            if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                try {
+                    numbers[n] =
+                            Long.parseLong(name.substring(prefix.length(),
+                                    name.length() - suffix.length()));
+                    n++;
+                } catch (NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        }
+        numbers = Arrays.copyOf(numbers, n);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+}
@@ -0,0 +1,856 @@
+package dictionary;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/*
+ * Decorator that makes any in-memory Dictionary survive a crash by appending
+ * each change to a write-ahead log before reporting it complete. The log and
+ * its checkpoints live in a directory of their own:
+ *
+ *   wal-N.log              log segments, numbered in the order written
+ *   checkpoint-N.snapshot  a SnapshotWriter snapshot of every change logged
+ *                          before segment N
+ *
+ * Opening the directory loads the newest checkpoint, with a sorted bulk load
+ * when the wrapped dictionary is a BinarySearchTree, and replays the segments
+ * after it. Each record holds its length and a CRC32 of its contents, so a
+ * record torn by a crash in the middle of a write is detected; replay stops
+ * there and the torn tail is cut off. Damage anywhere but the end of the last
+ * segment means the log is corrupt, and opening it fails.
+ *
+ * A segment is closed and a new one started once it reaches segmentSize
+ * bytes. Every checkpointSegments segments, the dictionary is checkpointed:
+ * it is written to a new snapshot and the segments and checkpoints it makes
+ * obsolete are deleted, so the log does not grow without bound and replay
+ * stays short. The checkpoint is written by the thread whose put filled the
+ * segment, and holds up other writers while it runs.
+ *
+ * How soon a change is forced to disk is set by the Durability:
+ *
+ *   SYNC      each change returns only once its record is forced. Threads
+ *             that write concurrently share forces: the first to wait forces
+ *             every record appended so far, and the rest wait for it rather
+ *             than each forcing in turn (group commit).
+ *   PERIODIC  a background thread forces the log every syncInterval
+ *             milliseconds, so a crash loses at most that much.
+ *   NONE      records reach the file as the buffer fills, and are forced
+ *             only when a segment is closed, at checkpoints and by close().
+ *
+ * Changes are applied to the wrapped dictionary before they are logged, and
+ * an error writing the log leaves the dictionary closed to further changes,
+ * as it can no longer be made durable. Operations lock the dictionary's
+ * monitor, except while waiting for a force, so it is thread-safe; iterate
+ * while holding the monitor if other threads may write. A change can be seen
+ * by other threads before it is durable. putAll, removeAll and removeIf log
+ * all of their changes before waiting for a single force.
+ *
+ * Interrupting a writer does not lose its change or fail the log: the
+ * interrupt is held back until the writer's I/O is done, and a segment closed
+ * by an interrupt arriving mid-write is reopened where the write stopped.
+ */
+public class DurableDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V>, Closeable {
+
+    /**
+     * When changes are forced to disk.
+     */
+    public enum Durability {
+        SYNC, PERIODIC, NONE
+    }
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    // Record layout, followed by the contents the checksum covers.
+    private static final int RECORD_LENGTH = 0;
+    private static final int RECORD_CHECKSUM = 4;
+    private static final int RECORD_HEADER = 8;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".snapshot";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final long DEFAULT_SYNC_INTERVAL = 100;
+    private static final long DEFAULT_SEGMENT_SIZE = 1 << 26;
+    private static final int DEFAULT_CHECKPOINT_SEGMENTS = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Dictionary<K, V> dictionary;
+    private final File directory;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final Durability durability;
+    private final long segmentSize;
+    private final int checkpointSegments;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+    private final Object syncLock;
+    private final ScheduledExecutorService syncer;
+    private FileChannel segment;
+    private long segmentNumber;
+    private long segmentLength;
+    private long segmentFlushed;
+    private long checkpointNumber;
+    private long written;
+    private long durable;
+    private boolean syncing;
+    private IOException failure;
+    private boolean interrupted;
+    private boolean closed;
+
+    public DurableDictionary(Dictionary<K, V> dictionary, File directory,
+            Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this(dictionary, directory, keyCodec, valueCodec, Durability.SYNC,
+                DEFAULT_SYNC_INTERVAL, DEFAULT_SEGMENT_SIZE,
+                DEFAULT_CHECKPOINT_SEGMENTS);
+    }
+
+    /**
+     * Opens the log in the given directory, creating it if necessary, and
+     * recovers the entries it holds into the dictionary.
+     *
+     * @param dictionary
+     *            The empty dictionary to hold the entries in memory
+     * @param syncInterval
+     *            the milliseconds between forces with PERIODIC durability
+     * @param segmentSize
+     *            the size in bytes at which a log segment is closed
+     * @param checkpointSegments
+     *            the number of segments after which to checkpoint, or 0 to
+     *            checkpoint only when checkpoint() is called
+     * @throws IOException
+     *             if the log cannot be read, or is corrupt
+     */
+    public DurableDictionary(Dictionary<K, V> dictionary, File directory,
+            Codec<K> keyCodec, Codec<V> valueCodec, Durability durability,
+            long syncInterval, long segmentSize, int checkpointSegments)
+            throws IOException {
+        if (!dictionary.isEmpty()) {
+            throw new IllegalArgumentException("Dictionary must be empty");
+        }
+        if (syncInterval <= 0 || segmentSize <= 0 || checkpointSegments < 0) {
+            throw new IllegalArgumentException(
+                    "Intervals and sizes must be positive");
+        }
+
+        this.dictionary = dictionary;
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.durability = durability;
+        this.segmentSize = segmentSize;
+        this.checkpointSegments = checkpointSegments;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.crc = new CRC32();
+        this.syncLock = new Object();
+        this.written = 0;
+        this.durable = 0;
+        this.syncing = false;
+        this.failure = null;
+        this.interrupted = false;
+        this.closed = false;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+        recover();
+        openSegment(segmentNumber);
+
+        if (durability == Durability.PERIODIC) {
+            this.syncer =
+                    Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread =
+                                            new Thread(r, "DurableDictionary "
+                                                    + directory);
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+            syncer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sync();
+                    } catch (RuntimeException e) {
+                        // The failure is reported to the next writer.
+                    }
+                }
+            }, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+    /*
+     * Loads the newest checkpoint and replays the segments after it, then
+     * deletes any files a crash during a checkpoint left behind. Logging
+     * resumes in a new segment after the last.
+     */
+    private void recover() throws IOException {
+        long[] checkpoints = list(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+        checkpointNumber = 0;
+        if (checkpoints.length > 0) {
+            checkpointNumber = checkpoints[checkpoints.length - 1];
+            SnapshotReader.loadInto(checkpointFile(checkpointNumber),
+                    dictionary, keyCodec, valueCodec);
+        }
+
+        long[] segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        segmentNumber = checkpointNumber;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] >= checkpointNumber) {
+                replay(segmentFile(segments[i]), i == segments.length - 1);
+                segmentNumber = segments[i] + 1;
+            }
+        }
+        deleteObsolete();
+    }
+
+    // Applies the records of a segment, cutting off a torn record at its end.
+    private void replay(File file, boolean last) throws IOException {
+        long valid = 0;
+        DataInputStream in =
+                new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(file), BUFFER_SIZE));
+        try {
+            long remaining = file.length();
+            while (remaining > 0) {
+                byte[] contents = readRecord(in, remaining);
+                if (contents == null) {
+                    break;
+                }
+                apply(ByteBuffer.wrap(contents));
+                valid += RECORD_HEADER + contents.length;
+                remaining -= RECORD_HEADER + contents.length;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (valid < file.length()) {
+            if (!last) {
+                throw new IOException("Log is corrupt: " + file);
+            }
+            RandomAccessFile torn = new RandomAccessFile(file, "rw");
+            try {
+                torn.setLength(valid);
+                torn.getFD().sync();
+            } finally {
+                torn.close();
+            }
+        }
+    }
+
+    // Returns the contents of the next record, or null if it is torn.
+    private byte[] readRecord(DataInputStream in, long remaining)
+            throws IOException {
+        if (remaining < RECORD_HEADER) {
+            return null;
+        }
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 1 || length > remaining - RECORD_HEADER) {
+            return null;
+        }
+
+        byte[] contents = new byte[length];
+        try {
+            in.readFully(contents);
+        } catch (EOFException e) {
+            return null;
+        }
+        crc.reset();
+        crc.update(contents, 0, length);
+        return (int) crc.getValue() == checksum ? contents : null;
+    }
+
+    private void apply(ByteBuffer record) {
+        byte type = record.get();
+        if (type == CLEAR) {
+            dictionary.clear();
+            return;
+        }
+
+        K key = keyCodec.decode(getBytes(record));
+        if (type == PUT) {
+            dictionary.put(key, valueCodec.decode(getBytes(record)));
+        } else {
+            try {
+                dictionary.remove(key);
+            } catch (NoSuchElementException e) {
+                // Only removes that succeeded are logged.
+            }
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public synchronized int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    @Override
+    public synchronized DictionaryEntry<K, V> getRoot() {
+        return dictionary.getRoot();
+    }
+
+    @Override
+    public synchronized V get(K key) throws NoSuchElementException {
+        return dictionary.get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        ByteBuffer record = encode(PUT, key, value);
+        long number;
+        synchronized (this) {
+            checkWritable();
+            dictionary.put(key, value);
+            number = append(record);
+        }
+        awaitDurable(number);
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        ByteBuffer record = encode(REMOVE, key, null);
+        long number;
+        synchronized (this) {
+            checkWritable();
+            dictionary.remove(key);
+            number = append(record);
+        }
+        awaitDurable(number);
+    }
+
+    @Override
+    public void clear() {
+        ByteBuffer record = encode(CLEAR, null, null);
+        long number;
+        synchronized (this) {
+            checkWritable();
+            dictionary.clear();
+            number = append(record);
+        }
+        awaitDurable(number);
+    }
+
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        long number;
+        synchronized (this) {
+            checkWritable();
+            for (DictionaryEntry<K, ? extends V> entry : other) {
+                ByteBuffer record =
+                        encode(PUT, entry.getKey(), entry.getValue());
+                dictionary.put(entry.getKey(), entry.getValue());
+                append(record);
+            }
+            number = written;
+        }
+        awaitDurable(number);
+    }
+
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        long before, number;
+        synchronized (this) {
+            checkWritable();
+            before = written;
+            removeLogged(keys);
+            number = written;
+        }
+        awaitDurable(number);
+        return number != before;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        long before, number;
+        synchronized (this) {
+            checkWritable();
+            List<K> keys = new ArrayList<K>();
+            for (DictionaryEntry<K, V> entry : dictionary) {
+                if (filter.test(entry)) {
+                    keys.add(entry.getKey());
+                }
+            }
+            before = written;
+            removeLogged(keys);
+            number = written;
+        }
+        awaitDurable(number);
+        return number != before;
+    }
+
+    private void removeLogged(Iterable<? extends K> keys) {
+        for (K key : keys) {
+            ByteBuffer record = encode(REMOVE, key, null);
+            try {
+                dictionary.remove(key);
+            } catch (NoSuchElementException e) {
+                continue;
+            }
+            append(record);
+        }
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return dictionary.iterator();
+    }
+
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return dictionary.spliterator();
+    }
+
+    private void checkWritable() {
+        if (closed) {
+            throw new IllegalStateException("Dictionary is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Log failed", failure);
+        }
+    }
+
+    // Encodes a change as a record, without its checksum.
+    private ByteBuffer encode(byte type, K key, V value) {
+        byte[] keyBytes = key == null ? null : keyCodec.encode(key);
+        byte[] valueBytes = type == PUT ? valueCodec.encode(value) : null;
+        int length = 1;
+        if (keyBytes != null) {
+            length += 4 + keyBytes.length;
+        }
+        if (valueBytes != null) {
+            length += 4 + valueBytes.length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+        record.putInt(RECORD_LENGTH, length);
+        record.position(RECORD_HEADER);
+        record.put(type);
+        if (keyBytes != null) {
+            record.putInt(keyBytes.length).put(keyBytes);
+        }
+        if (valueBytes != null) {
+            record.putInt(valueBytes.length).put(valueBytes);
+        }
+        record.flip();
+        return record;
+    }
+
+    /*
+     * Checksums a record and appends it to the buffer, writing the buffer out
+     * first if the record does not fit, and returns the record's sequence
+     * number. Filling a segment starts the next one and may checkpoint.
+     */
+    private long append(ByteBuffer record) {
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER,
+                record.limit() - RECORD_HEADER);
+        record.putInt(RECORD_CHECKSUM, (int) crc.getValue());
+
+        deferInterrupt();
+        try {
+            if (record.remaining() > buffer.remaining()) {
+                flushBuffer();
+            }
+            if (record.remaining() > buffer.capacity()) {
+                writeFully(record);
+            } else {
+                buffer.put(record);
+            }
+            segmentLength += record.limit();
+            written++;
+
+            if (segmentLength >= segmentSize) {
+                rotate();
+                if (checkpointSegments > 0
+                        && segmentNumber - checkpointNumber
+                                >= checkpointSegments) {
+                    try {
+                        writeCheckpoint();
+                    } catch (IOException e) {
+                        // The log is still complete, so the checkpoint is
+                        // retried when the next segment fills.
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } finally {
+            restoreInterrupt();
+        }
+        return written;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            int from = bytes.position();
+            try {
+                segmentFlushed += segment.write(bytes);
+            } catch (ClosedChannelException e) {
+                // An interrupt closed the segment, perhaps partway through
+                // the write, so resume after the bytes that reached it.
+                deferInterrupt();
+                reopenSegment();
+                long length = Files.size(segmentFile(segmentNumber).toPath());
+                bytes.position(from + (int) (length - segmentFlushed));
+                segmentFlushed = length;
+            }
+        }
+    }
+
+    // Forces the current segment, closes it and opens the next.
+    private void rotate() throws IOException {
+        forceAndClose();
+        openSegment(segmentNumber + 1);
+    }
+
+    private void forceAndClose() throws IOException {
+        flushBuffer();
+        while (true) {
+            try {
+                segment.force(false);
+                break;
+            } catch (ClosedChannelException e) {
+                deferInterrupt();
+                reopenSegment();
+            }
+        }
+        segment.close();
+        markDurable(written);
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment =
+                FileChannel.open(segmentFile(number).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+        segmentNumber = number;
+        segmentLength = Files.size(segmentFile(number).toPath());
+        segmentFlushed = segmentLength;
+        Directories.sync(directory);
+    }
+
+    /*
+     * Reopens the current segment after an interrupt closed it. What was
+     * written through the closed channel is in the file, so forcing the new
+     * channel forces it too.
+     */
+    private void reopenSegment() throws IOException {
+        segment =
+                FileChannel.open(segmentFile(segmentNumber).toPath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /*
+     * An interrupt closes a FileChannel that the interrupted thread is using,
+     * so the thread holding the monitor clears it before any I/O on the
+     * segment and sets it again once the I/O is done.
+     */
+    private void deferInterrupt() {
+        if (Thread.interrupted()) {
+            interrupted = true;
+        }
+    }
+
+    private void restoreInterrupt() {
+        if (takeInterrupt()) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean takeInterrupt() {
+        boolean deferred = interrupted;
+        interrupted = false;
+        return deferred;
+    }
+
+    /**
+     * Writes every entry to a new checkpoint and deletes the log segments
+     * and checkpoints it replaces. This takes time linear in the size of the
+     * dictionary, during which other threads cannot change it.
+     *
+     * @throws IOException
+     *             if the checkpoint cannot be written, in which case the log
+     *             is still complete
+     */
+    public synchronized void checkpoint() throws IOException {
+        checkWritable();
+        deferInterrupt();
+        try {
+            try {
+                rotate();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            writeCheckpoint();
+        } finally {
+            restoreInterrupt();
+        }
+    }
+
+    // Checkpoints the segments before the current one.
+    private void writeCheckpoint() throws IOException {
+        File temporary =
+                new File(directory, CHECKPOINT_PREFIX + segmentNumber
+                        + TEMPORARY_SUFFIX);
+        SnapshotWriter.write(dictionary, temporary, keyCodec, valueCodec);
+        Files.move(temporary.toPath(), checkpointFile(segmentNumber).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        Directories.sync(directory);
+
+        checkpointNumber = segmentNumber;
+        deleteObsolete();
+    }
+
+    // Deletes segments and checkpoints older than the newest checkpoint.
+    private void deleteObsolete() {
+        for (long number : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number < checkpointNumber) {
+                segmentFile(number).delete();
+            }
+        }
+        for (long number : list(CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX)) {
+            if (number < checkpointNumber) {
+                checkpointFile(number).delete();
+            }
+        }
+        for (long number : list(CHECKPOINT_PREFIX, TEMPORARY_SUFFIX)) {
+            new File(directory, CHECKPOINT_PREFIX + number + TEMPORARY_SUFFIX)
+                    .delete();
+        }
+    }
+
+    /**
+     * Forces every change made so far to disk, sharing the force with any
+     * other thread waiting for one.
+     *
+     * @throws UncheckedIOException
+     *             if the log cannot be forced
+     */
+    public void sync() {
+        long record;
+        synchronized (this) {
+            record = written;
+        }
+        waitFor(record);
+    }
+
+    private void awaitDurable(long record) {
+        if (durability == Durability.SYNC) {
+            waitFor(record);
+        }
+    }
+
+    /*
+     * Waits until the given record has been forced. If no other thread is
+     * forcing the log, this one forces every record appended so far;
+     * otherwise it waits for that force to finish, and then forces again if
+     * the record was appended too late to be included. An interrupt is set
+     * again only once the force is done.
+     */
+    private void waitFor(long record) {
+        boolean interrupted = false;
+        try {
+            synchronized (syncLock) {
+                while (syncing && durable < record) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (durable >= record) {
+                    return;
+                }
+                syncing = true;
+            }
+            interrupted |= Thread.interrupted();
+            force();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Forces every record appended so far, once this thread is syncing.
+    private void force() {
+        boolean interrupted = false;
+        long target = 0;
+        IOException error = null;
+        try {
+            FileChannel channel;
+            long number;
+            synchronized (this) {
+                if (failure != null) {
+                    throw new IllegalStateException("Log failed", failure);
+                }
+                try {
+                    flushBuffer();
+                } finally {
+                    interrupted = takeInterrupt();
+                }
+                target = written;
+                channel = segment;
+                number = segmentNumber;
+            }
+            while (true) {
+                try {
+                    channel.force(false);
+                    break;
+                } catch (ClosedChannelException e) {
+                    interrupted |= Thread.interrupted();
+                    channel = forceClosed(e, target, number);
+                    if (channel == null) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+            synchronized (this) {
+                failure = e;
+            }
+        } finally {
+            synchronized (syncLock) {
+                syncing = false;
+                syncLock.notifyAll();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+        markDurable(target);
+    }
+
+    /*
+     * Handles a force of the given segment that found it closed. If the
+     * segment has since been rotated or the log closed, the target was forced
+     * first and null is returned. Otherwise an interrupt closed it, and the
+     * reopened segment to force instead is returned.
+     */
+    private synchronized FileChannel forceClosed(ClosedChannelException e,
+            long target, long number) throws IOException {
+        synchronized (syncLock) {
+            if (durable >= target) {
+                return null;
+            }
+        }
+        if (closed || failure != null || segmentNumber != number) {
+            throw e;
+        }
+        if (!segment.isOpen()) {
+            reopenSegment();
+        }
+        return segment;
+    }
+
+    private void markDurable(long record) {
+        synchronized (syncLock) {
+            durable = Math.max(durable, record);
+            syncLock.notifyAll();
+        }
+    }
+
+    /**
+     * Forces every change to disk and closes the log. Changes are refused
+     * after it is closed, but the entries can still be read.
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            deferInterrupt();
+            try {
+                if (failure == null) {
+                    forceAndClose();
+                } else {
+                    segment.close();
+                }
+            } finally {
+                restoreInterrupt();
+            }
+        }
+    }
+
+    // Returns the numbers of the files with the prefix and suffix, in order.
+    private long[] list(String prefix, String suffix) {
+        return Directories.list(directory, prefix, suffix);
+    }
+
+    private File segmentFile(long number) {
+        return new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private File checkpointFile(long number) {
+        return new File(directory, CHECKPOINT_PREFIX + number
+                + CHECKPOINT_SUFFIX);
+    }
+
+    public String toString() {
+        return dictionary.toString();
+    }
+}
@@ -0,0 +1,391 @@
+package dictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Eviction policies for a CachingDictionary. Each keeps a hash index from key
+ * to a node in one or more doubly linked queues, so every access takes O(1)
+ * time and the memory used is proportional to the number of resident keys.
+ */
+public final class EvictionPolicies {
+
+    private EvictionPolicies() {
+    }
+
+    /**
+     * @return a policy that evicts the least recently used key
+     */
+    public static <K> EvictionPolicy<K> lru() {
+        return new Lru<K>();
+    }
+
+    /**
+     * @return a policy that evicts the least frequently used key, and of
+     *         those the one that reached its frequency first
+     */
+    public static <K> EvictionPolicy<K> lfu() {
+        return new Lfu<K>();
+    }
+
+    /**
+     * Returns a W-TinyLFU policy. New keys enter a small LRU window holding
+     * about 1% of the weight. Keys leaving the window are admitted to the main
+     * space only if a frequency sketch has seen them more often than the key
+     * they would displace. The main space is a segmented LRU whose protected
+     * segment holds keys hit while on probation, up to 80% of its weight.
+     * Lookups of absent keys also count towards frequency, so a key that is
+     * repeatedly missed is admitted ahead of one-off keys.
+     *
+     * @param expectedEntries
+     *            The number of entries the cache is expected to hold, which
+     *            sizes the frequency sketch
+     * @return the policy
+     */
+    public static <K> EvictionPolicy<K> windowTinyLfu(int expectedEntries) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException(
+                    "Expected entries must be positive");
+        }
+        return new WindowTinyLfu<K>(expectedEntries);
+    }
+
+    // A resident key and the weight of its entry, linked into one queue.
+    private static class Node<K> {
+
+        final K key;
+        long weight;
+        Node<K> prev, next;
+        Queue<K> queue;
+
+        Node(K key, long weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    // A doubly linked queue of nodes, eldest first, with their total weight.
+    private static class Queue<K> {
+
+        private final Node<K> sentinel;
+        long weight;
+        int size;
+
+        Queue() {
+            this.sentinel = new Node<K>(null, 0);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        Node<K> first() {
+            return size == 0 ? null : sentinel.next;
+        }
+
+        void addLast(Node<K> node) {
+            node.prev = sentinel.prev;
+            node.next = sentinel;
+            sentinel.prev.next = node;
+            sentinel.prev = node;
+            node.queue = this;
+            weight += node.weight;
+            size++;
+        }
+
+        void remove(Node<K> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+            node.queue = null;
+            weight -= node.weight;
+            size--;
+        }
+
+        void moveToEnd(Node<K> node) {
+            remove(node);
+            addLast(node);
+        }
+
+        void clear() {
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            weight = 0;
+            size = 0;
+        }
+    }
+
+    /*
+     * Maintains the index and the weights of the queues, leaving the
+     * subclasses to decide which queue each node belongs in.
+     */
+    private abstract static class IndexedPolicy<K> implements
+            EvictionPolicy<K> {
+
+        private final Map<K, Node<K>> nodes = new HashMap<K, Node<K>>();
+
+        @Override
+        public boolean contains(K key) {
+            return nodes.containsKey(key);
+        }
+
+        @Override
+        public void recordInsert(K key, long weight) {
+            Node<K> node = new Node<K>(key, weight);
+            nodes.put(key, node);
+            inserted(node);
+        }
+
+        @Override
+        public long recordUpdate(K key, long weight) {
+            Node<K> node = nodes.get(key);
+            long old = node.weight;
+            node.weight = weight;
+            node.queue.weight += weight - old;
+            hit(node);
+            return old;
+        }
+
+        @Override
+        public void recordHit(K key) {
+            hit(nodes.get(key));
+        }
+
+        @Override
+        public void recordMiss(K key) {
+        }
+
+        @Override
+        public long recordRemove(K key) {
+            Node<K> node = nodes.remove(key);
+            if (node == null) {
+                return 0;
+            }
+            removed(node);
+            return node.weight;
+        }
+
+        @Override
+        public void clear() {
+            nodes.clear();
+            cleared();
+        }
+
+        abstract void inserted(Node<K> node);
+
+        abstract void hit(Node<K> node);
+
+        // Called after the node has left the index.
+        abstract void removed(Node<K> node);
+
+        abstract void cleared();
+    }
+
+    private static class Lru<K> extends IndexedPolicy<K> {
+
+        private final Queue<K> queue = new Queue<K>();
+
+        @Override
+        void inserted(Node<K> node) {
+            queue.addLast(node);
+        }
+
+        @Override
+        void hit(Node<K> node) {
+            queue.moveToEnd(node);
+        }
+
+        @Override
+        void removed(Node<K> node) {
+            queue.remove(node);
+        }
+
+        @Override
+        void cleared() {
+            queue.clear();
+        }
+
+        @Override
+        public K victim() {
+            Node<K> eldest = queue.first();
+            return eldest == null ? null : eldest.key;
+        }
+    }
+
+    /*
+     * Keeps one queue for each frequency that some key has, in a list in
+     * ascending order of frequency. A hit moves a key to the queue for the
+     * next frequency, creating it if need be, and empty queues are unlinked,
+     * so the victim is always at the front of the first queue.
+     */
+    private static class Lfu<K> extends IndexedPolicy<K> {
+
+        private static class Bucket<K> extends Queue<K> {
+
+            final long frequency;
+            Bucket<K> prevBucket, nextBucket;
+
+            Bucket(long frequency) {
+                this.frequency = frequency;
+            }
+        }
+
+        private final Bucket<K> head = new Bucket<K>(0);
+
+        @Override
+        void inserted(Node<K> node) {
+            bucketAfter(head, 1).addLast(node);
+        }
+
+        @Override
+        void hit(Node<K> node) {
+            Bucket<K> bucket = (Bucket<K>) node.queue;
+            Bucket<K> next = bucketAfter(bucket, bucket.frequency + 1);
+            bucket.remove(node);
+            next.addLast(node);
+            unlinkIfEmpty(bucket);
+        }
+
+        @Override
+        void removed(Node<K> node) {
+            Bucket<K> bucket = (Bucket<K>) node.queue;
+            bucket.remove(node);
+            unlinkIfEmpty(bucket);
+        }
+
+        @Override
+        void cleared() {
+            head.nextBucket = null;
+        }
+
+        @Override
+        public K victim() {
+            return head.nextBucket == null ? null : head.nextBucket.first().key;
+        }
+
+        // The bucket for the frequency, which must follow the given bucket.
+        private Bucket<K> bucketAfter(Bucket<K> bucket, long frequency) {
+            Bucket<K> next = bucket.nextBucket;
+            if (next != null && next.frequency == frequency) {
+                return next;
+            }
+
+            Bucket<K> added = new Bucket<K>(frequency);
+            added.prevBucket = bucket;
+            added.nextBucket = next;
+            bucket.nextBucket = added;
+            if (next != null) {
+                next.prevBucket = added;
+            }
+            return added;
+        }
+
+        private void unlinkIfEmpty(Bucket<K> bucket) {
+            if (bucket.size == 0) {
+                bucket.prevBucket.nextBucket = bucket.nextBucket;
+                if (bucket.nextBucket != null) {
+                    bucket.nextBucket.prevBucket = bucket.prevBucket;
+                }
+            }
+        }
+    }
+
+    private static class WindowTinyLfu<K> extends IndexedPolicy<K> {
+
+        private static final int WINDOW_PERCENT = 1;
+        private static final int PROTECTED_PERCENT = 80;
+
+        private final FrequencySketch<K> sketch;
+        private final Queue<K> window = new Queue<K>();
+        private final Queue<K> probation = new Queue<K>();
+        private final Queue<K> protectedQueue = new Queue<K>();
+        // The last key to leave the window, which must earn its admission.
+        private Node<K> candidate;
+
+        WindowTinyLfu(int expectedEntries) {
+            this.sketch = new FrequencySketch<K>(expectedEntries);
+        }
+
+        @Override
+        void inserted(Node<K> node) {
+            sketch.increment(node.key);
+            window.addLast(node);
+
+            long total = window.weight + probation.weight
+                    + protectedQueue.weight;
+            long maximum = Math.max(total * WINDOW_PERCENT / 100, 1);
+            while (window.weight > maximum && window.size > 1) {
+                candidate = window.first();
+                window.remove(candidate);
+                probation.addLast(candidate);
+            }
+        }
+
+        @Override
+        void hit(Node<K> node) {
+            sketch.increment(node.key);
+            if (node.queue == probation) {
+                probation.remove(node);
+                protectedQueue.addLast(node);
+
+                long maximum = (probation.weight + protectedQueue.weight)
+                        * PROTECTED_PERCENT / 100;
+                while (protectedQueue.weight > maximum
+                        && protectedQueue.size > 1) {
+                    Node<K> demoted = protectedQueue.first();
+                    protectedQueue.remove(demoted);
+                    probation.addLast(demoted);
+                }
+            } else {
+                node.queue.moveToEnd(node);
+            }
+        }
+
+        @Override
+        public void recordMiss(K key) {
+            sketch.increment(key);
+        }
+
+        @Override
+        void removed(Node<K> node) {
+            node.queue.remove(node);
+            if (node == candidate) {
+                candidate = null;
+            }
+        }
+
+        @Override
+        void cleared() {
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            candidate = null;
+        }
+
+        /*
+         * The eldest key on probation, unless the candidate has been seen no
+         * more often than it, in which case the candidate is refused.
+         */
+        @Override
+        public K victim() {
+            Node<K> victim = probation.first();
+            if (victim == null) {
+                victim = protectedQueue.first();
+            }
+            if (victim == null) {
+                victim = window.first();
+            }
+            if (victim == null) {
+                return null;
+            }
+
+            Node<K> c = candidate;
+            if (c != null && c != victim && c.queue == probation
+                    && sketch.frequency(c.key) <= sketch
+                            .frequency(victim.key)) {
+                return c.key;
+            }
+            return victim.key;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package dictionary;
+
+/**
+ * Decides which entries a CachingDictionary evicts. A policy tracks the keys
+ * resident in the cache and the weight of each, and is told about every
+ * access. Keys are looked up by hash, so they must implement equals and
+ * hashCode consistently with compareTo. Every method should take O(1) time.
+ *
+ * <K> is the type of key tracked
+ */
+public interface EvictionPolicy<K> {
+
+    /**
+     * @param key
+     *            The key to look for
+     * @return true if and only if the key is resident
+     */
+    public boolean contains(K key);
+
+    /**
+     * Records that a key has become resident.
+     *
+     * @param key
+     *            A key that is not resident
+     * @param weight
+     *            The weight of its entry
+     */
+    public void recordInsert(K key, long weight);
+
+    /**
+     * Records that the value of a resident key was replaced, which counts as
+     * an access.
+     *
+     * @param key
+     *            A resident key
+     * @param weight
+     *            The weight of its new entry
+     * @return the weight of its previous entry
+     */
+    public long recordUpdate(K key, long weight);
+
+    /**
+     * Records a lookup of a resident key.
+     *
+     * @param key
+     *            A resident key
+     */
+    public void recordHit(K key);
+
+    /**
+     * Records a lookup of a key that is not resident.
+     *
+     * @param key
+     *            The key looked up
+     */
+    public void recordMiss(K key);
+
+    /**
+     * Records that a key is no longer resident, whether it was removed or
+     * evicted.
+     *
+     * @param key
+     *            The key removed
+     * @return the weight of its entry, or 0 if it was not resident
+     */
+    public long recordRemove(K key);
+
+    /**
+     * @return the resident key that should be evicted next, or null if there
+     *         are none
+     */
+    public K victim();
+
+    /**
+     * Forgets every resident key.
+     */
+    public void clear();
+
+}
@@ -0,0 +1,91 @@
+package dictionary;
+
+import java.util.Arrays;
+
+/*
+ * A count-min sketch estimating how often each key has been seen, in a fixed
+ * amount of memory. Each key is counted in one 4-bit counter in each of four
+ * rows, chosen by double hashing, and its estimate is the smallest of them.
+ * Counters saturate at 15. Once the number of increments reaches ten times
+ * the width, every counter is halved, so the estimates favour recent history.
+ */
+final class FrequencySketch<K> {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+
+    // Sixteen 4-bit counters per long.
+    private final long[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1)
+                << 1;
+        this.table = new long[DEPTH][Math.max(width >>> 4, 1)];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+        this.additions = 0;
+    }
+
+    // The estimated number of times the key has been seen, at most 15.
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int step = rehash(hash);
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, count(i, (hash + i * step) & mask));
+        }
+        return min;
+    }
+
+    void increment(K key) {
+        int hash = spread(key.hashCode());
+        int step = rehash(hash);
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = (hash + i * step) & mask;
+            if (count(i, index) < MAX_COUNT) {
+                table[i][index >>> 4] += 1L << ((index & 15) << 2);
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    void clear() {
+        for (long[] row : table) {
+            Arrays.fill(row, 0);
+        }
+        additions = 0;
+    }
+
+    private int count(int row, int index) {
+        return (int) (table[row][index >>> 4] >>> ((index & 15) << 2)) & 0xF;
+    }
+
+    // Halves every counter at once by shifting and clearing the carried bits.
+    private void halve() {
+        for (long[] row : table) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = (row[j] >>> 1) & 0x7777777777777777L;
+            }
+        }
+        additions >>>= 1;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // An odd step, so that the rows probe distinct counters.
+    private static int rehash(int h) {
+        h *= 0x85EBCA6B;
+        return (h ^ (h >>> 13)) | 1;
+    }
+}
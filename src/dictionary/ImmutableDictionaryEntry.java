@@ -0,0 +1,30 @@
+package dictionary;
+
+/*
+ * Implementation class for key-value pairs that are detached from the
+ * structure they were read from, such as the entries of a snapshot.
+ */
+public class ImmutableDictionaryEntry<K, V> implements DictionaryEntry<K, V> {
+
+    private final K key;
+    private final V value;
+
+    public ImmutableDictionaryEntry(K key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public String toString() {
+        return key + " -> " + value;
+    }
+}
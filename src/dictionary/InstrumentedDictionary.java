@@ -0,0 +1,298 @@
+package dictionary;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Decorator for any Dictionary that records metrics for get, put and remove:
+ * the number of calls, the number of misses and a histogram of latencies in
+ * nanoseconds. A get or remove misses when its key is absent, and a put
+ * misses when it adds a new key rather than replacing a value.
+ *
+ * Counts are exact, but reading the clock costs more than the rest of the
+ * recording, so latency is measured for about one call in every
+ * sampleInterval, 64 by default, counted down separately for each operation
+ * on each thread. Recording takes a thread-local decrement and one or two
+ * uncontended atomic increments, plus two clock readings for sampled calls,
+ * and never locks, so the decorator is as thread-safe as the dictionary it
+ * wraps. Metrics can be read as immutable snapshots, or through JMX once the
+ * decorator is registered as an MXBean. The bulk operations and iteration are
+ * delegated to the wrapped dictionary and are not recorded.
+ */
+public class InstrumentedDictionary<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V>, DictionaryMetricsMXBean {
+
+    /**
+     * The operations that are recorded.
+     */
+    public enum Operation {
+        GET, PUT, REMOVE
+    }
+
+    /*
+     * The metrics of one operation. Each thread counts down its own calls to
+     * the next sampled one, from a random stride averaging sampleInterval, so
+     * that neither a fixed interleaving of operations nor a repeating pattern
+     * of calls can keep some calls from ever being sampled.
+     */
+    private static class Recorder {
+
+        final LongAdder calls = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final int sampleInterval;
+        final ThreadLocal<int[]> countdown;
+
+        Recorder(final int sampleInterval) {
+            this.sampleInterval = sampleInterval;
+            this.countdown = new ThreadLocal<int[]>() {
+                @Override
+                protected int[] initialValue() {
+                    return new int[] { stride(sampleInterval) };
+                }
+            };
+        }
+
+        // True for about one call in sampleInterval on the current thread.
+        boolean sampled() {
+            int[] remaining = countdown.get();
+            if (--remaining[0] > 0) {
+                return false;
+            }
+            remaining[0] = stride(sampleInterval);
+            return true;
+        }
+
+        // Between 1 and 2 * interval - 1, uniformly, so interval on average.
+        static int stride(int interval) {
+            return 1 + ThreadLocalRandom.current()
+                    .nextInt(2 * (interval - 1) + 1);
+        }
+
+        void record(boolean sampled, long start, boolean miss) {
+            if (sampled) {
+                latency.record(System.nanoTime() - start);
+            }
+            calls.increment();
+            if (miss) {
+                misses.increment();
+            }
+        }
+
+        OperationMetrics snapshot() {
+            return new OperationMetrics(calls.sum(), misses.sum(),
+                    latency.snapshot());
+        }
+
+        void reset() {
+            calls.reset();
+            misses.reset();
+            latency.reset();
+        }
+    }
+
+    private static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    private final Dictionary<K, V> dictionary;
+    private final Recorder gets;
+    private final Recorder puts;
+    private final Recorder removes;
+    private ObjectName objectName;
+
+    public InstrumentedDictionary(Dictionary<K, V> dictionary) {
+        this(dictionary, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * @param dictionary
+     *            The dictionary to record
+     * @param sampleInterval
+     *            Latency is measured for one call to each operation in this
+     *            many on average, or every call if it is 1
+     */
+    public InstrumentedDictionary(Dictionary<K, V> dictionary,
+            int sampleInterval) {
+        if (sampleInterval < 1 || sampleInterval > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "Sample interval must be between 1 and 2^30");
+        }
+
+        this.dictionary = dictionary;
+        this.gets = new Recorder(sampleInterval);
+        this.puts = new Recorder(sampleInterval);
+        this.removes = new Recorder(sampleInterval);
+        this.objectName = null;
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dictionary.isEmpty();
+    }
+
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        return dictionary.getRoot();
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        boolean sampled = gets.sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        boolean miss = true;
+        try {
+            V value = dictionary.get(key);
+            miss = false;
+            return value;
+        } finally {
+            gets.record(sampled, start, miss);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        int oldSize = dictionary.size();
+        boolean sampled = puts.sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            dictionary.put(key, value);
+        } finally {
+            puts.record(sampled, start, dictionary.size() > oldSize);
+        }
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        boolean sampled = removes.sampled();
+        long start = sampled ? System.nanoTime() : 0;
+        boolean miss = true;
+        try {
+            dictionary.remove(key);
+            miss = false;
+        } finally {
+            removes.record(sampled, start, miss);
+        }
+    }
+
+    @Override
+    public void clear() {
+        dictionary.clear();
+    }
+
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        dictionary.putAll(other);
+    }
+
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        return dictionary.removeAll(keys);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        return dictionary.removeIf(filter);
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return dictionary.iterator();
+    }
+
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return dictionary.spliterator();
+    }
+
+    /**
+     * @param op
+     *            The operation whose metrics to return
+     * @return a snapshot of the metrics recorded for the operation
+     */
+    public OperationMetrics snapshot(Operation op) {
+        switch (op) {
+        case GET:
+            return gets.snapshot();
+        case PUT:
+            return puts.snapshot();
+        default:
+            return removes.snapshot();
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size();
+    }
+
+    @Override
+    public OperationMetrics getGet() {
+        return snapshot(Operation.GET);
+    }
+
+    @Override
+    public OperationMetrics getPut() {
+        return snapshot(Operation.PUT);
+    }
+
+    @Override
+    public OperationMetrics getRemove() {
+        return snapshot(Operation.REMOVE);
+    }
+
+    /**
+     * Forgets every recorded metric. Operations that complete during a reset
+     * may or may not be counted.
+     */
+    @Override
+    public void reset() {
+        gets.reset();
+        puts.reset();
+        removes.reset();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     *
+     * @param name
+     *            The name to register them under
+     * @throws JMException
+     *             if the name is invalid or already registered
+     */
+    public synchronized void registerMBean(ObjectName name)
+            throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        objectName = name;
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if they are
+     * registered.
+     *
+     * @throws JMException
+     *             if the server fails to unregister them
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    objectName);
+            objectName = null;
+        }
+    }
+
+    public String toString() {
+        return dictionary.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package dictionary;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds, in
+ * the log-linear layout of HdrHistogram. Values below 64 have a bucket each.
+ * Above that, every power of two is split into 32 equal buckets, so a value
+ * is known to within 1/32 of itself whatever its magnitude, in a fixed 15KB.
+ *
+ * Recording is lock-free and takes a few atomic increments, so any number of
+ * threads may record at once. A snapshot copies the buckets one by one, so
+ * when taken during recording it may miss values recorded meanwhile, but
+ * never includes a value twice.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS >>> 1;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS)
+            * HALF;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param value
+     *            The value to record, where negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.getAndIncrement(indexOf(value));
+
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded during a reset may or may
+     * not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * @return a copy of the histogram as it is now
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift =
+                63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF
+                + (int) ((value >>> shift) - HALF);
+    }
+
+    // The smallest value recorded in the bucket.
+    static long lowestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKETS) / HALF + 1;
+        return (long) ((index - SUB_BUCKETS) % HALF + HALF) << shift;
+    }
+
+    // The largest value recorded in the bucket.
+    static long highestValueAt(int index) {
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestValueAt(index + 1) - 1;
+    }
+
+    /**
+     * An immutable copy of a histogram.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+        private final double mean;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+
+            long n = 0;
+            double total = 0;
+            long highest = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    n += counts[i];
+                    // The midpoint of each bucket stands for its values.
+                    total += counts[i]
+                            * ((lowestValueAt(i) + (double) highestValueAt(i))
+                                    / 2);
+                    highest = highestValueAt(i);
+                }
+            }
+            this.count = n;
+            this.max = Math.min(max, highest);
+            this.mean = n == 0 ? 0 : total / n;
+        }
+
+        /**
+         * @return the number of values recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the largest value recorded, or 0 if there are none
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the values recorded, to within the precision of
+         *         the buckets, or 0 if there are none
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Returns a value at the given quantile by the nearest-rank method.
+         * It is the largest value in the bucket holding that rank, so it is
+         * never less than the true value, and never more than 1/32 greater.
+         *
+         * @param quantile
+         *            The quantile, between 0 and 1
+         * @return the value, or 0 if there are none
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException(
+                        "Quantile must be between 0 and 1");
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max((long) Math.ceil(quantile * count), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package dictionary;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/*
+ * Ordered linked list based implementation of the Dictionary interface with a
+ * hash index. The entries are doubly linked in ascending order by key, as in
+ * the OrderedLinkedList, and a HashMap maps each key to its entry. get, and
+ * put of a present key, take O(1) expected time; remove finds the entry
+ * through the index and unlinks it in O(1). Only put of a new key searches
+ * the list for its position, and it first checks the last entry so that
+ * ascending inserts append in O(1).
+ *
+ * Keys must implement equals and hashCode consistently with compareTo.
+ * Duplicate keys are not permitted.
+ */
+public class LinkedHashIndexedDictionary<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V> {
+
+    private final Map<K, LinkedHashIndexedDictionaryEntry<K, V>> index;
+    private LinkedHashIndexedDictionaryEntry<K, V> head, tail;
+    private int modCount;
+
+    public LinkedHashIndexedDictionary() {
+        this.index = new HashMap<K, LinkedHashIndexedDictionaryEntry<K, V>>();
+        this.head = null;
+        this.tail = null;
+        this.modCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public LinkedHashIndexedDictionaryEntry<K, V> getRoot() {
+        return head;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        LinkedHashIndexedDictionaryEntry<K, V> entry = index.get(key);
+
+        if (entry != null) {
+            return entry.getValue();
+        } else {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        LinkedHashIndexedDictionaryEntry<K, V> entry = index.get(key);
+        if (entry != null) {
+            entry.setValue(value);
+            return;
+        }
+
+        entry = new LinkedHashIndexedDictionaryEntry<K, V>(key, value);
+        if (tail == null || tail.getKey().compareTo(key) < 0) {
+            linkBefore(entry, null);
+        } else {
+            LinkedHashIndexedDictionaryEntry<K, V> next = head;
+            while (next.getKey().compareTo(key) < 0) {
+                next = next.getNext();
+            }
+            linkBefore(entry, next);
+        }
+        index.put(key, entry);
+        modCount++;
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        LinkedHashIndexedDictionaryEntry<K, V> entry = index.remove(key);
+        if (entry == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        unlink(entry);
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        head = null;
+        tail = null;
+        modCount++;
+    }
+
+    /**
+     * Adds the entries of the other dictionary in a single pass over both.
+     * Present keys are found through the index, and new keys are linked in
+     * at a position that only moves forwards, since both are in ascending
+     * order.
+     */
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        LinkedHashIndexedDictionaryEntry<K, V> next = head;
+
+        for (DictionaryEntry<K, ? extends V> entry : other) {
+            K key = entry.getKey();
+            LinkedHashIndexedDictionaryEntry<K, V> present = index.get(key);
+            if (present != null) {
+                present.setValue(entry.getValue());
+                continue;
+            }
+
+            while (next != null && next.getKey().compareTo(key) < 0) {
+                next = next.getNext();
+            }
+            LinkedHashIndexedDictionaryEntry<K, V> added =
+                    new LinkedHashIndexedDictionaryEntry<K, V>(key,
+                            entry.getValue());
+            linkBefore(added, next);
+            index.put(key, added);
+        }
+        modCount++;
+    }
+
+    /**
+     * Removes the given keys, finding each one through the index.
+     */
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        int oldSize = size();
+        for (K key : keys) {
+            LinkedHashIndexedDictionaryEntry<K, V> entry = index.remove(key);
+            if (entry != null) {
+                unlink(entry);
+            }
+        }
+        return changed(oldSize);
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single pass.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        int oldSize = size();
+        LinkedHashIndexedDictionaryEntry<K, V> curr = head;
+
+        while (curr != null) {
+            LinkedHashIndexedDictionaryEntry<K, V> next = curr.getNext();
+            if (filter.test(curr)) {
+                index.remove(curr.getKey());
+                unlink(curr);
+            }
+            curr = next;
+        }
+        return changed(oldSize);
+    }
+
+    // Links entry in before next, or at the end of the list if next is null.
+    private void linkBefore(LinkedHashIndexedDictionaryEntry<K, V> entry,
+            LinkedHashIndexedDictionaryEntry<K, V> next) {
+        LinkedHashIndexedDictionaryEntry<K, V> prev =
+                next == null ? tail : next.getPrev();
+        entry.setPrev(prev);
+        entry.setNext(next);
+        if (prev == null) {
+            head = entry;
+        } else {
+            prev.setNext(entry);
+        }
+        if (next == null) {
+            tail = entry;
+        } else {
+            next.setPrev(entry);
+        }
+    }
+
+    private void unlink(LinkedHashIndexedDictionaryEntry<K, V> entry) {
+        LinkedHashIndexedDictionaryEntry<K, V> prev = entry.getPrev();
+        LinkedHashIndexedDictionaryEntry<K, V> next = entry.getNext();
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.setNext(next);
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.setPrev(prev);
+        }
+    }
+
+    private boolean changed(int oldSize) {
+        if (size() == oldSize) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private LinkedHashIndexedDictionaryEntry<K, V> curr;
+        private int oldModCount;
+
+        public DictionaryIterator() {
+            this.curr = head;
+            this.oldModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return curr != null;
+        }
+
+        @Override
+        public LinkedHashIndexedDictionaryEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            LinkedHashIndexedDictionaryEntry<K, V> res = curr;
+            curr = curr.getNext();
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public String toString() {
+        String res = "[";
+        for (DictionaryEntry<K, V> e : this) {
+            res += e + ", ";
+        }
+        return res + "]";
+    }
+}
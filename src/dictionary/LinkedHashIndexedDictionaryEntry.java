@@ -0,0 +1,51 @@
+package dictionary;
+
+// Implementation class representing nodes of the hash-indexed linked list.
+public class LinkedHashIndexedDictionaryEntry<K, V> implements
+        DictionaryEntry<K, V> {
+
+    private K key;
+    private V value;
+    private LinkedHashIndexedDictionaryEntry<K, V> prev, next;
+
+    public LinkedHashIndexedDictionaryEntry(K key, V value) {
+        this.key = key;
+        this.value = value;
+        this.prev = null;
+        this.next = null;
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public void setValue(V newVal) {
+        this.value = newVal;
+    }
+
+    public LinkedHashIndexedDictionaryEntry<K, V> getPrev() {
+        return prev;
+    }
+
+    public void setPrev(LinkedHashIndexedDictionaryEntry<K, V> prev) {
+        this.prev = prev;
+    }
+
+    public LinkedHashIndexedDictionaryEntry<K, V> getNext() {
+        return next;
+    }
+
+    public void setNext(LinkedHashIndexedDictionaryEntry<K, V> next) {
+        this.next = next;
+    }
+
+    public String toString() {
+        return key + " -> " + value;
+    }
+}
@@ -0,0 +1,598 @@
+package dictionary;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/*
+ * Ordered dictionary from primitive long keys to object values, with the same
+ * semantics as the Dictionary interface but without boxing keys or creating
+ * entry objects. The entries are kept in a B+tree, as in BPlusTreeDictionary,
+ * whose nodes are slices of a few flat arrays rather than objects: node n
+ * holds its keys from index n * STRIDE of the key array, and either its
+ * values or the numbers of its children from the same index of the value or
+ * child array. get, put and remove therefore take O(log n) time, shifting at
+ * most one node's worth of keys, and iteration is a sequential scan along
+ * the linked leaves. A key appended after the largest one leaves the last
+ * leaf full when it splits, so ascending inserts fill every leaf.
+ *
+ * Nodes freed by removals are kept on free lists and reused, and the arrays
+ * grow by doubling and are never shrunk, so once the dictionary has reached
+ * its working size no operation allocates. Slots left empty are cleared so
+ * that removed values can be collected. Duplicate keys are not permitted.
+ */
+public class LongObjectDictionary<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // The most keys in a node, and the fewest in any node but the root.
+    private static final int MAX_KEYS = 63;
+    private static final int MIN_KEYS = MAX_KEYS / 2;
+    // Room for one key and child more than the maximum, so that a node can
+    // overflow before it is split.
+    private static final int STRIDE = MAX_KEYS + 2;
+    private static final int NONE = -1;
+
+    private long[] leafKeys;
+    private Object[] leafValues;
+    private int[] leafCounts;
+    // The next leaf in ascending order, or the next free leaf.
+    private int[] leafNext;
+    private int leafSlots;
+    private int freeLeaf;
+
+    // A free internal node holds the next free one as its first child.
+    private long[] innerKeys;
+    private int[] innerChildren;
+    private int[] innerCounts;
+    private int innerSlots;
+    private int freeInner;
+
+    private int root;
+    // The number of levels of internal nodes above the leaves.
+    private int height;
+    private int numElems;
+    private int modCount;
+
+    // Set by insert when a node splits, for the caller to link in.
+    private long splitKey;
+    private int splitNode;
+
+    public LongObjectDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity
+     *            the number of entries to make room for before growing
+     */
+    public LongObjectDictionary(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Negative capacity");
+        }
+
+        int leaves = initialCapacity / MAX_KEYS + 1;
+        this.leafKeys = new long[leaves * STRIDE];
+        this.leafValues = new Object[leaves * STRIDE];
+        this.leafCounts = new int[leaves];
+        this.leafNext = new int[leaves];
+        int inners = leaves / MIN_KEYS + 1;
+        this.innerKeys = new long[inners * STRIDE];
+        this.innerChildren = new int[inners * STRIDE];
+        this.innerCounts = new int[inners];
+        clear();
+        this.modCount = 0;
+    }
+
+    /**
+     * @return the number of key-value associations stored in this dictionary
+     */
+    public int size() {
+        return numElems;
+    }
+
+    /**
+     * @return true if and only if this dictionary is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @param key
+     *            The key to look for inside the dictionary
+     * @return the value associated with the key
+     * @throws NoSuchElementException
+     *             if given key does not exist in the dictionary
+     */
+    public V get(long key) throws NoSuchElementException {
+        int slot = find(key);
+
+        if (slot >= 0) {
+            return value(slot);
+        } else {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    /**
+     * @return the value associated with the key, or defaultValue if the key
+     *         does not exist in the dictionary
+     */
+    public V get(long key, V defaultValue) {
+        int slot = find(key);
+        return slot >= 0 ? value(slot) : defaultValue;
+    }
+
+    /**
+     * @return true if and only if the key exists in the dictionary
+     */
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    // The index of the key in the leaf arrays, or -1 if it is absent.
+    private int find(long key) {
+        if (root == NONE) {
+            return -1;
+        }
+
+        int node = root;
+        for (int level = height; level > 0; level--) {
+            node = innerChildren[node * STRIDE + childIndex(node, key)];
+        }
+        int index = search(node, key);
+        return index >= 0 ? node * STRIDE + index : -1;
+    }
+
+    /*
+     * Binary search over the keys of a leaf. Returns the index of the key if
+     * present, or (-(insertion point) - 1) otherwise.
+     */
+    private int search(int leaf, long key) {
+        int base = leaf * STRIDE;
+        int index =
+                Arrays.binarySearch(leafKeys, base, base + leafCounts[leaf],
+                        key);
+        return index >= 0 ? index - base : index + base;
+    }
+
+    // Index of the child of an internal node whose range contains the key.
+    private int childIndex(int node, long key) {
+        int base = node * STRIDE;
+        int index =
+                Arrays.binarySearch(innerKeys, base, base + innerCounts[node],
+                        key);
+        return index >= 0 ? index - base + 1 : -(index + 1) - base;
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     */
+    public void put(long key, V value) {
+        if (root == NONE) {
+            root = newLeaf();
+            height = 0;
+        }
+
+        if (insert(root, height, key, value)) {
+            int newRoot = newInner();
+            int base = newRoot * STRIDE;
+            innerKeys[base] = splitKey;
+            innerChildren[base] = root;
+            innerChildren[base + 1] = splitNode;
+            innerCounts[newRoot] = 1;
+            root = newRoot;
+            height++;
+        }
+    }
+
+    /*
+     * Inserts into the subtree rooted at node, which is level levels above
+     * the leaves. Returns true if the node had to split, in which case
+     * splitKey and splitNode hold the separator and the new right sibling.
+     */
+    private boolean insert(int node, int level, long key, V value) {
+        if (level == 0) {
+            int index = search(node, key);
+            if (index >= 0) {
+                leafValues[node * STRIDE + index] = value;
+                return false;
+            }
+
+            index = -(index + 1);
+            int at = node * STRIDE + index;
+            int count = leafCounts[node];
+            System.arraycopy(leafKeys, at, leafKeys, at + 1, count - index);
+            System.arraycopy(leafValues, at, leafValues, at + 1, count
+                    - index);
+            leafKeys[at] = key;
+            leafValues[at] = value;
+            leafCounts[node] = count + 1;
+            numElems++;
+            modCount++;
+
+            if (count + 1 <= MAX_KEYS) {
+                return false;
+            }
+            splitLeaf(node, index);
+            return true;
+        }
+
+        int index = childIndex(node, key);
+        if (!insert(innerChildren[node * STRIDE + index], level - 1, key,
+                value)) {
+            return false;
+        }
+
+        int base = node * STRIDE;
+        int count = innerCounts[node];
+        System.arraycopy(innerKeys, base + index, innerKeys, base + index + 1,
+                count - index);
+        innerKeys[base + index] = splitKey;
+        System.arraycopy(innerChildren, base + index + 1, innerChildren, base
+                + index + 2, count - index);
+        innerChildren[base + index + 1] = splitNode;
+        innerCounts[node] = count + 1;
+
+        if (count + 1 <= MAX_KEYS) {
+            return false;
+        }
+        splitInner(node);
+        return true;
+    }
+
+    // Splits an overflowing leaf, into which a key was inserted at index.
+    private void splitLeaf(int leaf, int index) {
+        int right = newLeaf();
+        int count = leafCounts[leaf];
+        // A key appended to the last leaf leaves it full.
+        int mid =
+                index == count - 1 && leafNext[leaf] == NONE ? count - 1
+                        : count / 2;
+        int from = leaf * STRIDE + mid;
+        int to = right * STRIDE;
+
+        System.arraycopy(leafKeys, from, leafKeys, to, count - mid);
+        System.arraycopy(leafValues, from, leafValues, to, count - mid);
+        Arrays.fill(leafValues, from, from + count - mid, null);
+        leafCounts[right] = count - mid;
+        leafCounts[leaf] = mid;
+        leafNext[right] = leafNext[leaf];
+        leafNext[leaf] = right;
+        splitKey = leafKeys[to];
+        splitNode = right;
+    }
+
+    private void splitInner(int node) {
+        int right = newInner();
+        int count = innerCounts[node];
+        int mid = count / 2;
+        int base = node * STRIDE;
+        int to = right * STRIDE;
+
+        // The middle key moves up rather than being copied.
+        System.arraycopy(innerKeys, base + mid + 1, innerKeys, to, count - mid
+                - 1);
+        System.arraycopy(innerChildren, base + mid + 1, innerChildren, to,
+                count - mid);
+        innerCounts[right] = count - mid - 1;
+        innerCounts[node] = mid;
+        splitKey = innerKeys[base + mid];
+        splitNode = right;
+    }
+
+    /**
+     * @throws NoSuchElementException
+     *             if the key is not in the dictionary
+     */
+    public void remove(long key) throws NoSuchElementException {
+        if (root == NONE || !delete(root, height, key)) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        if (height == 0) {
+            if (leafCounts[root] == 0) {
+                freeLeaf(root);
+                root = NONE;
+            }
+        } else if (innerCounts[root] == 0) {
+            int oldRoot = root;
+            root = innerChildren[oldRoot * STRIDE];
+            freeInner(oldRoot);
+            height--;
+        }
+        numElems--;
+        modCount++;
+    }
+
+    private boolean delete(int node, int level, long key) {
+        if (level == 0) {
+            int index = search(node, key);
+            if (index < 0) {
+                return false;
+            }
+            removeFromLeaf(node, index);
+            return true;
+        }
+
+        int index = childIndex(node, key);
+        int child = innerChildren[node * STRIDE + index];
+        if (!delete(child, level - 1, key)) {
+            return false;
+        }
+
+        if (level == 1) {
+            if (leafCounts[child] < MIN_KEYS) {
+                rebalanceLeaf(node, index);
+            }
+        } else if (innerCounts[child] < MIN_KEYS) {
+            rebalanceInner(node, index);
+        }
+        return true;
+    }
+
+    private void removeFromLeaf(int leaf, int index) {
+        int at = leaf * STRIDE + index;
+        int count = leafCounts[leaf];
+        System.arraycopy(leafKeys, at + 1, leafKeys, at, count - index - 1);
+        System.arraycopy(leafValues, at + 1, leafValues, at, count - index
+                - 1);
+        leafValues[leaf * STRIDE + count - 1] = null;
+        leafCounts[leaf] = count - 1;
+    }
+
+    // Removes the key at keyIndex and the child at childIndex from a node.
+    private void removeFromInner(int node, int keyIndex, int childIndex) {
+        int base = node * STRIDE;
+        int count = innerCounts[node];
+        System.arraycopy(innerKeys, base + keyIndex + 1, innerKeys, base
+                + keyIndex, count - keyIndex - 1);
+        System.arraycopy(innerChildren, base + childIndex + 1, innerChildren,
+                base + childIndex, count - childIndex);
+        innerCounts[node] = count - 1;
+    }
+
+    // Restores the minimum occupancy of parent's leaf at the given index.
+    private void rebalanceLeaf(int parent, int index) {
+        int base = parent * STRIDE;
+        int child = innerChildren[base + index];
+        int left = index > 0 ? innerChildren[base + index - 1] : NONE;
+        int right =
+                index < innerCounts[parent] ? innerChildren[base + index + 1]
+                        : NONE;
+
+        if (left != NONE && leafCounts[left] > MIN_KEYS) {
+            int last = left * STRIDE + leafCounts[left] - 1;
+            int to = child * STRIDE;
+            int count = leafCounts[child];
+            System.arraycopy(leafKeys, to, leafKeys, to + 1, count);
+            System.arraycopy(leafValues, to, leafValues, to + 1, count);
+            leafKeys[to] = leafKeys[last];
+            leafValues[to] = leafValues[last];
+            leafValues[last] = null;
+            leafCounts[child] = count + 1;
+            leafCounts[left]--;
+            innerKeys[base + index - 1] = leafKeys[to];
+        } else if (right != NONE && leafCounts[right] > MIN_KEYS) {
+            int from = right * STRIDE;
+            int to = child * STRIDE + leafCounts[child];
+            leafKeys[to] = leafKeys[from];
+            leafValues[to] = leafValues[from];
+            leafCounts[child]++;
+            removeFromLeaf(right, 0);
+            innerKeys[base + index] = leafKeys[from];
+        } else if (left != NONE) {
+            mergeLeaves(parent, index - 1, left, child);
+        } else {
+            mergeLeaves(parent, index, child, right);
+        }
+    }
+
+    // Moves all of right into left and drops the separator between them.
+    private void mergeLeaves(int parent, int sepIndex, int left, int right) {
+        int from = right * STRIDE;
+        int to = left * STRIDE + leafCounts[left];
+        System.arraycopy(leafKeys, from, leafKeys, to, leafCounts[right]);
+        System.arraycopy(leafValues, from, leafValues, to, leafCounts[right]);
+        Arrays.fill(leafValues, from, from + leafCounts[right], null);
+        leafCounts[left] += leafCounts[right];
+        leafNext[left] = leafNext[right];
+        freeLeaf(right);
+        removeFromInner(parent, sepIndex, sepIndex + 1);
+    }
+
+    // Restores the minimum occupancy of parent's internal child at index.
+    private void rebalanceInner(int parent, int index) {
+        int base = parent * STRIDE;
+        int child = innerChildren[base + index];
+        int left = index > 0 ? innerChildren[base + index - 1] : NONE;
+        int right =
+                index < innerCounts[parent] ? innerChildren[base + index + 1]
+                        : NONE;
+        int at = child * STRIDE;
+        int count = innerCounts[child];
+
+        if (left != NONE && innerCounts[left] > MIN_KEYS) {
+            int last = left * STRIDE + innerCounts[left] - 1;
+            System.arraycopy(innerChildren, at, innerChildren, at + 1,
+                    count + 1);
+            innerChildren[at] = innerChildren[last + 1];
+            System.arraycopy(innerKeys, at, innerKeys, at + 1, count);
+            innerKeys[at] = innerKeys[base + index - 1];
+            innerCounts[child] = count + 1;
+            innerKeys[base + index - 1] = innerKeys[last];
+            innerCounts[left]--;
+        } else if (right != NONE && innerCounts[right] > MIN_KEYS) {
+            int from = right * STRIDE;
+            innerKeys[at + count] = innerKeys[base + index];
+            innerChildren[at + count + 1] = innerChildren[from];
+            innerCounts[child] = count + 1;
+            innerKeys[base + index] = innerKeys[from];
+            removeFromInner(right, 0, 0);
+        } else if (left != NONE) {
+            mergeInner(parent, index - 1, left, child);
+        } else {
+            mergeInner(parent, index, child, right);
+        }
+    }
+
+    private void mergeInner(int parent, int sepIndex, int left, int right) {
+        int from = right * STRIDE;
+        int to = left * STRIDE + innerCounts[left];
+        int count = innerCounts[right];
+        innerKeys[to] = innerKeys[parent * STRIDE + sepIndex];
+        System.arraycopy(innerKeys, from, innerKeys, to + 1, count);
+        System.arraycopy(innerChildren, from, innerChildren, to + 1,
+                count + 1);
+        innerCounts[left] += count + 1;
+        freeInner(right);
+        removeFromInner(parent, sepIndex, sepIndex + 1);
+    }
+
+    private int newLeaf() {
+        int leaf = freeLeaf;
+        if (leaf != NONE) {
+            freeLeaf = leafNext[leaf];
+        } else {
+            if (leafSlots == leafCounts.length) {
+                int capacity = leafSlots * 2;
+                leafKeys = Arrays.copyOf(leafKeys, capacity * STRIDE);
+                leafValues = Arrays.copyOf(leafValues, capacity * STRIDE);
+                leafCounts = Arrays.copyOf(leafCounts, capacity);
+                leafNext = Arrays.copyOf(leafNext, capacity);
+            }
+            leaf = leafSlots++;
+        }
+        leafCounts[leaf] = 0;
+        leafNext[leaf] = NONE;
+        return leaf;
+    }
+
+    private void freeLeaf(int leaf) {
+        leafNext[leaf] = freeLeaf;
+        freeLeaf = leaf;
+    }
+
+    private int newInner() {
+        int node = freeInner;
+        if (node != NONE) {
+            freeInner = innerChildren[node * STRIDE];
+        } else {
+            if (innerSlots == innerCounts.length) {
+                int capacity = innerSlots * 2;
+                innerKeys = Arrays.copyOf(innerKeys, capacity * STRIDE);
+                innerChildren = Arrays.copyOf(innerChildren,
+                        capacity * STRIDE);
+                innerCounts = Arrays.copyOf(innerCounts, capacity);
+            }
+            node = innerSlots++;
+        }
+        innerCounts[node] = 0;
+        return node;
+    }
+
+    private void freeInner(int node) {
+        innerChildren[node * STRIDE] = freeInner;
+        freeInner = node;
+    }
+
+    /**
+     * Removes all entries from the dictionary, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(leafValues, 0, leafSlots * STRIDE, null);
+        root = NONE;
+        height = 0;
+        leafSlots = 0;
+        freeLeaf = NONE;
+        innerSlots = 0;
+        freeInner = NONE;
+        numElems = 0;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) leafValues[slot];
+    }
+
+    private int leftmostLeaf() {
+        int node = root;
+        for (int level = height; level > 0; level--) {
+            node = innerChildren[node * STRIDE];
+        }
+        return node;
+    }
+
+    /**
+     * @return a cursor positioned before the entry with the smallest key
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /*
+     * Iterates over the entries in ascending order by key without boxing.
+     * Call next() to advance to each entry before reading it.
+     */
+    public class Cursor {
+
+        private int leaf;
+        private int index;
+        private int oldModCount;
+
+        private Cursor() {
+            this.leaf = root == NONE ? NONE : leftmostLeaf();
+            this.index = -1;
+            this.oldModCount = modCount;
+        }
+
+        /**
+         * @return true if the cursor moved to another entry, false if it has
+         *         passed the last one
+         */
+        public boolean next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (leaf == NONE) {
+                return false;
+            }
+            if (++index < leafCounts[leaf]) {
+                return true;
+            }
+            leaf = leafNext[leaf];
+            index = 0;
+            return leaf != NONE;
+        }
+
+        public long key() {
+            checkPosition();
+            return leafKeys[leaf * STRIDE + index];
+        }
+
+        public V value() {
+            checkPosition();
+            return LongObjectDictionary.this.value(leaf * STRIDE + index);
+        }
+
+        private void checkPosition() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (leaf == NONE || index < 0) {
+                throw new IllegalStateException("Cursor is not on an entry");
+            }
+        }
+    }
+
+    public String toString() {
+        StringBuilder res = new StringBuilder("[");
+        for (Cursor cursor = cursor(); cursor.next();) {
+            res.append(cursor.key()).append(" -> ").append(cursor.value())
+                    .append(", ");
+        }
+        return res.append("]").toString();
+    }
+}
@@ -0,0 +1,707 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Log-structured merge tree implementation of the Dictionary interface, for
+ * data sets that are written more than read and may be larger than memory.
+ * Changes go to a memtable, a BinarySearchTree kept balanced by its automatic
+ * rebalancing, where a removal is recorded by a tombstone rather than by
+ * removing the key. When the memtable holds memtableSize keys it is frozen
+ * and a background thread writes it to a new immutable sorted run file in the
+ * directory, in one sequential pass, while a fresh memtable takes new writes.
+ *
+ * Compaction is tiered: a flushed run starts in tier 0, and whenever fanout
+ * runs accumulate in a tier, the background thread merges them into a single
+ * run in the next tier up. Each entry is therefore rewritten about
+ * log_fanout(n / memtableSize) times, always sequentially. Tombstones are
+ * dropped when a merge includes the oldest run, as nothing older remains for
+ * them to hide.
+ *
+ * get looks in the memtable, the frozen memtable and then each run from
+ * newest to oldest, stopping at the first that mentions the key; a run
+ * finds a key with its in-memory sparse index and a read of one block.
+ * iterator() is a k-way merge of all of these in which the newest entry for
+ * each key wins. Knowing whether a key is present needs a lookup, so remove
+ * costs as much as a get, and size() counts the entries by merging everything
+ * once and caching the result until the next change.
+ *
+ * The memtable is lost in a crash: close() flushes it, and reopening the
+ * directory finds the runs again. Runs are written under a temporary name
+ * and renamed once they are on disk, so a crash during a flush or compaction
+ * loses nothing else. Like the other dictionaries, this is not thread-safe,
+ * apart from its own background thread. Iterators are fail-fast. The runs a
+ * compaction replaces are kept open until the next change, after which any
+ * iterator that could still read them would throw
+ * ConcurrentModificationException, so compaction never disturbs an iterator.
+ * Duplicate keys are not permitted.
+ */
+public class LsmDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V>, Closeable {
+
+    private static final int DEFAULT_MEMTABLE_SIZE = 1 << 16;
+    private static final int DEFAULT_FANOUT = 4;
+    private static final double MEMTABLE_BALANCE = 2;
+    private static final String RUN_PREFIX = "run-";
+    private static final String RUN_SUFFIX = ".sst";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int memtableSize;
+    private final int fanout;
+    private final ExecutorService background;
+    private BinarySearchTree<K, Object> memtable;
+    private BinarySearchTree<K, Object> frozen;
+    private List<SortedRun<K, V>> runs;
+    private List<SortedRun<K, V>> retired;
+    private long nextRun;
+    private int modCount;
+    private int size;
+    private int sizeModCount;
+    private Throwable failure;
+    private boolean closed;
+
+    public LsmDictionary(File directory, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        this(directory, keyCodec, valueCodec, DEFAULT_MEMTABLE_SIZE,
+                DEFAULT_FANOUT);
+    }
+
+    /**
+     * Opens the dictionary stored in the given directory, creating it if
+     * necessary.
+     *
+     * @param memtableSize
+     *            the number of keys at which the memtable is flushed
+     * @param fanout
+     *            the number of runs in a tier that are merged into one, which
+     *            must be at least 2
+     * @throws IOException
+     *             if the runs in the directory cannot be read
+     */
+    public LsmDictionary(File directory, Codec<K> keyCodec,
+            Codec<V> valueCodec, int memtableSize, int fanout)
+            throws IOException {
+        if (memtableSize < 1 || fanout < 2) {
+            throw new IllegalArgumentException(
+                    "Memtable size must be positive and fanout at least 2");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory);
+        }
+
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.memtableSize = memtableSize;
+        this.fanout = fanout;
+        this.memtable = newMemtable();
+        this.frozen = null;
+        this.modCount = 0;
+        this.sizeModCount = -1;
+        this.failure = null;
+        this.closed = false;
+        openRuns();
+
+        this.background =
+                Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread =
+                                new Thread(r, "LsmDictionary " + directory);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    private BinarySearchTree<K, Object> newMemtable() {
+        BinarySearchTree<K, Object> tree = new BinarySearchTree<K, Object>();
+        tree.setAutoRebalance(MEMTABLE_BALANCE);
+        return tree;
+    }
+
+    /*
+     * Opens the runs in the directory from newest to oldest. A flush or
+     * compaction interrupted while writing leaves a temporary file, and one
+     * interrupted before it deleted its input leaves runs whose sequence
+     * numbers lie within the range of a later run. Both are deleted.
+     */
+    private void openRuns() throws IOException {
+        for (long id : Directories.list(directory, RUN_PREFIX, RUN_SUFFIX
+                + TEMPORARY_SUFFIX)) {
+            new File(directory, RUN_PREFIX + id + RUN_SUFFIX
+                    + TEMPORARY_SUFFIX).delete();
+        }
+        long[] ids = Directories.list(directory, RUN_PREFIX, RUN_SUFFIX);
+        runs = new ArrayList<SortedRun<K, V>>();
+        nextRun = ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+
+        List<SortedRun<K, V>> kept = new ArrayList<SortedRun<K, V>>();
+        try {
+            for (int i = ids.length - 1; i >= 0; i--) {
+                SortedRun<K, V> run =
+                        SortedRun.open(runFile(ids[i]), keyCodec, valueCodec);
+                boolean obsolete = false;
+                for (SortedRun<K, V> later : kept) {
+                    obsolete |=
+                            run.getMinSequence() >= later.getMinSequence()
+                                    && run.getMaxSequence() <= later
+                                            .getMaxSequence();
+                }
+                if (obsolete) {
+                    run.close();
+                    run.getFile().delete();
+                } else {
+                    kept.add(run);
+                }
+            }
+        } catch (IOException e) {
+            for (SortedRun<K, V> run : kept) {
+                run.close();
+            }
+            throw e;
+        }
+
+        Collections.sort(kept, new Comparator<SortedRun<K, V>>() {
+            @Override
+            public int compare(SortedRun<K, V> a, SortedRun<K, V> b) {
+                return Long.compare(b.getMaxSequence(), a.getMaxSequence());
+            }
+        });
+        runs = kept;
+        retired = new ArrayList<SortedRun<K, V>>();
+    }
+
+    @Override
+    public int size() {
+        if (sizeModCount != modCount) {
+            int n = 0;
+            for (Iterator<DictionaryEntry<K, V>> it = iterator(); it
+                    .hasNext(); it.next()) {
+                n++;
+            }
+            size = n;
+            sizeModCount = modCount;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return sizeModCount == modCount ? size == 0 : !iterator().hasNext();
+    }
+
+    /**
+     * @return the entry with the least key, or null if the dictionary is
+     *         empty
+     */
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        Iterator<DictionaryEntry<K, V>> it = iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) throws NoSuchElementException {
+        Object value = find(key);
+        if (value == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+        return (V) value;
+    }
+
+    // The newest value for the key, or null if it is absent or removed.
+    private synchronized Object find(K key) {
+        checkFailure();
+        Object value = findIn(memtable, key);
+        if (value == null && frozen != null) {
+            value = findIn(frozen, key);
+        }
+
+        try {
+            for (int i = 0; value == null && i < runs.size(); i++) {
+                value = runs.get(i).find(key);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return value == SortedRun.TOMBSTONE ? null : value;
+    }
+
+    private static <K extends Comparable<? super K>> Object findIn(
+            BinarySearchTree<K, Object> tree, K key) {
+        DictionaryEntry<K, Object> entry = tree.floor(key);
+        return entry != null && entry.getKey().compareTo(key) == 0 ? entry
+                .getValue() : null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        write(key, value);
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        if (find(key) == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+        write(key, SortedRun.TOMBSTONE);
+    }
+
+    private synchronized void write(K key, Object value) {
+        checkOpen();
+        memtable.put(key, value);
+        modCount++;
+        deleteRetired();
+        if (memtable.size() >= memtableSize) {
+            freeze();
+        }
+    }
+
+    /*
+     * Hands the memtable to the background thread to flush, first waiting
+     * for the previous one to finish so that at most one is frozen.
+     */
+    private synchronized void freeze() {
+        awaitFlushed();
+        frozen = memtable;
+        memtable = newMemtable();
+
+        final BinarySearchTree<K, Object> flushing = frozen;
+        background.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush(flushing);
+                    compact();
+                } catch (Throwable e) {
+                    synchronized (LsmDictionary.this) {
+                        failure = e;
+                        LsmDictionary.this.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized void awaitFlushed() {
+        boolean interrupted = false;
+        while (frozen != null) {
+            checkFailure();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Writes a frozen memtable to a run in tier 0.
+    private void flush(BinarySearchTree<K, Object> tree) throws IOException {
+        long id;
+        boolean oldest;
+        synchronized (this) {
+            id = nextRun++;
+            oldest = runs.isEmpty();
+        }
+
+        SortedRun<K, V> run =
+                SortedRun.write(runFile(id), 0, id, id, tree.iterator(),
+                        oldest, keyCodec, valueCodec);
+        synchronized (this) {
+            List<SortedRun<K, V>> newRuns = new ArrayList<SortedRun<K, V>>();
+            if (run != null) {
+                newRuns.add(run);
+            }
+            newRuns.addAll(runs);
+            runs = newRuns;
+            frozen = null;
+            notifyAll();
+        }
+    }
+
+    /*
+     * Merges the runs of the lowest tier that holds fanout of them into one
+     * run in the tier above, and repeats until no tier is full.
+     */
+    private void compact() throws IOException {
+        while (true) {
+            List<SortedRun<K, V>> current;
+            long id;
+            synchronized (this) {
+                current = runs;
+            }
+
+            List<SortedRun<K, V>> inputs = fullTier(current);
+            if (inputs == null) {
+                return;
+            }
+            synchronized (this) {
+                id = nextRun++;
+            }
+
+            List<Iterator<? extends DictionaryEntry<K, ?>>> sources =
+                    new ArrayList<Iterator<? extends DictionaryEntry<K, ?>>>();
+            long minSequence = Long.MAX_VALUE;
+            long maxSequence = Long.MIN_VALUE;
+            for (SortedRun<K, V> run : inputs) {
+                sources.add(run.iterator());
+                minSequence = Math.min(minSequence, run.getMinSequence());
+                maxSequence = Math.max(maxSequence, run.getMaxSequence());
+            }
+            boolean oldest =
+                    inputs.get(inputs.size() - 1) == current
+                            .get(current.size() - 1);
+            SortedRun<K, V> merged =
+                    SortedRun.write(runFile(id), inputs.get(0).getTier() + 1,
+                            minSequence, maxSequence,
+                            new MergeIterator<K>(sources), oldest, keyCodec,
+                            valueCodec);
+
+            synchronized (this) {
+                List<SortedRun<K, V>> newRuns =
+                        new ArrayList<SortedRun<K, V>>();
+                for (SortedRun<K, V> run : runs) {
+                    if (run == inputs.get(0) && merged != null) {
+                        newRuns.add(merged);
+                    }
+                    if (!inputs.contains(run)) {
+                        newRuns.add(run);
+                    }
+                }
+                runs = newRuns;
+                retired.addAll(inputs);
+            }
+        }
+    }
+
+    // The runs of the lowest tier holding at least fanout, newest first.
+    private List<SortedRun<K, V>> fullTier(List<SortedRun<K, V>> current) {
+        int lowest = Integer.MAX_VALUE;
+        for (SortedRun<K, V> run : current) {
+            lowest = Math.min(lowest, run.getTier());
+        }
+
+        for (int tier = lowest; tier != Integer.MAX_VALUE; tier++) {
+            List<SortedRun<K, V>> inTier = new ArrayList<SortedRun<K, V>>();
+            boolean higher = false;
+            for (SortedRun<K, V> run : current) {
+                if (run.getTier() == tier) {
+                    inTier.add(run);
+                }
+                higher |= run.getTier() > tier;
+            }
+            if (inTier.size() >= fanout) {
+                return inTier;
+            }
+            if (!higher) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Flushes the memtable to a run and waits until it, and any compaction
+     * it makes due, has finished.
+     *
+     * @throws UncheckedIOException
+     *             if a run cannot be written
+     */
+    public void flush() {
+        synchronized (this) {
+            checkOpen();
+            if (!memtable.isEmpty()) {
+                freeze();
+            }
+        }
+        awaitBackground();
+    }
+
+    private void awaitBackground() {
+        Runnable done = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        try {
+            background.submit(done).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        synchronized (this) {
+            checkFailure();
+        }
+    }
+
+    /**
+     * Removes every entry, deleting every run once any flush or compaction
+     * in progress has finished.
+     */
+    @Override
+    public void clear() {
+        synchronized (this) {
+            checkOpen();
+        }
+        awaitBackground();
+
+        synchronized (this) {
+            memtable = newMemtable();
+            retired.addAll(runs);
+            runs = new ArrayList<SortedRun<K, V>>();
+            modCount++;
+            deleteRetired();
+        }
+    }
+
+    // Closes and deletes the runs replaced by compaction or clear().
+    private void deleteRetired() {
+        if (retired.isEmpty()) {
+            return;
+        }
+        try {
+            for (SortedRun<K, V> run : retired) {
+                run.close();
+                run.getFile().delete();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            retired.clear();
+        }
+    }
+
+    /**
+     * Returns an iterator over the entries in ascending order by key, which
+     * merges the memtables and every run. It throws
+     * ConcurrentModificationException if the dictionary is changed, and
+     * UncheckedIOException if a run cannot be read.
+     */
+    @Override
+    public synchronized Iterator<DictionaryEntry<K, V>> iterator() {
+        checkFailure();
+        List<Iterator<? extends DictionaryEntry<K, ?>>> sources =
+                new ArrayList<Iterator<? extends DictionaryEntry<K, ?>>>();
+        sources.add(memtable.iterator());
+        if (frozen != null) {
+            sources.add(frozen.iterator());
+        }
+        for (SortedRun<K, V> run : runs) {
+            sources.add(run.iterator());
+        }
+        return new DictionaryIterator(new MergeIterator<K>(sources));
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Dictionary is closed");
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure instanceof IOException) {
+            throw new UncheckedIOException("Background flush failed",
+                    (IOException) failure);
+        } else if (failure != null) {
+            throw new IllegalStateException("Background flush failed",
+                    failure);
+        }
+    }
+
+    /**
+     * Flushes the memtable, waits for compaction to finish and closes the
+     * runs. The directory can then be reopened by a new LsmDictionary.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (failure == null && !memtable.isEmpty()) {
+                freeze();
+            }
+            closed = true;
+        }
+
+        background.shutdown();
+        boolean interrupted = false;
+        while (!background.isTerminated()) {
+            try {
+                background.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            for (SortedRun<K, V> run : runs) {
+                run.close();
+            }
+            for (SortedRun<K, V> run : retired) {
+                run.close();
+            }
+            checkFailure();
+        }
+    }
+
+    private File runFile(long id) {
+        return new File(directory, RUN_PREFIX + id + RUN_SUFFIX);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (DictionaryEntry<K, V> entry : this) {
+            sb.append(entry.getKey() + " ");
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Merges iterators over sorted entries, which are given newest first.
+     * Where several have the same key, only the newest entry is returned.
+     * Tombstones are returned like any other entry.
+     */
+    private static class MergeIterator<K extends Comparable<? super K>>
+            implements Iterator<DictionaryEntry<K, ?>> {
+
+        private static class Cursor<K> {
+            final Iterator<? extends DictionaryEntry<K, ?>> source;
+            final int age;
+            DictionaryEntry<K, ?> entry;
+
+            Cursor(Iterator<? extends DictionaryEntry<K, ?>> source, int age) {
+                this.source = source;
+                this.age = age;
+                this.entry = source.next();
+            }
+
+            boolean advance() {
+                entry = source.hasNext() ? source.next() : null;
+                return entry != null;
+            }
+        }
+
+        private final PriorityQueue<Cursor<K>> heap;
+
+        MergeIterator(List<Iterator<? extends DictionaryEntry<K, ?>>> sources) {
+            this.heap =
+                    new PriorityQueue<Cursor<K>>(Math.max(1, sources.size()),
+                            new Comparator<Cursor<K>>() {
+                                @Override
+                                public int compare(Cursor<K> a, Cursor<K> b) {
+                                    int cmp =
+                                            a.entry.getKey().compareTo(
+                                                    b.entry.getKey());
+                                    return cmp != 0 ? cmp : a.age - b.age;
+                                }
+                            });
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i).hasNext()) {
+                    heap.add(new Cursor<K>(sources.get(i), i));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heap.isEmpty();
+        }
+
+        @Override
+        public DictionaryEntry<K, ?> next() {
+            Cursor<K> top = heap.poll();
+            if (top == null) {
+                throw new NoSuchElementException();
+            }
+
+            DictionaryEntry<K, ?> entry = top.entry;
+            while (!heap.isEmpty()
+                    && heap.peek().entry.getKey().compareTo(entry.getKey())
+                            == 0) {
+                Cursor<K> older = heap.poll();
+                if (older.advance()) {
+                    heap.add(older);
+                }
+            }
+            if (top.advance()) {
+                heap.add(top);
+            }
+            return entry;
+        }
+    }
+
+    // Skips tombstones and checks for changes made while iterating.
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private final MergeIterator<K> merged;
+        private final int expectedModCount;
+        private DictionaryEntry<K, ?> next;
+
+        public DictionaryIterator(MergeIterator<K> merged) {
+            this.merged = merged;
+            this.expectedModCount = modCount;
+            this.next = advance();
+        }
+
+        private DictionaryEntry<K, ?> advance() {
+            while (merged.hasNext()) {
+                DictionaryEntry<K, ?> entry = merged.next();
+                if (entry.getValue() != SortedRun.TOMBSTONE) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public DictionaryEntry<K, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            DictionaryEntry<K, ?> entry = next;
+            next = advance();
+            return new ImmutableDictionaryEntry<K, V>(entry.getKey(),
+                    (V) entry.getValue());
+        }
+    }
+}
@@ -1,47 +1,375 @@
 package dictionary;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import dictionary.InsertComplexities.InstrumentedKey;
+import dictionary.InsertComplexities.Operation;
+import dictionary.InsertComplexities.Trial;
 
+/*
+ * Measures the cost of dictionary operations over a range of sizes and writes
+ * one .dat file per implementation and operation, for plotting with
+ * comparison.plt. Each line holds a size followed by the mean, median, 99th
+ * percentile and maximum comparison count and then the same statistics in
+ * nanoseconds.
+ *
+ * Repetitions run in parallel on a fork-join pool. Every repetition has its
+ * own InsertComplexities, dictionary and seeded Random, so results depend only
+ * on the seed and not on the number of threads. Each thread runs one
+ * repetition at a time to the maximum size and merges its measurements of the
+ * sampled sizes into a summary per size: totals and maxima for the means and
+ * maxima, and log-linear histograms as in LatencyHistogram for the median and
+ * 99th percentile, which are exact below 64 and otherwise at most 1/32 high.
+ * Memory thus holds threads dictionaries and size / every summaries, however
+ * many repetitions there are. A size is summarised only once every
+ * repetition has passed it, and repetitions run one after another to keep
+ * their dictionaries out of memory, so each file is written once all its
+ * repetitions have finished rather than streamed; every defaults to a stride
+ * that keeps the summaries to at most 1000 sizes.
+ *
+ * Arguments are name=value pairs, where a value may be a comma-separated list:
+ *
+ *   size=500                maximum dictionary size
+ *   reps=500                repetitions at each size
+ *   impl=OrderedLinkedList  implementations (default: all)
+ *   op=INSERT,GET_HIT       operations (default: INSERT)
+ *   seed=1                  seed for the repetitions' Randoms
+ *   out=.                   output directory (default: user.dir)
+ *   threads=8               threads (default: available processors)
+ *   block=1000              sizes each repetition measures at a time,
+ *                           which sizes each thread's scratch arrays
+ *   every=1                 write only every n-th size (default: the
+ *                           smallest stride giving at most 1000 sizes)
+ */
 public class Main {
 
-    private static final int MAX_SIZE = 500;
-    private static final int REPITITIONS = 500;
+    // The most sizes summarised when every is not given.
+    private static final int MAX_ROWS = 1000;
+
+    private enum Implementation {
+        ORDERED_LINKED_LIST("OrderedLinkedList") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new OrderedLinkedList<InstrumentedKey, Integer>();
+            }
+        },
+        BINARY_SEARCH_TREE("BinarySearchTree") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new BinarySearchTree<InstrumentedKey, Integer>();
+            }
+        },
+        RED_BLACK_TREE("RedBlackTree") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new RedBlackTree<InstrumentedKey, Integer>();
+            }
+        },
+        SKIP_LIST("SkipListDictionary") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new SkipListDictionary<InstrumentedKey, Integer>(0.5,
+                        random);
+            }
+        },
+        B_PLUS_TREE("BPlusTreeDictionary") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new BPlusTreeDictionary<InstrumentedKey, Integer>();
+            }
+        },
+        LINKED_HASH_INDEXED("LinkedHashIndexedDictionary") {
+            @Override
+            Dictionary<InstrumentedKey, Integer> create(Random random) {
+                return new LinkedHashIndexedDictionary<InstrumentedKey,
+                        Integer>();
+            }
+        };
+
+        private final String className;
+
+        private Implementation(String className) {
+            this.className = className;
+        }
+
+        abstract Dictionary<InstrumentedKey, Integer> create(Random random);
+
+        static Implementation parse(String name) {
+            for (Implementation impl : values()) {
+                if (impl.className.equalsIgnoreCase(name)
+                        || impl.name().equalsIgnoreCase(name)) {
+                    return impl;
+                }
+            }
+            throw new IllegalArgumentException("Unknown implementation: "
+                    + name);
+        }
+    }
+
+    private int maxSize = 500;
+    private int repetitions = 500;
+    private List<Implementation> impls = Arrays.asList(Implementation
+            .values());
+    private List<Operation> ops = Arrays.asList(Operation.INSERT);
+    private long seed = new Random().nextLong();
+    private File outputDir = new File(System.getProperty("user.dir"));
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int blockSize = 1000;
+    private int every = 0;
 
     public static void main(String[] args) throws FileNotFoundException {
+        Main main = new Main(args);
+        ForkJoinPool pool = new ForkJoinPool(main.threads);
+
+        try {
+            for (Implementation impl : main.impls) {
+                for (Operation op : main.ops) {
+                    main.run(pool, impl, op);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Main(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value: "
+                        + arg);
+            }
+            String name = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+
+            if (name.equals("size")) {
+                maxSize = Integer.parseInt(value);
+            } else if (name.equals("reps")) {
+                repetitions = Integer.parseInt(value);
+            } else if (name.equals("impl")) {
+                impls = new ArrayList<Implementation>();
+                for (String impl : value.split(",")) {
+                    impls.add(Implementation.parse(impl.trim()));
+                }
+            } else if (name.equals("op")) {
+                ops = new ArrayList<Operation>();
+                for (String op : value.split(",")) {
+                    ops.add(Operation.valueOf(op.trim().toUpperCase(
+                            Locale.ROOT)));
+                }
+            } else if (name.equals("seed")) {
+                seed = Long.parseLong(value);
+            } else if (name.equals("out")) {
+                outputDir = new File(value);
+            } else if (name.equals("threads")) {
+                threads = Integer.parseInt(value);
+            } else if (name.equals("block")) {
+                blockSize = Integer.parseInt(value);
+            } else if (name.equals("every")) {
+                every = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+
+        if (every == 0) {
+            every = Math.max((maxSize + MAX_ROWS - 1) / MAX_ROWS, 1);
+        }
+        if (maxSize < 1 || repetitions < 1 || threads < 1 || blockSize < 1
+                || every < 1) {
+            throw new IllegalArgumentException(
+                    "Sizes, counts and threads must be positive");
+        }
+    }
+
+    private void run(ForkJoinPool pool, Implementation impl, Operation op)
+            throws FileNotFoundException {
+        // The same seeds for every run, so implementations see the same keys.
+        Random seeds = new Random(seed);
+        long[] trialSeeds = new long[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            trialSeeds[i] = seeds.nextLong();
+        }
+
+        int rows = (maxSize + every - 1) / every;
+        Summary[] summaries = new Summary[rows];
+        for (int r = 0; r < rows; r++) {
+            summaries[r] = new Summary();
+        }
+        pool.invoke(new TrialTask(impl, op, trialSeeds, summaries, 0,
+                repetitions));
+
+        String fileName =
+                op == Operation.INSERT ? impl.className + ".dat"
+                        : impl.className + "-" + op + ".dat";
+        PrintStream pS =
+                new PrintStream(new BufferedOutputStream(new FileOutputStream(
+                        new File(outputDir, fileName))));
+        try {
+            pS.println("# size\tmean\tmedian\tp99\tmax"
+                    + "\tmeanNs\tmedianNs\tp99Ns\tmaxNs");
+            for (int r = 0; r < rows; r++) {
+                Summary summary = summaries[r];
+                pS.println(String.format(Locale.ROOT,
+                        "%d\t%.3f\t%d\t%d\t%d\t%.1f\t%d\t%d\t%d", r * every,
+                        summary.comparisons.getMean(),
+                        summary.comparisons.getValueAtQuantile(0.5),
+                        summary.comparisons.getValueAtQuantile(0.99),
+                        summary.comparisons.getMax(),
+                        summary.nanos.getMean(),
+                        summary.nanos.getValueAtQuantile(0.5),
+                        summary.nanos.getValueAtQuantile(0.99),
+                        summary.nanos.getMax()));
+            }
+        } finally {
+            pS.close();
+        }
+        System.out.println("Wrote " + fileName);
+    }
+
+    /*
+     * The measurements of every repetition at one size, for the comparison
+     * counts and for the nanoseconds.
+     */
+    private static class Summary {
+
+        final Samples comparisons = new Samples();
+        final Samples nanos = new Samples();
+
+        synchronized void add(int count, long time) {
+            comparisons.add(count);
+            nanos.add(time);
+        }
+    }
+
+    /*
+     * The count, total and maximum of some non-negative samples, and their
+     * histogram in the buckets of LatencyHistogram. Only the range of buckets
+     * between the lowest and highest sample is allocated, as the samples at
+     * one size tend to lie close together.
+     */
+    private static class Samples {
+
+        private long count;
+        private double total;
+        private long max;
+        private int[] buckets = new int[0];
+        private int lowest;
+
+        void add(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            count++;
+            total += value;
+            max = Math.max(max, value);
+
+            int index = LatencyHistogram.indexOf(value);
+            if (buckets.length == 0) {
+                buckets = new int[1];
+                lowest = index;
+            } else if (index < lowest) {
+                int[] grown = new int[buckets.length + lowest - index];
+                System.arraycopy(buckets, 0, grown, lowest - index,
+                        buckets.length);
+                buckets = grown;
+                lowest = index;
+            } else if (index - lowest >= buckets.length) {
+                buckets = Arrays.copyOf(buckets, index - lowest + 1);
+            }
+            buckets[index - lowest]++;
+        }
+
+        double getMean() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        // The sample at the quantile by the nearest-rank method, to within
+        // the precision of its bucket, never less than the true value.
+        long getValueAtQuantile(double quantile) {
+            long rank = Math.max((long) Math.ceil(quantile * count), 1);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(
+                            LatencyHistogram.highestValueAt(lowest + i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /*
+     * Runs the repetitions in [lo, hi), splitting the range until each task
+     * holds a single repetition, which creates its dictionary and runs it to
+     * the maximum size. A worker finishes one repetition before it starts
+     * another, so at most one dictionary per thread is alive at a time.
+     */
+    private class TrialTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Implementation impl;
+        private final Operation op;
+        private final long[] seeds;
+        private final Summary[] summaries;
+        private final int lo, hi;
+
+        public TrialTask(Implementation impl, Operation op, long[] seeds,
+                Summary[] summaries, int lo, int hi) {
+            this.impl = impl;
+            this.op = op;
+            this.seeds = seeds;
+            this.summaries = summaries;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                runTrial(lo);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new TrialTask(impl, op, seeds, summaries, lo, mid),
+                    new TrialTask(impl, op, seeds, summaries, mid, hi));
+        }
+
+        // Summarises the sampled sizes of repetition i, a block at a time.
+        private void runTrial(int i) {
+            Random random = new Random(seeds[i]);
+            Trial trial =
+                    new InsertComplexities(random).newTrial(op,
+                            impl.create(random));
+            int[] counts = new int[blockSize];
+            long[] times = new long[blockSize];
 
-        Random rand = new Random();
-        InsertComplexities iC = new InsertComplexities(rand);
-        PrintStream pS;
-
-        File oFile =
-                new File(System.getProperty("user.dir")
-                        + "\\OrderedLinkedList.dat");
-
-        int[] oComplexities =
-                iC.getInsertComplexities(
-                        new OrderedLinkedList<InstrumentedKey, Integer>(),
-                        MAX_SIZE, REPITITIONS);
-        pS = new PrintStream(oFile);
-        for (int i = 0; i < REPITITIONS; i++) {
-            pS.println(i + "\t" + oComplexities[i]);
-        }
-
-        File bFile =
-                new File(System.getProperty("user.dir")
-                        + "\\BinarySearchTree.dat");
-
-        int[] bComplexities =
-                iC.getInsertComplexities(
-                        new BinarySearchTree<InstrumentedKey, Integer>(),
-                        MAX_SIZE, REPITITIONS);
-        pS = new PrintStream(bFile);
-        for (int i = 0; i < REPITITIONS; i++) {
-            pS.println(i + "\t" + bComplexities[i]);
+            for (int from = 0; from < maxSize; from += blockSize) {
+                int length = Math.min(blockSize, maxSize - from);
+                trial.step(length, counts, times, 0);
+                int first = (from + every - 1) / every * every - from;
+                for (int j = first; j < length; j += every) {
+                    summaries[(from + j) / every].add(counts[j], times[j]);
+                }
+            }
         }
     }
 }
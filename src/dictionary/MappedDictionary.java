@@ -0,0 +1,481 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/*
+ * Persistent implementation of the Dictionary interface whose nodes live in a
+ * memory-mapped file rather than on the Java heap. The nodes form a treap: a
+ * binary search tree ordered by key that is also a heap ordered by a random
+ * priority stored in each node, which keeps the expected depth O(log n) for
+ * any insertion order without storing any balance information that would
+ * need rewriting. Keys and values are stored in the binary form produced by
+ * the given codecs and decoded on demand, so the heap footprint stays constant
+ * whatever the number of entries.
+ *
+ * The file is mapped in fixed-size segments, none of which a node may
+ * straddle, and grows one segment at a time. Reopening an existing file only
+ * maps it; nothing is read or rebuilt until it is accessed. Space freed by
+ * remove, or by replacing a value with a larger one, is not reused until
+ * clear() is called.
+ *
+ * Changes reach the disk when the operating system writes back the mapped
+ * pages, or on force() and close(). A crash in the middle of an update can
+ * leave the file inconsistent. Duplicate keys are not permitted.
+ */
+public class MappedDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V>, Closeable {
+
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+    private static final int MAGIC = 0x444D4150;
+    private static final int FORMAT_VERSION = 1;
+
+    // Header layout.
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_SEGMENT_SIZE = 8;
+    private static final int HEADER_SIZE_FIELD = 12;
+    private static final int HEADER_ROOT = 16;
+    private static final int HEADER_END = 24;
+    private static final int HEADER_SIZE = 32;
+
+    // Node layout, followed by the key bytes.
+    private static final int NODE_LEFT = 0;
+    private static final int NODE_RIGHT = 8;
+    private static final int NODE_VALUE = 16;
+    private static final int NODE_PRIORITY = 24;
+    private static final int NODE_KEY_LENGTH = 28;
+    private static final int NODE_KEY = 32;
+
+    // Value record layout, followed by the value bytes.
+    private static final int VALUE_CAPACITY = 0;
+    private static final int VALUE_LENGTH = 4;
+    private static final int VALUE_BYTES = 8;
+
+    private static final long NULL = 0;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final List<MappedByteBuffer> segments;
+    private final int segmentSize;
+    private final int segmentShift;
+    private final Random random;
+    private long root;
+    private int numElems;
+    private long end;
+    private int modCount;
+
+    public MappedDictionary(File path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        this(path, keyCodec, valueCodec, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the dictionary stored in the given file, creating it if the file
+     * does not exist or is empty.
+     *
+     * @param segmentSize
+     *            the size of each mapped region of a new file, which must be a
+     *            power of two and bounds the size of a single entry. An
+     *            existing file keeps the segment size it was created with.
+     */
+    public MappedDictionary(File path, Codec<K> keyCodec,
+            Codec<V> valueCodec, int segmentSize) throws IOException {
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.segments = new ArrayList<MappedByteBuffer>();
+        this.random = new Random();
+        this.modCount = 0;
+
+        ByteBuffer header = null;
+        try {
+            if (channel.size() > 0) {
+                header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.getInt(HEADER_MAGIC) != MAGIC
+                        || header.getInt(HEADER_VERSION) != FORMAT_VERSION) {
+                    throw new IOException("Not a dictionary file: " + path);
+                }
+                segmentSize = header.getInt(HEADER_SEGMENT_SIZE);
+            } else if (Integer.bitCount(segmentSize) != 1
+                    || segmentSize < HEADER_SIZE) {
+                throw new IllegalArgumentException(
+                        "Segment size must be a power of two");
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+
+        this.segmentSize = segmentSize;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+
+        if (header == null) {
+            this.root = NULL;
+            this.numElems = 0;
+            this.end = HEADER_SIZE;
+            writeHeader();
+            writeState();
+        } else {
+            this.numElems = header.getInt(HEADER_SIZE_FIELD);
+            this.root = header.getLong(HEADER_ROOT);
+            this.end = header.getLong(HEADER_END);
+        }
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        return root == NULL ? null : readEntry(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        long node = root;
+
+        while (node != NULL) {
+            int cmp = key.compareTo(readKey(node));
+            if (cmp == 0) {
+                return readValue(node);
+            }
+            node = getLong(node + (cmp < 0 ? NODE_LEFT : NODE_RIGHT));
+        }
+        throw new NoSuchElementException("Key not found");
+    }
+
+    @Override
+    public void put(K key, V value) {
+        byte[] valueBytes = valueCodec.encode(value);
+        setRoot(insert(root, key, valueBytes));
+    }
+
+    private long insert(long node, K key, byte[] valueBytes) {
+        if (node == NULL) {
+            numElems++;
+            modCount++;
+            return allocateNode(keyCodec.encode(key), valueBytes);
+        }
+
+        int cmp = key.compareTo(readKey(node));
+        if (cmp == 0) {
+            writeValue(node, valueBytes);
+            return node;
+        }
+
+        int side = cmp < 0 ? NODE_LEFT : NODE_RIGHT;
+        long child = getLong(node + side);
+        long newChild = insert(child, key, valueBytes);
+        if (newChild == child) {
+            return node;
+        }
+
+        putLong(node + side, newChild);
+        if (priority(newChild) > priority(node)) {
+            return side == NODE_LEFT ? rotateRight(node) : rotateLeft(node);
+        }
+        return node;
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        setRoot(delete(root, key));
+        numElems--;
+        modCount++;
+        writeState();
+    }
+
+    private long delete(long node, K key) {
+        if (node == NULL) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        int cmp = key.compareTo(readKey(node));
+        if (cmp == 0) {
+            return merge(getLong(node + NODE_LEFT), getLong(node + NODE_RIGHT));
+        }
+
+        int side = cmp < 0 ? NODE_LEFT : NODE_RIGHT;
+        long child = getLong(node + side);
+        long newChild = delete(child, key);
+        if (newChild != child) {
+            putLong(node + side, newChild);
+        }
+        return node;
+    }
+
+    // Joins two treaps, all of whose keys in left precede those in right.
+    private long merge(long left, long right) {
+        if (left == NULL) {
+            return right;
+        } else if (right == NULL) {
+            return left;
+        } else if (priority(left) > priority(right)) {
+            putLong(left + NODE_RIGHT, merge(getLong(left + NODE_RIGHT), right));
+            return left;
+        } else {
+            putLong(right + NODE_LEFT, merge(left, getLong(right + NODE_LEFT)));
+            return right;
+        }
+    }
+
+    private long rotateRight(long node) {
+        long pivot = getLong(node + NODE_LEFT);
+        putLong(node + NODE_LEFT, getLong(pivot + NODE_RIGHT));
+        putLong(pivot + NODE_RIGHT, node);
+        return pivot;
+    }
+
+    private long rotateLeft(long node) {
+        long pivot = getLong(node + NODE_RIGHT);
+        putLong(node + NODE_RIGHT, getLong(pivot + NODE_LEFT));
+        putLong(pivot + NODE_LEFT, node);
+        return pivot;
+    }
+
+    @Override
+    public void clear() {
+        root = NULL;
+        numElems = 0;
+        end = HEADER_SIZE;
+        modCount++;
+        writeState();
+    }
+
+    /**
+     * Writes any changes held in the mapped pages through to the disk.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        segments.clear();
+        file.close();
+    }
+
+    private void setRoot(long node) {
+        root = node;
+        writeState();
+    }
+
+    private void writeHeader() {
+        ByteBuffer header = segment(0);
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_VERSION, FORMAT_VERSION);
+        header.putInt(HEADER_SEGMENT_SIZE, segmentSize);
+    }
+
+    private void writeState() {
+        ByteBuffer header = segment(0);
+        header.putInt(HEADER_SIZE_FIELD, numElems);
+        header.putLong(HEADER_ROOT, root);
+        header.putLong(HEADER_END, end);
+    }
+
+    private long allocateNode(byte[] keyBytes, byte[] valueBytes) {
+        long node = allocate(NODE_KEY + keyBytes.length);
+        putLong(node + NODE_LEFT, NULL);
+        putLong(node + NODE_RIGHT, NULL);
+        putLong(node + NODE_VALUE, allocateValue(valueBytes));
+        putInt(node + NODE_PRIORITY, random.nextInt());
+        putInt(node + NODE_KEY_LENGTH, keyBytes.length);
+        putBytes(node + NODE_KEY, keyBytes);
+        return node;
+    }
+
+    private long allocateValue(byte[] valueBytes) {
+        long record = allocate(VALUE_BYTES + valueBytes.length);
+        putInt(record + VALUE_CAPACITY, valueBytes.length);
+        putInt(record + VALUE_LENGTH, valueBytes.length);
+        putBytes(record + VALUE_BYTES, valueBytes);
+        return record;
+    }
+
+    // Overwrites the value in place if it fits, or moves it if it does not.
+    private void writeValue(long node, byte[] valueBytes) {
+        long record = getLong(node + NODE_VALUE);
+        if (valueBytes.length <= getInt(record + VALUE_CAPACITY)) {
+            putInt(record + VALUE_LENGTH, valueBytes.length);
+            putBytes(record + VALUE_BYTES, valueBytes);
+        } else {
+            putLong(node + NODE_VALUE, allocateValue(valueBytes));
+            writeState();
+        }
+    }
+
+    /*
+     * Reserves space for a record at the end of the file, moving on to the
+     * next segment if the record would not fit in the current one. Records
+     * are 8-byte aligned.
+     */
+    private long allocate(int length) {
+        int aligned = (length + 7) & ~7;
+        if (aligned > segmentSize) {
+            throw new IllegalArgumentException("Entry larger than a segment");
+        }
+
+        long offset = end;
+        if ((offset & (segmentSize - 1)) + aligned > segmentSize) {
+            offset = ((offset >>> segmentShift) + 1) << segmentShift;
+        }
+        end = offset + aligned;
+        return offset;
+    }
+
+    private MappedByteBuffer segment(int index) {
+        try {
+            while (segments.size() <= index) {
+                long position = (long) segments.size() << segmentShift;
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+                        position, segmentSize));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return segments.get(index);
+    }
+
+    private ByteBuffer bufferAt(long offset) {
+        return segment((int) (offset >>> segmentShift));
+    }
+
+    private int position(long offset) {
+        return (int) (offset & (segmentSize - 1));
+    }
+
+    private long getLong(long offset) {
+        return bufferAt(offset).getLong(position(offset));
+    }
+
+    private void putLong(long offset, long value) {
+        bufferAt(offset).putLong(position(offset), value);
+    }
+
+    private int getInt(long offset) {
+        return bufferAt(offset).getInt(position(offset));
+    }
+
+    private void putInt(long offset, int value) {
+        bufferAt(offset).putInt(position(offset), value);
+    }
+
+    private byte[] getBytes(long offset, int length) {
+        ByteBuffer buffer = bufferAt(offset).duplicate();
+        buffer.position(position(offset));
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private void putBytes(long offset, byte[] bytes) {
+        ByteBuffer buffer = bufferAt(offset).duplicate();
+        buffer.position(position(offset));
+        buffer.put(bytes);
+    }
+
+    private int priority(long node) {
+        return getInt(node + NODE_PRIORITY);
+    }
+
+    private K readKey(long node) {
+        return keyCodec.decode(getBytes(node + NODE_KEY,
+                getInt(node + NODE_KEY_LENGTH)));
+    }
+
+    private V readValue(long node) {
+        long record = getLong(node + NODE_VALUE);
+        return valueCodec.decode(getBytes(record + VALUE_BYTES,
+                getInt(record + VALUE_LENGTH)));
+    }
+
+    private DictionaryEntry<K, V> readEntry(long node) {
+        return new ImmutableDictionaryEntry<K, V>(readKey(node),
+                readValue(node));
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private long curr;
+        private long[] nodes;
+        private int depth;
+        private int oldModCount;
+
+        public DictionaryIterator() {
+            this.curr = root;
+            this.nodes = new long[32];
+            this.depth = 0;
+            this.oldModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return curr != NULL || depth > 0;
+        }
+
+        @Override
+        public DictionaryEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            while (curr != NULL) {
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                }
+                nodes[depth++] = curr;
+                curr = getLong(curr + NODE_LEFT);
+            }
+
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+
+            long res = nodes[--depth];
+            curr = getLong(res + NODE_RIGHT);
+            return readEntry(res);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
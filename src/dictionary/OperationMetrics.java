@@ -0,0 +1,82 @@
+package dictionary;
+
+import java.util.Locale;
+
+/**
+ * An immutable snapshot of the metrics an InstrumentedDictionary records for
+ * one operation. Its getters map to the items of a composite value when it is
+ * read through JMX.
+ */
+public class OperationMetrics {
+
+    private final long count;
+    private final long misses;
+    private final LatencyHistogram.Snapshot latency;
+
+    public OperationMetrics(long count, long misses,
+            LatencyHistogram.Snapshot latency) {
+        this.count = count;
+        this.misses = misses;
+        this.latency = latency;
+    }
+
+    /**
+     * @return the number of calls
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of calls that did not find their key
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of calls that did not find their key, or 0 if
+     *         there have been none
+     */
+    public double getMissRate() {
+        return count == 0 ? 0 : (double) misses / count;
+    }
+
+    public double getMeanNanos() {
+        return latency.getMean();
+    }
+
+    public long getMedianNanos() {
+        return latency.getValueAtQuantile(0.5);
+    }
+
+    public long getP90Nanos() {
+        return latency.getValueAtQuantile(0.9);
+    }
+
+    public long getP99Nanos() {
+        return latency.getValueAtQuantile(0.99);
+    }
+
+    public long getP999Nanos() {
+        return latency.getValueAtQuantile(0.999);
+    }
+
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+
+    /**
+     * @return the full latency histogram, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot latency() {
+        return latency;
+    }
+
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "count=%d missRate=%.4f mean=%.1fns p50=%dns p99=%dns"
+                        + " max=%dns", count, getMissRate(), getMeanNanos(),
+                getMedianNanos(), getP99Nanos(), getMaxNanos());
+    }
+}
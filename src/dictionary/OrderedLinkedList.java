@@ -3,6 +3,7 @@ package dictionary;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Predicate;
 
 /*
  * Ordered linked list based implementation of the Dictionary
@@ -48,24 +49,20 @@ public class OrderedLinkedList<K extends Comparable<? super K>, V> implements
         }
     }
 
+    // Walks the list until the keys are no longer less than the given key.
     private OrderedLinkedListEntry<K, V> getEntryAt(K key) {
-        if (size() == 0) {
-            return null;
-        }
-
         OrderedLinkedListEntry<K, V> curr = head;
-        int count = 1;
 
-        while (count < size() && curr.getKey() != key) {
+        while (curr != null) {
+            int cmp = curr.getKey().compareTo(key);
+            if (cmp == 0) {
+                return curr;
+            } else if (cmp > 0) {
+                return null;
+            }
             curr = curr.getNext();
-            count++;
-        }
-
-        if (count >= size() && curr.getKey() != key) {
-            return null;
-        } else {
-            return curr;
         }
+        return null;
     }
 
     @Override
@@ -79,9 +76,15 @@ public class OrderedLinkedList<K extends Comparable<? super K>, V> implements
         } else if (prev.getKey().compareTo(key) == 0) {
             prev.setValue(value);
         } else if (prev.getKey().compareTo(key) < 0) {
+            OrderedLinkedListEntry<K, V> next = prev.getNext();
+            if (next != null && next.getKey().compareTo(key) == 0) {
+                next.setValue(value);
+                return;
+            }
+
             OrderedLinkedListEntry<K, V> entry =
                     new OrderedLinkedListEntry<K, V>(key, value);
-            entry.setNext(prev.getNext());
+            entry.setNext(next);
             prev.setNext(entry);
             numElems++;
         } else {
@@ -126,12 +129,113 @@ public class OrderedLinkedList<K extends Comparable<? super K>, V> implements
 
     @Override
     public void clear() {
+        head = null;
+        numElems = 0;
+        modCount++;
+    }
+
+    /**
+     * Merges the entries of the other dictionary into the list in a single
+     * pass over both, since both are in ascending order.
+     */
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        OrderedLinkedListEntry<K, V> prev = null;
         OrderedLinkedListEntry<K, V> curr = head;
 
-        while (!isEmpty()) {
-            remove(curr.getKey());
-            curr = head;
+        for (DictionaryEntry<K, ? extends V> entry : other) {
+            K key = entry.getKey();
+
+            int cmp = -1;
+            while (curr != null && (cmp = curr.getKey().compareTo(key)) < 0) {
+                prev = curr;
+                curr = curr.getNext();
+            }
+
+            if (curr != null && cmp == 0) {
+                curr.setValue(entry.getValue());
+            } else {
+                OrderedLinkedListEntry<K, V> added =
+                        new OrderedLinkedListEntry<K, V>(key, entry.getValue());
+                added.setNext(curr);
+                if (prev == null) {
+                    head = added;
+                } else {
+                    prev.setNext(added);
+                }
+                prev = added;
+                numElems++;
+            }
         }
+        modCount++;
+    }
+
+    /**
+     * Sorts the keys and then removes them in a single pass over the list.
+     */
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        Object[] removed = BulkOperations.sortedKeys(keys);
+        OrderedLinkedListEntry<K, V> prev = null;
+        OrderedLinkedListEntry<K, V> curr = head;
+        int oldSize = numElems;
+        int r = 0;
+
+        while (curr != null && r < removed.length) {
+            int cmp = BulkOperations.compare(removed[r], curr.getKey());
+            if (cmp < 0) {
+                r++;
+            } else if (cmp > 0) {
+                prev = curr;
+                curr = curr.getNext();
+            } else {
+                curr = unlink(prev, curr);
+                r++;
+            }
+        }
+        return changed(oldSize);
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single pass.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        OrderedLinkedListEntry<K, V> prev = null;
+        OrderedLinkedListEntry<K, V> curr = head;
+        int oldSize = numElems;
+
+        while (curr != null) {
+            if (filter.test(curr)) {
+                curr = unlink(prev, curr);
+            } else {
+                prev = curr;
+                curr = curr.getNext();
+            }
+        }
+        return changed(oldSize);
+    }
+
+    // Unlinks curr, which follows prev, and returns the entry after it.
+    private OrderedLinkedListEntry<K, V> unlink(
+            OrderedLinkedListEntry<K, V> prev,
+            OrderedLinkedListEntry<K, V> curr) {
+        OrderedLinkedListEntry<K, V> next = curr.getNext();
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.setNext(next);
+        }
+        numElems--;
+        return next;
+    }
+
+    private boolean changed(int oldSize) {
+        if (numElems == oldSize) {
+            return false;
+        }
+        modCount++;
+        return true;
     }
 
     @Override
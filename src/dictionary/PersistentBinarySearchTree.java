@@ -0,0 +1,374 @@
+package dictionary;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+
+/*
+ * Persistent binary search tree based implementation of the Dictionary
+ * interface. Nodes are immutable: put and remove copy only the path from the
+ * root to the changed node and share every other subtree with the previous
+ * version, which stays intact. The tree is kept height-balanced as an AVL
+ * tree, so every path, and so every copy, has O(log n) nodes.
+ *
+ * The current version is a single volatile root. Readers take the root once
+ * and never lock, so get, size and iteration always see one consistent
+ * version however many writers there are. Writers are serialised by the
+ * tree's monitor and publish each new version by replacing the root. The bulk
+ * operations publish once, so readers see all of their changes or none.
+ *
+ * snapshot() takes O(1) time and returns an independent tree sharing the
+ * current version. Iterators run over the version they started from: they
+ * never throw ConcurrentModificationException and never see later updates.
+ * Duplicate keys are not permitted.
+ */
+public class PersistentBinarySearchTree<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V> {
+
+    private volatile PersistentBinarySearchTreeEntry<K, V> root;
+
+    public PersistentBinarySearchTree() {
+        this.root = null;
+    }
+
+    private PersistentBinarySearchTree(
+            PersistentBinarySearchTreeEntry<K, V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a tree holding the current entries, in O(1) time. Later updates
+     * to either tree are not visible in the other.
+     *
+     * @return an independent copy of this tree
+     */
+    public PersistentBinarySearchTree<K, V> snapshot() {
+        return new PersistentBinarySearchTree<K, V>(root);
+    }
+
+    @Override
+    public int size() {
+        return PersistentBinarySearchTreeEntry.sizeOf(root);
+    }
+
+    @Override
+    public PersistentBinarySearchTreeEntry<K, V> getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        PersistentBinarySearchTreeEntry<K, V> node = find(root, key);
+        if (node == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+        return node.getValue();
+    }
+
+    private static <K extends Comparable<? super K>, V>
+            PersistentBinarySearchTreeEntry<K, V> find(
+                    PersistentBinarySearchTreeEntry<K, V> node, K key) {
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp < 0) {
+                node = node.getLeft();
+            } else if (cmp > 0) {
+                node = node.getRight();
+            } else {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void put(K key, V value) {
+        root = insert(root, key, value);
+    }
+
+    @Override
+    public synchronized void remove(K key) throws NoSuchElementException {
+        root = delete(root, key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        root = null;
+    }
+
+    /**
+     * Adds the entries of the other dictionary, which may be this one. When
+     * it is large enough compared with this tree, the two are merged in one
+     * pass and the tree is rebuilt balanced.
+     */
+    @Override
+    public synchronized void putAll(Dictionary<K, ? extends V> other) {
+        PersistentBinarySearchTreeEntry<K, V> r = root;
+        int size = PersistentBinarySearchTreeEntry.sizeOf(r);
+
+        if (!BulkOperations.worthRebuilding(size, other.size())) {
+            for (DictionaryEntry<K, ? extends V> entry : other) {
+                r = insert(r, entry.getKey(), entry.getValue());
+            }
+        } else {
+            Object[] keys = new Object[size + other.size()];
+            Object[] values = new Object[keys.length];
+            int n = BulkOperations.merge(new EntryIterator<K, V>(r),
+                    other.iterator(), keys, values);
+            r = build(keys, values, 0, n);
+        }
+        root = r;
+    }
+
+    /**
+     * Removes the given keys. When there are enough of them compared with the
+     * size of the tree, they are sorted and removed in a single in-order pass
+     * that rebuilds the tree balanced.
+     */
+    @Override
+    public synchronized boolean removeAll(Iterable<? extends K> keys) {
+        PersistentBinarySearchTreeEntry<K, V> r = root;
+        int size = PersistentBinarySearchTreeEntry.sizeOf(r);
+        Object[] removed = BulkOperations.sortedKeys(keys);
+
+        if (!BulkOperations.worthRebuilding(size, removed.length)) {
+            for (Object key : removed) {
+                @SuppressWarnings("unchecked")
+                K k = (K) key;
+                if (find(r, k) != null) {
+                    r = delete(r, k);
+                }
+            }
+        } else {
+            Object[] newKeys = new Object[size];
+            Object[] newValues = new Object[size];
+            int n = BulkOperations.retainAbsent(new EntryIterator<K, V>(r),
+                    removed, newKeys, newValues);
+            if (n == size) {
+                return false;
+            }
+            r = build(newKeys, newValues, 0, n);
+        }
+        root = r;
+        return PersistentBinarySearchTreeEntry.sizeOf(r) != size;
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single in-order pass,
+     * rebuilding the tree balanced if any were removed.
+     */
+    @Override
+    public synchronized boolean removeIf(
+            Predicate<? super DictionaryEntry<K, V>> filter) {
+        PersistentBinarySearchTreeEntry<K, V> r = root;
+        int size = PersistentBinarySearchTreeEntry.sizeOf(r);
+        Object[] keys = new Object[size];
+        Object[] values = new Object[size];
+        int n = BulkOperations.retainUnless(new EntryIterator<K, V>(r), filter,
+                keys, values);
+        if (n == size) {
+            return false;
+        }
+        root = build(keys, values, 0, n);
+        return true;
+    }
+
+    // Returns a copy of the subtree with the key associated with the value.
+    private static <K extends Comparable<? super K>, V>
+            PersistentBinarySearchTreeEntry<K, V> insert(
+                    PersistentBinarySearchTreeEntry<K, V> node, K key,
+                    V value) {
+        if (node == null) {
+            return new PersistentBinarySearchTreeEntry<K, V>(key, value, null,
+                    null);
+        }
+
+        int cmp = key.compareTo(node.getKey());
+        if (cmp < 0) {
+            return balance(node.getKey(), node.getValue(),
+                    insert(node.getLeft(), key, value), node.getRight());
+        } else if (cmp > 0) {
+            return balance(node.getKey(), node.getValue(), node.getLeft(),
+                    insert(node.getRight(), key, value));
+        } else if (node.getValue() == value) {
+            return node;
+        } else {
+            return new PersistentBinarySearchTreeEntry<K, V>(node.getKey(),
+                    value, node.getLeft(), node.getRight());
+        }
+    }
+
+    // Returns a copy of the subtree without the key.
+    private static <K extends Comparable<? super K>, V>
+            PersistentBinarySearchTreeEntry<K, V> delete(
+                    PersistentBinarySearchTreeEntry<K, V> node, K key)
+                    throws NoSuchElementException {
+        if (node == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        int cmp = key.compareTo(node.getKey());
+        if (cmp < 0) {
+            return balance(node.getKey(), node.getValue(),
+                    delete(node.getLeft(), key), node.getRight());
+        } else if (cmp > 0) {
+            return balance(node.getKey(), node.getValue(), node.getLeft(),
+                    delete(node.getRight(), key));
+        } else if (node.getLeft() == null) {
+            return node.getRight();
+        } else if (node.getRight() == null) {
+            return node.getLeft();
+        }
+
+        // Replace the node with its successor, the minimum on the right.
+        PersistentBinarySearchTreeEntry<K, V> min = node.getRight();
+        while (min.getLeft() != null) {
+            min = min.getLeft();
+        }
+        return balance(min.getKey(), min.getValue(), node.getLeft(),
+                deleteMin(node.getRight()));
+    }
+
+    private static <K, V> PersistentBinarySearchTreeEntry<K, V> deleteMin(
+            PersistentBinarySearchTreeEntry<K, V> node) {
+        if (node.getLeft() == null) {
+            return node.getRight();
+        }
+        return balance(node.getKey(), node.getValue(),
+                deleteMin(node.getLeft()), node.getRight());
+    }
+
+    /*
+     * Builds a node from subtrees whose heights differ by at most two,
+     * rotating once or twice so that the result is balanced.
+     */
+    private static <K, V> PersistentBinarySearchTreeEntry<K, V> balance(K key,
+            V value, PersistentBinarySearchTreeEntry<K, V> left,
+            PersistentBinarySearchTreeEntry<K, V> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+
+        if (leftHeight > rightHeight + 1) {
+            PersistentBinarySearchTreeEntry<K, V> inner = left.getRight();
+            if (height(left.getLeft()) >= height(inner)) {
+                return node(left.getKey(), left.getValue(), left.getLeft(),
+                        node(key, value, inner, right));
+            }
+            return node(inner.getKey(), inner.getValue(),
+                    node(left.getKey(), left.getValue(), left.getLeft(),
+                            inner.getLeft()),
+                    node(key, value, inner.getRight(), right));
+        }
+
+        if (rightHeight > leftHeight + 1) {
+            PersistentBinarySearchTreeEntry<K, V> inner = right.getLeft();
+            if (height(right.getRight()) >= height(inner)) {
+                return node(right.getKey(), right.getValue(),
+                        node(key, value, left, inner), right.getRight());
+            }
+            return node(inner.getKey(), inner.getValue(),
+                    node(key, value, left, inner.getLeft()),
+                    node(right.getKey(), right.getValue(), inner.getRight(),
+                            right.getRight()));
+        }
+
+        return node(key, value, left, right);
+    }
+
+    private static int height(PersistentBinarySearchTreeEntry<?, ?> node) {
+        return PersistentBinarySearchTreeEntry.heightOf(node);
+    }
+
+    private static <K, V> PersistentBinarySearchTreeEntry<K, V> node(K key,
+            V value, PersistentBinarySearchTreeEntry<K, V> left,
+            PersistentBinarySearchTreeEntry<K, V> right) {
+        return new PersistentBinarySearchTreeEntry<K, V>(key, value, left,
+                right);
+    }
+
+    // Builds a perfectly balanced tree from the sorted arrays in [lo, hi).
+    @SuppressWarnings("unchecked")
+    private static <K, V> PersistentBinarySearchTreeEntry<K, V> build(
+            Object[] keys, Object[] values, int lo, int hi) {
+        if (lo >= hi) {
+            return null;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        PersistentBinarySearchTreeEntry<K, V> left =
+                build(keys, values, lo, mid);
+        PersistentBinarySearchTreeEntry<K, V> right =
+                build(keys, values, mid + 1, hi);
+        return node((K) keys[mid], (V) values[mid], left, right);
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new EntryIterator<K, V>(root);
+    }
+
+    /**
+     * Returns a spliterator over a snapshot of the tree, which reports
+     * IMMUTABLE as no update can reach it.
+     */
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return EntrySpliterators.fromIterator(snapshot(), true,
+                Spliterator.IMMUTABLE);
+    }
+
+    /*
+     * Iterates over the subtree rooted at a fixed node, keeping the path of
+     * pending ancestors in an array sized by the height of the subtree.
+     */
+    private static class EntryIterator<K, V> implements
+            Iterator<DictionaryEntry<K, V>> {
+
+        private final PersistentBinarySearchTreeEntry<K, V>[] stack;
+        private int depth;
+
+        @SuppressWarnings("unchecked")
+        public EntryIterator(PersistentBinarySearchTreeEntry<K, V> root) {
+            this.stack = (PersistentBinarySearchTreeEntry<K, V>[])
+                    new PersistentBinarySearchTreeEntry<?, ?>[height(root)];
+            this.depth = 0;
+            pushLeft(root);
+        }
+
+        private void pushLeft(PersistentBinarySearchTreeEntry<K, V> node) {
+            while (node != null) {
+                stack[depth++] = node;
+                node = node.getLeft();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return depth > 0;
+        }
+
+        @Override
+        public DictionaryEntry<K, V> next() {
+            if (depth == 0) {
+                throw new NoSuchElementException();
+            }
+
+            PersistentBinarySearchTreeEntry<K, V> res = stack[--depth];
+            stack[depth] = null;
+            pushLeft(res.getRight());
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
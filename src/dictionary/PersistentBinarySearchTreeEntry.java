@@ -0,0 +1,67 @@
+package dictionary;
+
+/*
+ * Implementation class representing nodes of the persistent binary search
+ * tree. Nodes are never modified once built, so any number of trees may share
+ * them. Each node records the height and size of its subtree.
+ */
+public final class PersistentBinarySearchTreeEntry<K, V> implements
+        DictionaryEntry<K, V> {
+
+    private final K key;
+    private final V value;
+    private final PersistentBinarySearchTreeEntry<K, V> left, right;
+    private final int height;
+    private final int size;
+
+    public PersistentBinarySearchTreeEntry(K key, V value,
+            PersistentBinarySearchTreeEntry<K, V> left,
+            PersistentBinarySearchTreeEntry<K, V> right) {
+        this.key = key;
+        this.value = value;
+        this.left = left;
+        this.right = right;
+        this.height = 1 + Math.max(heightOf(left), heightOf(right));
+        this.size = 1 + sizeOf(left) + sizeOf(right);
+    }
+
+    // The height of the subtree rooted at node, which is 0 for no node.
+    public static int heightOf(PersistentBinarySearchTreeEntry<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    // The number of nodes in the subtree rooted at node.
+    public static int sizeOf(PersistentBinarySearchTreeEntry<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    public PersistentBinarySearchTreeEntry<K, V> getLeft() {
+        return left;
+    }
+
+    public PersistentBinarySearchTreeEntry<K, V> getRight() {
+        return right;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public String toString() {
+        return key + " -> " + value;
+    }
+}
@@ -0,0 +1,491 @@
+package dictionary;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/*
+ * Red-black tree based implementation of the Dictionary interface. The nodes
+ * of the tree are ordered by their key-attributes in the same way as the
+ * BinarySearchTree, but every node is additionally coloured red or black so
+ * that no red node has a red child and every path from the root to a leaf
+ * passes through the same number of black nodes. Rebalancing after each put
+ * and remove keeps the height below 2 log2(n + 1), so get, put and remove take
+ * O(log n) time whatever order the keys arrive in. Duplicate keys are not
+ * permitted.
+ */
+public class RedBlackTree<K extends Comparable<? super K>, V> implements
+        BoundedLookupDictionary<K, V> {
+
+    private RedBlackTreeEntry<K, V> root;
+    private int numElems;
+    private int modCount;
+
+    public RedBlackTree() {
+        this.root = null;
+        this.numElems = 0;
+        this.modCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    @Override
+    public RedBlackTreeEntry<K, V> getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        RedBlackTreeEntry<K, V> node = findEntry(key);
+
+        if (node != null) {
+            return node.getValue();
+        } else {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    @Override
+    public V get(K key, int maxSteps) throws NoSuchElementException {
+        RedBlackTreeEntry<K, V> node = root;
+
+        for (int steps = 0; node != null; steps++) {
+            if (steps == maxSteps) {
+                throw new ConcurrentModificationException("Lookup gave up");
+            }
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node.getValue();
+            }
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        throw new NoSuchElementException("Key not found");
+    }
+
+    private RedBlackTreeEntry<K, V> findEntry(K key) {
+        RedBlackTreeEntry<K, V> node = root;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                return node;
+            }
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+        return null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        RedBlackTreeEntry<K, V> parent = null;
+        RedBlackTreeEntry<K, V> node = root;
+        int cmp = 0;
+
+        while (node != null) {
+            cmp = key.compareTo(node.getKey());
+            if (cmp == 0) {
+                node.setValue(value);
+                return;
+            }
+            parent = node;
+            node = cmp < 0 ? node.getLeft() : node.getRight();
+        }
+
+        RedBlackTreeEntry<K, V> entry =
+                new RedBlackTreeEntry<K, V>(key, value, parent);
+        if (parent == null) {
+            root = entry;
+        } else if (cmp < 0) {
+            parent.setLeft(entry);
+        } else {
+            parent.setRight(entry);
+        }
+
+        fixAfterInsertion(entry);
+        numElems++;
+        modCount++;
+    }
+
+    private void fixAfterInsertion(RedBlackTreeEntry<K, V> x) {
+        while (x != root && !isBlack(x.getParent())) {
+            RedBlackTreeEntry<K, V> parent = x.getParent();
+            RedBlackTreeEntry<K, V> grandparent = parent.getParent();
+
+            if (parent == grandparent.getLeft()) {
+                RedBlackTreeEntry<K, V> uncle = grandparent.getRight();
+                if (!isBlack(uncle)) {
+                    parent.setBlack(true);
+                    uncle.setBlack(true);
+                    grandparent.setBlack(false);
+                    x = grandparent;
+                } else {
+                    if (x == parent.getRight()) {
+                        x = parent;
+                        rotateLeft(x);
+                        parent = x.getParent();
+                    }
+                    parent.setBlack(true);
+                    grandparent.setBlack(false);
+                    rotateRight(grandparent);
+                }
+            } else {
+                RedBlackTreeEntry<K, V> uncle = grandparent.getLeft();
+                if (!isBlack(uncle)) {
+                    parent.setBlack(true);
+                    uncle.setBlack(true);
+                    grandparent.setBlack(false);
+                    x = grandparent;
+                } else {
+                    if (x == parent.getLeft()) {
+                        x = parent;
+                        rotateRight(x);
+                        parent = x.getParent();
+                    }
+                    parent.setBlack(true);
+                    grandparent.setBlack(false);
+                    rotateLeft(grandparent);
+                }
+            }
+        }
+        root.setBlack(true);
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        RedBlackTreeEntry<K, V> node = findEntry(key);
+
+        if (node == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        deleteEntry(node);
+        numElems--;
+        modCount++;
+    }
+
+    private void deleteEntry(RedBlackTreeEntry<K, V> node) {
+        // A node with two children takes over its successor's contents, so
+        // the node that is physically unlinked has at most one child.
+        if (node.getLeft() != null && node.getRight() != null) {
+            RedBlackTreeEntry<K, V> successor = leftmost(node.getRight());
+            node.setKey(successor.getKey());
+            node.setValue(successor.getValue());
+            node = successor;
+        }
+
+        RedBlackTreeEntry<K, V> replacement =
+                node.getLeft() != null ? node.getLeft() : node.getRight();
+
+        if (replacement != null) {
+            replaceChild(node, replacement);
+            node.setLeft(null);
+            node.setRight(null);
+            node.setParent(null);
+
+            if (node.isBlack()) {
+                fixAfterDeletion(replacement);
+            }
+        } else if (node.getParent() == null) {
+            root = null;
+        } else {
+            // The node acts as its own phantom replacement while the tree is
+            // repaired, and is only unlinked afterwards.
+            if (node.isBlack()) {
+                fixAfterDeletion(node);
+            }
+
+            RedBlackTreeEntry<K, V> parent = node.getParent();
+            if (parent != null) {
+                if (node == parent.getLeft()) {
+                    parent.setLeft(null);
+                } else {
+                    parent.setRight(null);
+                }
+                node.setParent(null);
+            }
+        }
+    }
+
+    private void fixAfterDeletion(RedBlackTreeEntry<K, V> x) {
+        while (x != root && isBlack(x)) {
+            RedBlackTreeEntry<K, V> parent = x.getParent();
+
+            if (x == parent.getLeft()) {
+                RedBlackTreeEntry<K, V> sibling = parent.getRight();
+                if (!isBlack(sibling)) {
+                    sibling.setBlack(true);
+                    parent.setBlack(false);
+                    rotateLeft(parent);
+                    sibling = parent.getRight();
+                }
+
+                if (isBlack(sibling.getLeft()) && isBlack(sibling.getRight())) {
+                    sibling.setBlack(false);
+                    x = parent;
+                } else {
+                    if (isBlack(sibling.getRight())) {
+                        sibling.getLeft().setBlack(true);
+                        sibling.setBlack(false);
+                        rotateRight(sibling);
+                        sibling = parent.getRight();
+                    }
+                    sibling.setBlack(parent.isBlack());
+                    parent.setBlack(true);
+                    sibling.getRight().setBlack(true);
+                    rotateLeft(parent);
+                    x = root;
+                }
+            } else {
+                RedBlackTreeEntry<K, V> sibling = parent.getLeft();
+                if (!isBlack(sibling)) {
+                    sibling.setBlack(true);
+                    parent.setBlack(false);
+                    rotateRight(parent);
+                    sibling = parent.getLeft();
+                }
+
+                if (isBlack(sibling.getRight()) && isBlack(sibling.getLeft())) {
+                    sibling.setBlack(false);
+                    x = parent;
+                } else {
+                    if (isBlack(sibling.getLeft())) {
+                        sibling.getRight().setBlack(true);
+                        sibling.setBlack(false);
+                        rotateLeft(sibling);
+                        sibling = parent.getLeft();
+                    }
+                    sibling.setBlack(parent.isBlack());
+                    parent.setBlack(true);
+                    sibling.getLeft().setBlack(true);
+                    rotateRight(parent);
+                    x = root;
+                }
+            }
+        }
+        x.setBlack(true);
+    }
+
+    private void rotateLeft(RedBlackTreeEntry<K, V> node) {
+        RedBlackTreeEntry<K, V> pivot = node.getRight();
+
+        node.setRight(pivot.getLeft());
+        if (pivot.getLeft() != null) {
+            pivot.getLeft().setParent(node);
+        }
+        replaceChild(node, pivot);
+        pivot.setLeft(node);
+        node.setParent(pivot);
+    }
+
+    private void rotateRight(RedBlackTreeEntry<K, V> node) {
+        RedBlackTreeEntry<K, V> pivot = node.getLeft();
+
+        node.setLeft(pivot.getRight());
+        if (pivot.getRight() != null) {
+            pivot.getRight().setParent(node);
+        }
+        replaceChild(node, pivot);
+        pivot.setRight(node);
+        node.setParent(pivot);
+    }
+
+    // Links replacement into the position in the tree currently held by node.
+    private void replaceChild(RedBlackTreeEntry<K, V> node,
+            RedBlackTreeEntry<K, V> replacement) {
+        RedBlackTreeEntry<K, V> parent = node.getParent();
+
+        replacement.setParent(parent);
+        if (parent == null) {
+            root = replacement;
+        } else if (node == parent.getLeft()) {
+            parent.setLeft(replacement);
+        } else {
+            parent.setRight(replacement);
+        }
+    }
+
+    // Empty subtrees count as black leaves.
+    private static boolean isBlack(RedBlackTreeEntry<?, ?> node) {
+        return node == null || node.isBlack();
+    }
+
+    private static <K, V> RedBlackTreeEntry<K, V> leftmost(
+            RedBlackTreeEntry<K, V> node) {
+        while (node.getLeft() != null) {
+            node = node.getLeft();
+        }
+        return node;
+    }
+
+    private static <K, V> RedBlackTreeEntry<K, V> successor(
+            RedBlackTreeEntry<K, V> node) {
+        if (node.getRight() != null) {
+            return leftmost(node.getRight());
+        }
+
+        RedBlackTreeEntry<K, V> parent = node.getParent();
+        while (parent != null && node == parent.getRight()) {
+            node = parent;
+            parent = parent.getParent();
+        }
+        return parent;
+    }
+
+    /**
+     * Adds the entries of the other dictionary. When it is large enough
+     * compared with this tree, the two are merged in one pass and the tree is
+     * rebuilt from the merged entries.
+     */
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        if (!BulkOperations.worthRebuilding(numElems, other.size())) {
+            BoundedLookupDictionary.super.putAll(other);
+            return;
+        }
+
+        Object[] keys = new Object[numElems + other.size()];
+        Object[] values = new Object[keys.length];
+        int n = BulkOperations.merge(iterator(), other.iterator(), keys,
+                values);
+        rebuild(keys, values, n);
+    }
+
+    /**
+     * Removes the given keys. When there are enough of them compared with the
+     * size of the tree, they are sorted and removed in a single in-order pass
+     * that rebuilds the tree from the remaining entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Iterable<? extends K> keys) {
+        Object[] removed = BulkOperations.sortedKeys(keys);
+        if (!BulkOperations.worthRebuilding(numElems, removed.length)) {
+            int oldSize = numElems;
+            for (Object key : removed) {
+                RedBlackTreeEntry<K, V> node = findEntry((K) key);
+                if (node != null) {
+                    deleteEntry(node);
+                    numElems--;
+                    modCount++;
+                }
+            }
+            return numElems != oldSize;
+        }
+
+        Object[] newKeys = new Object[numElems];
+        Object[] newValues = new Object[numElems];
+        int n = BulkOperations.retainAbsent(iterator(), removed, newKeys,
+                newValues);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(newKeys, newValues, n);
+        return true;
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single in-order pass,
+     * rebuilding the tree if any were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        Object[] keys = new Object[numElems];
+        Object[] values = new Object[numElems];
+        int n = BulkOperations.retainUnless(iterator(), filter, keys, values);
+        if (n == numElems) {
+            return false;
+        }
+        rebuild(keys, values, n);
+        return true;
+    }
+
+    /*
+     * Replaces the tree with one built from sorted arrays by splitting each
+     * range at its midpoint. Every level of such a tree is full except perhaps
+     * the deepest, so colouring just that level red gives every path the same
+     * number of black nodes.
+     */
+    private void rebuild(Object[] keys, Object[] values, int n) {
+        int redDepth = n > 1 ? 31 - Integer.numberOfLeadingZeros(n) : -1;
+        root = build(keys, values, 0, n, 0, redDepth, null);
+        numElems = n;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedBlackTreeEntry<K, V> build(Object[] keys, Object[] values,
+            int from, int to, int depth, int redDepth,
+            RedBlackTreeEntry<K, V> parent) {
+        if (from == to) {
+            return null;
+        }
+
+        int mid = (from + to) >>> 1;
+        RedBlackTreeEntry<K, V> node =
+                new RedBlackTreeEntry<K, V>((K) keys[mid], (V) values[mid],
+                        parent);
+        node.setBlack(depth != redDepth);
+        node.setLeft(build(keys, values, from, mid, depth + 1, redDepth, node));
+        node.setRight(build(keys, values, mid + 1, to, depth + 1, redDepth,
+                node));
+        return node;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        numElems = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private RedBlackTreeEntry<K, V> next;
+        private int oldModCount;
+
+        public DictionaryIterator() {
+            this.next = root == null ? null : leftmost(root);
+            this.oldModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public DictionaryEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            RedBlackTreeEntry<K, V> res = next;
+            next = successor(next);
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+}
@@ -0,0 +1,75 @@
+package dictionary;
+
+import dictionary.DictionaryEntry;
+
+// Implementation class representing nodes of the red-black tree.
+public class RedBlackTreeEntry<K, V> implements DictionaryEntry<K, V> {
+
+    private K key;
+    private V value;
+    private RedBlackTreeEntry<K, V> left, right, parent;
+    private boolean black;
+
+    public RedBlackTreeEntry(K key, V value, RedBlackTreeEntry<K, V> parent) {
+        this.key = key;
+        this.value = value;
+        this.parent = parent;
+        this.black = false;
+    }
+
+    public RedBlackTreeEntry<K, V> getLeft() {
+        return left;
+    }
+
+    public void setLeft(RedBlackTreeEntry<K, V> l) {
+        left = l;
+    }
+
+    public RedBlackTreeEntry<K, V> getRight() {
+        return right;
+    }
+
+    public void setRight(RedBlackTreeEntry<K, V> r) {
+        right = r;
+    }
+
+    public RedBlackTreeEntry<K, V> getParent() {
+        return parent;
+    }
+
+    public void setParent(RedBlackTreeEntry<K, V> p) {
+        parent = p;
+    }
+
+    public boolean isBlack() {
+        return black;
+    }
+
+    public void setBlack(boolean b) {
+        black = b;
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    public void setKey(K k) {
+        key = k;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public void setValue(V v) {
+        value = v;
+    }
+
+    @Override
+    public String toString() {
+        return key + " -> " + value;
+    }
+
+}
@@ -0,0 +1,350 @@
+package dictionary;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/*
+ * Skip list based implementation of the Dictionary interface. Every entry is
+ * linked into the bottom list in ascending order by key, as in the
+ * OrderedLinkedList, and is also promoted into each higher level with the
+ * configured probability. Searches start at the sparsest level and drop down
+ * a level whenever the next key would overshoot, which gives expected
+ * O(log n) get, put and remove. Duplicate keys are not permitted.
+ */
+public class SkipListDictionary<K extends Comparable<? super K>, V> implements
+        Dictionary<K, V> {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double DEFAULT_PROBABILITY = 0.5;
+
+    private final double probability;
+    private final Random random;
+    private final SkipListEntry<K, V> head;
+    private final SkipListEntry<K, V>[] update;
+    private int level;
+    private int numElems;
+    private int modCount;
+
+    public SkipListDictionary() {
+        this(DEFAULT_PROBABILITY, new Random());
+    }
+
+    /**
+     * @param probability
+     *            the probability that an entry on one level is also linked
+     *            into the level above it
+     * @param random
+     *            the source of randomness used to choose entry levels
+     */
+    @SuppressWarnings("unchecked")
+    public SkipListDictionary(double probability, Random random) {
+        if (!(probability > 0 && probability < 1)) {
+            throw new IllegalArgumentException(
+                    "Probability must be between 0 and 1");
+        }
+
+        this.probability = probability;
+        this.random = random;
+        this.head = new SkipListEntry<K, V>(null, null, MAX_LEVEL);
+        this.update =
+                (SkipListEntry<K, V>[]) new SkipListEntry<?, ?>[MAX_LEVEL];
+        this.level = 1;
+        this.numElems = 0;
+        this.modCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    @Override
+    public SkipListEntry<K, V> getRoot() {
+        return head.getNext(0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        SkipListEntry<K, V> entry = search(key, null);
+
+        if (entry != null) {
+            return entry.getValue();
+        } else {
+            throw new NoSuchElementException("Key not found");
+        }
+    }
+
+    /*
+     * Returns the entry with the given key, or null if there is none. If preds
+     * is not null it is filled with the last entry before the key on each
+     * level. The first entry found to be no smaller than the key bounds the
+     * search on every lower level, so it is never compared twice.
+     */
+    private SkipListEntry<K, V> search(K key, SkipListEntry<K, V>[] preds) {
+        SkipListEntry<K, V> node = head;
+        SkipListEntry<K, V> bound = null;
+        int cmp = 1;
+
+        for (int i = level - 1; i >= 0; i--) {
+            SkipListEntry<K, V> next = node.getNext(i);
+            while (next != null && next != bound) {
+                int c = next.getKey().compareTo(key);
+                if (c >= 0) {
+                    bound = next;
+                    cmp = c;
+                    break;
+                }
+                node = next;
+                next = node.getNext(i);
+            }
+
+            if (preds != null) {
+                preds[i] = node;
+            }
+        }
+        return bound != null && cmp == 0 ? bound : null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        SkipListEntry<K, V> entry = search(key, update);
+
+        if (entry != null) {
+            entry.setValue(value);
+            return;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                update[i] = head;
+            }
+            level = newLevel;
+        }
+
+        entry = new SkipListEntry<K, V>(key, value, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            entry.setNext(i, update[i].getNext(i));
+            update[i].setNext(i, entry);
+        }
+
+        numElems++;
+        modCount++;
+    }
+
+    private int randomLevel() {
+        int newLevel = 1;
+        while (newLevel < MAX_LEVEL && random.nextDouble() < probability) {
+            newLevel++;
+        }
+        return newLevel;
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        SkipListEntry<K, V> entry = search(key, update);
+
+        if (entry == null) {
+            throw new NoSuchElementException("Key not found");
+        }
+
+        for (int i = 0; i < entry.getLevel(); i++) {
+            update[i].setNext(i, entry.getNext(i));
+        }
+
+        while (level > 1 && head.getNext(level - 1) == null) {
+            level--;
+        }
+
+        numElems--;
+        modCount++;
+    }
+
+    /**
+     * Adds the entries of the other dictionary. When it is large enough
+     * compared with this one, the two are merged in one pass and the towers
+     * are relinked from the merged entries.
+     */
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        if (!BulkOperations.worthRebuilding(numElems, other.size())) {
+            Dictionary.super.putAll(other);
+            return;
+        }
+
+        Object[] keys = new Object[numElems + other.size()];
+        Object[] values = new Object[keys.length];
+        int n = BulkOperations.merge(iterator(), other.iterator(), keys,
+                values);
+
+        clear();
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            update[i] = head;
+        }
+        for (int j = 0; j < n; j++) {
+            @SuppressWarnings("unchecked")
+            SkipListEntry<K, V> entry =
+                    new SkipListEntry<K, V>((K) keys[j], (V) values[j],
+                            randomLevel());
+            for (int i = 0; i < entry.getLevel(); i++) {
+                update[i].setNext(i, entry);
+                update[i] = entry;
+            }
+            level = Math.max(level, entry.getLevel());
+        }
+        numElems = n;
+    }
+
+    /**
+     * Sorts the keys and then removes them in a single pass along the bottom
+     * level, unlinking each tower from the last remaining tower at each of
+     * its levels.
+     */
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        Object[] removed = BulkOperations.sortedKeys(keys);
+        int oldSize = numElems;
+        int r = 0;
+
+        resetPredecessors();
+        SkipListEntry<K, V> curr = head.getNext(0);
+        while (curr != null && r < removed.length) {
+            int cmp = BulkOperations.compare(removed[r], curr.getKey());
+            if (cmp < 0) {
+                r++;
+            } else {
+                SkipListEntry<K, V> next = curr.getNext(0);
+                if (cmp == 0) {
+                    unlink(curr);
+                    r++;
+                } else {
+                    keep(curr);
+                }
+                curr = next;
+            }
+        }
+        return changed(oldSize);
+    }
+
+    /**
+     * Removes the entries that satisfy the filter in a single pass along the
+     * bottom level.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        int oldSize = numElems;
+
+        resetPredecessors();
+        SkipListEntry<K, V> curr = head.getNext(0);
+        while (curr != null) {
+            SkipListEntry<K, V> next = curr.getNext(0);
+            if (filter.test(curr)) {
+                unlink(curr);
+            } else {
+                keep(curr);
+            }
+            curr = next;
+        }
+        return changed(oldSize);
+    }
+
+    private void resetPredecessors() {
+        for (int i = 0; i < level; i++) {
+            update[i] = head;
+        }
+    }
+
+    // Makes entry the predecessor at each of its levels.
+    private void keep(SkipListEntry<K, V> entry) {
+        for (int i = 0; i < entry.getLevel(); i++) {
+            update[i] = entry;
+        }
+    }
+
+    // Unlinks entry, whose predecessors are held in update.
+    private void unlink(SkipListEntry<K, V> entry) {
+        for (int i = 0; i < entry.getLevel(); i++) {
+            update[i].setNext(i, entry.getNext(i));
+        }
+        numElems--;
+    }
+
+    private boolean changed(int oldSize) {
+        if (numElems == oldSize) {
+            return false;
+        }
+
+        while (level > 1 && head.getNext(level - 1) == null) {
+            level--;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < level; i++) {
+            head.setNext(i, null);
+        }
+        level = 1;
+        numElems = 0;
+        modCount++;
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return new DictionaryIterator();
+    }
+
+    private class DictionaryIterator implements Iterator<DictionaryEntry<K, V>> {
+
+        private SkipListEntry<K, V> curr;
+        private int oldModCount;
+
+        public DictionaryIterator() {
+            this.curr = head.getNext(0);
+            this.oldModCount = modCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return curr != null;
+        }
+
+        @Override
+        public SkipListEntry<K, V> next() {
+            if (oldModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (curr == null) {
+                throw new NoSuchElementException();
+            }
+
+            SkipListEntry<K, V> res = curr;
+            curr = curr.getNext(0);
+            return res;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public String toString() {
+        String res = "[";
+        for (DictionaryEntry<K, V> e : this) {
+            res += e + ", ";
+        }
+        return res + "]";
+    }
+}
@@ -0,0 +1,46 @@
+package dictionary;
+
+// Implementation class representing towers of the skip list.
+public class SkipListEntry<K, V> implements DictionaryEntry<K, V> {
+
+    private K key;
+    private V value;
+    private SkipListEntry<K, V>[] next;
+
+    @SuppressWarnings("unchecked")
+    public SkipListEntry(K key, V value, int level) {
+        this.key = key;
+        this.value = value;
+        this.next = (SkipListEntry<K, V>[]) new SkipListEntry<?, ?>[level];
+    }
+
+    @Override
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    public V getValue() {
+        return value;
+    }
+
+    public void setValue(V newVal) {
+        this.value = newVal;
+    }
+
+    public int getLevel() {
+        return next.length;
+    }
+
+    public SkipListEntry<K, V> getNext(int level) {
+        return next[level];
+    }
+
+    public void setNext(int level, SkipListEntry<K, V> entry) {
+        next[level] = entry;
+    }
+
+    public String toString() {
+        return key + " -> " + value;
+    }
+}
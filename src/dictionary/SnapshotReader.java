@@ -0,0 +1,195 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Reads a snapshot written by SnapshotWriter, returning its entries in
+ * ascending order by key. The file is read sequentially through a large
+ * direct buffer and each entry is decoded only when it is returned, so the
+ * reader itself needs no more memory than the buffer whatever the size of
+ * the snapshot.
+ *
+ * load() builds a BinarySearchTree from a snapshot in O(n) time with one
+ * comparison per entry, rather than the O(n log n) of putting the entries
+ * one at a time. Errors reading the file part of the way through are thrown
+ * by next() as UncheckedIOExceptions.
+ */
+public class SnapshotReader<K extends Comparable<? super K>, V> implements
+        Iterator<DictionaryEntry<K, V>>, Closeable {
+
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final ByteBuffer buffer;
+    private final int size;
+    private int read;
+
+    public SnapshotReader(File path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        this(path, keyCodec, valueCodec, SnapshotWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a snapshot and reads its header.
+     *
+     * @param bufferSize
+     *            the size of the direct buffer entries are read through,
+     *            which must be at least 16 bytes
+     * @throws IOException
+     *             if the file is not a snapshot, or its writer was not closed
+     */
+    public SnapshotReader(File path, Codec<K> keyCodec, Codec<V> valueCodec,
+            int bufferSize) throws IOException {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size is too small");
+        }
+
+        this.channel = FileChannel.open(path.toPath(), StandardOpenOption.READ);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.read = 0;
+        buffer.limit(0);
+
+        try {
+            fill(SnapshotWriter.HEADER_SIZE);
+            if (buffer.getInt() != SnapshotWriter.MAGIC
+                    || buffer.getInt() != SnapshotWriter.FORMAT_VERSION) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            this.size = buffer.getInt();
+            if (size == SnapshotWriter.UNFINISHED) {
+                throw new IOException("Snapshot was not finished: " + path);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a height-balanced tree from the entries of a snapshot.
+     *
+     * @param path
+     *            The snapshot to load
+     * @return a new tree holding the entries of the snapshot
+     */
+    public static <K extends Comparable<? super K>, V> BinarySearchTree<K, V>
+            load(File path, Codec<K> keyCodec, Codec<V> valueCodec)
+                    throws IOException {
+        SnapshotReader<K, V> reader =
+                new SnapshotReader<K, V>(path, keyCodec, valueCodec);
+        try {
+            return BinarySearchTree.fromSortedStream(reader, reader.size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Adds the entries of a snapshot to a dictionary, replacing the values of
+     * any keys already present. A BinarySearchTree is merged with them in one
+     * pass, as by putAllSorted; any other dictionary has them put one at a
+     * time.
+     *
+     * @param path
+     *            The snapshot to load
+     * @param dictionary
+     *            The dictionary to add the entries to
+     */
+    public static <K extends Comparable<? super K>, V> void loadInto(
+            File path, Dictionary<K, V> dictionary, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        SnapshotReader<K, V> reader =
+                new SnapshotReader<K, V>(path, keyCodec, valueCodec);
+        try {
+            if (dictionary instanceof BinarySearchTree) {
+                ((BinarySearchTree<K, V>) dictionary).putAllSorted(reader,
+                        reader.size());
+            } else {
+                while (reader.hasNext()) {
+                    DictionaryEntry<K, V> entry = reader.next();
+                    dictionary.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the number of entries in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return read < size;
+    }
+
+    @Override
+    public DictionaryEntry<K, V> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            K key = keyCodec.decode(getBytes());
+            V value = valueCodec.decode(getBytes());
+            read++;
+            return new ImmutableDictionaryEntry<K, V>(key, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Reads a length followed by that many bytes.
+    private byte[] getBytes() throws IOException {
+        fill(4);
+        int length = buffer.getInt();
+        if (length < 0) {
+            throw new IOException("Snapshot is corrupt");
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            fill(1);
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return bytes;
+    }
+
+    // Reads from the file until at least n bytes are buffered.
+    private void fill(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return;
+        }
+
+        buffer.compact();
+        while (buffer.position() < n) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
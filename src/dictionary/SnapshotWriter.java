@@ -0,0 +1,204 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Writes the entries of a dictionary to a file in ascending order by key, so
+ * that SnapshotReader can load them back with a sorted bulk build instead of
+ * one put per entry. Entries are streamed through a large direct buffer and
+ * written with a FileChannel, so the heap holds only the entry being encoded.
+ *
+ * The file starts with a header holding a magic number, the format version
+ * and the number of entries, followed by one record per entry: the length of
+ * the encoded key, the key bytes, the length of the encoded value and the
+ * value bytes, with lengths as 4 big-endian bytes. The number of entries is
+ * only filled in by close(), so a snapshot that was not closed is rejected
+ * when it is read.
+ */
+public class SnapshotWriter<K extends Comparable<? super K>, V> implements
+        Closeable {
+
+    static final int MAGIC = 0x44534E50;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int HEADER_COUNT = 8;
+    static final int UNFINISHED = -1;
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final ByteBuffer buffer;
+    private K prev;
+    private int count;
+    private boolean closed;
+
+    public SnapshotWriter(File path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        this(path, keyCodec, valueCodec, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates the snapshot file, replacing any existing one.
+     *
+     * @param bufferSize
+     *            the size of the direct buffer entries are written through,
+     *            which must be at least 16 bytes
+     */
+    public SnapshotWriter(File path, Codec<K> keyCodec, Codec<V> valueCodec,
+            int bufferSize) throws IOException {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size is too small");
+        }
+
+        this.channel =
+                FileChannel.open(path.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.prev = null;
+        this.count = 0;
+        this.closed = false;
+
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(UNFINISHED);
+    }
+
+    /**
+     * Writes every entry of the dictionary to a new snapshot file.
+     *
+     * @param dictionary
+     *            The dictionary to save, whose iterator returns entries in
+     *            ascending order by key
+     * @param path
+     *            The file to write, which is replaced if it exists
+     */
+    public static <K extends Comparable<? super K>, V> void write(
+            Dictionary<K, V> dictionary, File path, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        SnapshotWriter<K, V> writer =
+                new SnapshotWriter<K, V>(path, keyCodec, valueCodec);
+        boolean written = false;
+        try {
+            writer.writeAll(dictionary);
+            written = true;
+        } finally {
+            if (written) {
+                writer.close();
+            } else {
+                writer.abort();
+            }
+        }
+    }
+
+    /**
+     * Appends an entry to the snapshot.
+     *
+     * @throws IllegalArgumentException
+     *             if the key is not greater than the key written before it
+     * @throws IllegalStateException
+     *             if the writer is closed
+     */
+    public void write(K key, V value) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        if (prev != null && prev.compareTo(key) >= 0) {
+            throw new IllegalArgumentException("Keys are not in order");
+        }
+        if (count == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many entries");
+        }
+
+        byte[] keyBytes = keyCodec.encode(key);
+        byte[] valueBytes = valueCodec.encode(value);
+        putBytes(keyBytes);
+        putBytes(valueBytes);
+        prev = key;
+        count++;
+    }
+
+    /**
+     * Appends every entry of the dictionary to the snapshot, in the order
+     * its iterator returns them.
+     */
+    public void writeAll(Dictionary<K, ? extends V> dictionary)
+            throws IOException {
+        for (DictionaryEntry<K, ? extends V> entry : dictionary) {
+            write(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return the number of entries written so far
+     */
+    public int getCount() {
+        return count;
+    }
+
+    // Writes a length followed by the bytes, flushing as the buffer fills.
+    private void putBytes(byte[] bytes) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(bytes.length);
+
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes out any buffered entries, records the number of entries in the
+     * header and forces the file to disk. The entries are forced before the
+     * header, so a crash cannot leave a header that counts missing entries.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            flush();
+            channel.force(false);
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(0, count);
+            channel.write(header, HEADER_COUNT);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes the file without finishing the snapshot, so that it is rejected
+     * when it is read, as after a failure part of the way through.
+     */
+    public void abort() throws IOException {
+        if (!closed) {
+            closed = true;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package dictionary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ * An immutable file of entries in ascending order by key, as written by
+ * LsmDictionary when it flushes its memtable or compacts runs together. An
+ * entry's value may be TOMBSTONE, recording that the key was removed after
+ * older runs were written.
+ *
+ * The file starts with a header, followed by one record per entry: a flag
+ * byte that is set for a tombstone, the length of the encoded key and the key
+ * bytes, and, unless it is a tombstone, the length of the encoded value and
+ * the value bytes. After the records comes a sparse index holding the key and
+ * file offset of every INDEX_INTERVAL-th record, and the last key. The index
+ * is kept in memory, so a lookup binary searches it and then reads and scans
+ * one block of at most INDEX_INTERVAL records.
+ *
+ * A run also records the range of sequence numbers of the flushes whose
+ * entries it holds, which orders runs from newest to oldest and identifies
+ * runs made obsolete by a compaction that was interrupted before it deleted
+ * them.
+ */
+final class SortedRun<K extends Comparable<? super K>, V> implements
+        Closeable {
+
+    static final Object TOMBSTONE = new Object();
+
+    private static final int MAGIC = 0x4C534D52;
+    private static final int FORMAT_VERSION = 1;
+    private static final int INDEX_INTERVAL = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    // Header layout.
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_TIER = 8;
+    private static final int HEADER_COUNT = 12;
+    private static final int HEADER_MIN_SEQUENCE = 16;
+    private static final int HEADER_MAX_SEQUENCE = 24;
+    private static final int HEADER_INDEX = 32;
+    private static final int HEADER_SIZE = 40;
+
+    private final File file;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int tier;
+    private final int count;
+    private final long minSequence;
+    private final long maxSequence;
+    private final long indexOffset;
+    private final Object[] indexKeys;
+    private final long[] indexOffsets;
+    private final K lastKey;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    private SortedRun(File file, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.closed = false;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+
+        try {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getInt(HEADER_MAGIC) != MAGIC
+                    || header.getInt(HEADER_VERSION) != FORMAT_VERSION) {
+                throw new IOException("Not a sorted run: " + file);
+            }
+            this.tier = header.getInt(HEADER_TIER);
+            this.count = header.getInt(HEADER_COUNT);
+            this.minSequence = header.getLong(HEADER_MIN_SEQUENCE);
+            this.maxSequence = header.getLong(HEADER_MAX_SEQUENCE);
+            this.indexOffset = header.getLong(HEADER_INDEX);
+
+            ByteBuffer index =
+                    read(indexOffset, (int) (channel.size() - indexOffset));
+            int n = index.getInt();
+            this.indexKeys = new Object[n];
+            this.indexOffsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                indexKeys[i] = keyCodec.decode(getBytes(index));
+                indexOffsets[i] = index.getLong();
+            }
+            this.lastKey = n == 0 ? null : keyCodec.decode(getBytes(index));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing run.
+     */
+    static <K extends Comparable<? super K>, V> SortedRun<K, V> open(
+            File file, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        return new SortedRun<K, V>(file, keyCodec, valueCodec);
+    }
+
+    /**
+     * Writes entries to a new run and opens it. The run is written to a
+     * temporary file, forced to disk and then renamed, so that a crash never
+     * leaves a partly written run under its own name.
+     *
+     * @param entries
+     *            Entries in strictly ascending order by key, whose values are
+     *            of type V or TOMBSTONE
+     * @param dropTombstones
+     *            Whether to leave out tombstones, which is only correct when
+     *            no older run remains for them to hide entries in
+     * @return the new run, or null if there was nothing to write, in which
+     *         case no file is left behind
+     */
+    static <K extends Comparable<? super K>, V> SortedRun<K, V> write(
+            File file, int tier, long minSequence, long maxSequence,
+            Iterator<? extends DictionaryEntry<K, ?>> entries,
+            boolean dropTombstones, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        Writer<K, V> writer = new Writer<K, V>(temporary, keyCodec, valueCodec);
+        boolean written = false;
+        try {
+            while (entries.hasNext()) {
+                DictionaryEntry<K, ?> entry = entries.next();
+                if (!dropTombstones || entry.getValue() != TOMBSTONE) {
+                    writer.write(entry.getKey(), entry.getValue());
+                }
+            }
+            written = writer.finish(tier, minSequence, maxSequence);
+        } finally {
+            writer.close();
+            if (!written) {
+                temporary.delete();
+            }
+        }
+        if (!written) {
+            return null;
+        }
+
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        Directories.sync(file.getAbsoluteFile().getParentFile());
+        return open(file, keyCodec, valueCodec);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int getTier() {
+        return tier;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getMinSequence() {
+        return minSequence;
+    }
+
+    long getMaxSequence() {
+        return maxSequence;
+    }
+
+    /**
+     * @return the value stored for the key, TOMBSTONE if the run records
+     *         that it was removed, or null if the run does not mention it
+     */
+    Object find(K key) throws IOException {
+        if (indexKeys.length == 0 || lastKey.compareTo(key) < 0) {
+            return null;
+        }
+
+        // The last block whose first key is not greater than the key.
+        int lo = 0;
+        int hi = indexKeys.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            @SuppressWarnings("unchecked")
+            K midKey = (K) indexKeys[mid];
+            if (midKey.compareTo(key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (hi < 0) {
+            return null;
+        }
+
+        long end = hi + 1 < indexOffsets.length ? indexOffsets[hi + 1]
+                : indexOffset;
+        ByteBuffer block =
+                read(indexOffsets[hi], (int) (end - indexOffsets[hi]));
+        while (block.hasRemaining()) {
+            boolean tombstone = block.get() != 0;
+            int cmp = keyCodec.decode(getBytes(block)).compareTo(key);
+            if (cmp > 0) {
+                return null;
+            }
+            if (tombstone) {
+                if (cmp == 0) {
+                    return TOMBSTONE;
+                }
+            } else if (cmp == 0) {
+                return valueCodec.decode(getBytes(block));
+            } else {
+                int length = block.getInt();
+                block.position(block.position() + length);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the entries, which reads the file sequentially
+     * through a buffer of its own. It must not be used once the run is
+     * closed.
+     */
+    Iterator<DictionaryEntry<K, Object>> iterator() {
+        return new RunIterator();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /*
+     * Reads into the buffer from the given offset. FileChannel reads are
+     * interruptible, and an interrupt closes the channel for every thread
+     * sharing it, including a background compaction. So a read closed by an
+     * interrupt, or by another thread's interrupt, reopens the channel and is
+     * retried with the interrupt flag cleared, and the flag is set again
+     * afterwards.
+     */
+    private int readAt(ByteBuffer buffer, long offset) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                FileChannel current = channel;
+                try {
+                    return current.read(buffer, offset);
+                } catch (ClosedChannelException e) {
+                    if (closed) {
+                        throw e;
+                    }
+                    interrupted |= Thread.interrupted();
+                    reopen(current);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void reopen(FileChannel closedChannel)
+            throws IOException {
+        if (channel == closedChannel && !closed) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    // Reads length bytes from the given offset.
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        while (bytes.hasRemaining()) {
+            if (readAt(bytes, offset + bytes.position()) < 0) {
+                throw new EOFException("Sorted run is truncated: " + file);
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /*
+     * Streams records to a new file through a direct buffer, collecting the
+     * sparse index as it goes.
+     */
+    private static class Writer<K extends Comparable<? super K>, V> {
+
+        private final FileChannel channel;
+        private final Codec<K> keyCodec;
+        private final Codec<V> valueCodec;
+        private final ByteBuffer buffer;
+        private final List<byte[]> indexKeys;
+        private final List<Long> indexOffsets;
+        private long offset;
+        private byte[] lastKey;
+        private int count;
+
+        Writer(File file, Codec<K> keyCodec, Codec<V> valueCodec)
+                throws IOException {
+            this.channel =
+                    FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.indexKeys = new ArrayList<byte[]>();
+            this.indexOffsets = new ArrayList<Long>();
+            this.offset = HEADER_SIZE;
+            this.lastKey = null;
+            this.count = 0;
+
+            // The header is filled in by finish.
+            buffer.put(new byte[HEADER_SIZE]);
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(K key, Object value) throws IOException {
+            byte[] keyBytes = keyCodec.encode(key);
+            if (count % INDEX_INTERVAL == 0) {
+                indexKeys.add(keyBytes);
+                indexOffsets.add(offset);
+            }
+
+            put(new byte[] { (byte) (value == TOMBSTONE ? 1 : 0) });
+            putBytes(keyBytes);
+            if (value != TOMBSTONE) {
+                putBytes(valueCodec.encode((V) value));
+            }
+            lastKey = keyBytes;
+            count++;
+        }
+
+        // Writes the index and header, and returns false if the run is empty.
+        boolean finish(int tier, long minSequence, long maxSequence)
+                throws IOException {
+            if (count == 0) {
+                return false;
+            }
+
+            long indexOffset = offset;
+            ByteBuffer n = ByteBuffer.allocate(4).putInt(indexKeys.size());
+            put(n.array());
+            for (int i = 0; i < indexKeys.size(); i++) {
+                putBytes(indexKeys.get(i));
+                put(ByteBuffer.allocate(8).putLong(indexOffsets.get(i))
+                        .array());
+            }
+            putBytes(lastKey);
+            flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_VERSION, FORMAT_VERSION);
+            header.putInt(HEADER_TIER, tier);
+            header.putInt(HEADER_COUNT, count);
+            header.putLong(HEADER_MIN_SEQUENCE, minSequence);
+            header.putLong(HEADER_MAX_SEQUENCE, maxSequence);
+            header.putLong(HEADER_INDEX, indexOffset);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            return true;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            put(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            put(bytes);
+        }
+
+        private void put(byte[] bytes) throws IOException {
+            int written = 0;
+            while (written < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length =
+                        Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, length);
+                written += length;
+            }
+            offset += bytes.length;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /*
+     * Reads the records in order through a buffer, like SnapshotReader, but
+     * with positional reads so that iterators can share the run's channel.
+     */
+    private class RunIterator implements Iterator<DictionaryEntry<K, Object>> {
+
+        private final ByteBuffer buffer;
+        private long position;
+        private int read;
+
+        RunIterator() {
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.position = HEADER_SIZE;
+            this.read = 0;
+            buffer.limit(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < count;
+        }
+
+        @Override
+        public DictionaryEntry<K, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                fill(1);
+                boolean tombstone = buffer.get() != 0;
+                K key = keyCodec.decode(getBytes());
+                Object value =
+                        tombstone ? TOMBSTONE : valueCodec.decode(getBytes());
+                read++;
+                return new ImmutableDictionaryEntry<K, Object>(key, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte[] getBytes() throws IOException {
+            fill(4);
+            byte[] bytes = new byte[buffer.getInt()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                fill(1);
+                int length =
+                        Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            return bytes;
+        }
+
+        private void fill(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                int length = readAt(buffer, position);
+                if (length < 0) {
+                    throw new EOFException("Sorted run is truncated: " + file);
+                }
+                position += length;
+            }
+            buffer.flip();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package dictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/*
+ * Thread-safe decorator for any Dictionary. put, remove and clear take an
+ * exclusive lock, and reads take the shared read lock. If the wrapped
+ * dictionary is a BoundedLookupDictionary, get, size and isEmpty instead run
+ * first under an optimistic read stamp and only take the read lock if a
+ * writer intervened, so read-mostly workloads do not serialise on a single
+ * lock. An optimistic get gives up after size() + 1 entries, more than any
+ * unchanged lookup visits, so the transient cycles a writer may leave in a
+ * tree cannot trap it. Any result or exception seen under an invalidated
+ * stamp is discarded and the read is retried under the lock.
+ *
+ * Iterators run over a snapshot of the entries, copied under the read lock
+ * when iterator() is called. The snapshot is shared by every iterator created
+ * before the next update, and iterating it never blocks writers or throws
+ * ConcurrentModificationException.
+ */
+public class SynchronizedDictionary<K extends Comparable<? super K>, V>
+        implements Dictionary<K, V> {
+
+    private final Dictionary<K, V> dictionary;
+    private final BoundedLookupDictionary<K, V> bounded;
+    private final StampedLock lock;
+    private volatile long version;
+    private volatile Snapshot<K, V> snapshot;
+
+    public SynchronizedDictionary(Dictionary<K, V> dictionary) {
+        this.dictionary = dictionary;
+        this.bounded =
+                dictionary instanceof BoundedLookupDictionary
+                        ? (BoundedLookupDictionary<K, V>) dictionary : null;
+        this.lock = new StampedLock();
+        this.version = 0;
+        this.snapshot = null;
+    }
+
+    @Override
+    public int size() {
+        long stamp = bounded == null ? 0 : lock.tryOptimisticRead();
+        int size = stamp == 0 ? 0 : bounded.size();
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = dictionary.size();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public DictionaryEntry<K, V> getRoot() {
+        long stamp = lock.readLock();
+        try {
+            return dictionary.getRoot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        long stamp = bounded == null ? 0 : lock.tryOptimisticRead();
+
+        if (stamp != 0) {
+            try {
+                V value = bounded.get(key, bounded.size() + 1);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (NoSuchElementException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            } catch (RuntimeException e) {
+                // The structure changed underneath the read, or the lookup
+                // gave up; retry below.
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return dictionary.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            dictionary.put(key, value);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(K key) throws NoSuchElementException {
+        long stamp = lock.writeLock();
+        try {
+            dictionary.remove(key);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            dictionary.clear();
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void putAll(Dictionary<K, ? extends V> other) {
+        if (other == this) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            dictionary.putAll(other);
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeAll(Iterable<? extends K> keys) {
+        long stamp = lock.writeLock();
+        try {
+            boolean changed = dictionary.removeAll(keys);
+            if (changed) {
+                version++;
+            }
+            return changed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the entries that satisfy the filter under the write lock, so the
+     * filter must not call back into this dictionary.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super DictionaryEntry<K, V>> filter) {
+        long stamp = lock.writeLock();
+        try {
+            boolean changed = dictionary.removeIf(filter);
+            if (changed) {
+                version++;
+            }
+            return changed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Iterator<DictionaryEntry<K, V>> iterator() {
+        return snapshot().entries.iterator();
+    }
+
+    /**
+     * Returns a spliterator over the same snapshot as iterator(), which is
+     * IMMUTABLE and splits evenly by position.
+     */
+    @Override
+    public Spliterator<DictionaryEntry<K, V>> spliterator() {
+        Object[] entries = snapshot().array;
+        return EntrySpliterators.fromArray(entries, 0, entries.length,
+                Spliterator.IMMUTABLE);
+    }
+
+    private Snapshot<K, V> snapshot() {
+        Snapshot<K, V> current = snapshot;
+        if (current != null && current.version == version) {
+            return current;
+        }
+
+        // Iterating cannot be bounded as get is, so copy under the lock.
+        long stamp = lock.readLock();
+        try {
+            return cache(new Snapshot<K, V>(version, copyEntries()));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private Snapshot<K, V> cache(Snapshot<K, V> copy) {
+        snapshot = copy;
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DictionaryEntry<K, V>[] copyEntries() {
+        List<DictionaryEntry<K, V>> entries =
+                new ArrayList<DictionaryEntry<K, V>>(dictionary.size());
+        for (DictionaryEntry<K, V> entry : dictionary) {
+            entries.add(new ImmutableDictionaryEntry<K, V>(entry.getKey(),
+                    entry.getValue()));
+        }
+        int size = entries.size();
+        return entries.toArray(
+                (DictionaryEntry<K, V>[]) new DictionaryEntry<?, ?>[size]);
+    }
+
+    private static class Snapshot<K, V> {
+
+        private final long version;
+        private final DictionaryEntry<K, V>[] array;
+        private final List<DictionaryEntry<K, V>> entries;
+
+        public Snapshot(long version, DictionaryEntry<K, V>[] array) {
+            this.version = version;
+            this.array = array;
+            this.entries = Collections.unmodifiableList(Arrays.asList(array));
+        }
+    }
+
+    public String toString() {
+        String res = "[";
+        for (DictionaryEntry<K, V> e : this) {
+            res += e + ", ";
+        }
+        return res + "]";
+    }
+}
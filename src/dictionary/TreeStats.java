@@ -0,0 +1,101 @@
+package dictionary;
+
+import java.util.Arrays;
+
+/**
+ * The shape of a binary tree: its size, its height and the number of nodes at
+ * each depth, where the root is at depth 0. A tree of n nodes is at best
+ * floor(log2 n) + 1 levels high, and the height ratio compares the actual
+ * height with that, so it is 1 for a perfectly balanced tree and n / log2 n
+ * for one degenerated into a list.
+ */
+public class TreeStats {
+
+    private final int[] levelSizes;
+    private final int size;
+    private final double averageDepth;
+
+    /**
+     * @param levelSizes
+     *            levelSizes[d] is the number of nodes at depth d, and the
+     *            array is as long as the tree is high
+     */
+    public TreeStats(int[] levelSizes) {
+        this.levelSizes = levelSizes.clone();
+
+        long n = 0;
+        long depths = 0;
+        for (int d = 0; d < levelSizes.length; d++) {
+            n += levelSizes[d];
+            depths += (long) d * levelSizes[d];
+        }
+        this.size = (int) n;
+        this.averageDepth = n == 0 ? 0 : (double) depths / n;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of levels, which is 0 for an empty tree
+     */
+    public int getHeight() {
+        return levelSizes.length;
+    }
+
+    /**
+     * @return the depth of the deepest node, or -1 for an empty tree
+     */
+    public int getMaxDepth() {
+        return levelSizes.length - 1;
+    }
+
+    /**
+     * @return the mean depth of the nodes, which is the mean number of
+     *         comparisons a successful search makes, less one
+     */
+    public double getAverageDepth() {
+        return averageDepth;
+    }
+
+    /**
+     * @param depth
+     *            A depth, from 0 for the root
+     * @return the number of nodes at that depth
+     */
+    public int getLevelSize(int depth) {
+        return depth < levelSizes.length ? levelSizes[depth] : 0;
+    }
+
+    /**
+     * @return the number of nodes at each depth, from the root down
+     */
+    public int[] getLevelSizes() {
+        return levelSizes.clone();
+    }
+
+    /**
+     * @return the height divided by the least possible height for the size,
+     *         or 1 for an empty tree
+     */
+    public double getHeightRatio() {
+        if (size == 0) {
+            return 1.0;
+        }
+        return (double) getHeight() / minimumHeight(size);
+    }
+
+    // The height of a complete tree of n > 0 nodes, floor(log2 n) + 1.
+    static int minimumHeight(int n) {
+        return 32 - Integer.numberOfLeadingZeros(n);
+    }
+
+    public String toString() {
+        return "size=" + size + " height=" + getHeight() + " averageDepth="
+                + averageDepth + " levels=" + Arrays.toString(levelSizes);
+    }
+}
@@ -0,0 +1,122 @@
+package dictionary;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of the cost of an operation over a range of dictionary
+ * sizes, gathered from a number of repetitions at each size. For each size
+ * this records the mean, median, 99th percentile and maximum of both the
+ * number of key comparisons and the elapsed time in nanoseconds.
+ * Percentiles use the nearest-rank method, so they are always one of the
+ * observed samples.
+ */
+public class ComplexityStatistics {
+
+    private final double[] meanComparisons;
+    private final int[] medianComparisons;
+    private final int[] p99Comparisons;
+    private final int[] maxComparisons;
+    private final double[] meanNanos;
+    private final long[] medianNanos;
+    private final long[] p99Nanos;
+    private final long[] maxNanos;
+
+    /**
+     * Summarises the given samples. The rows of the arrays are sorted in
+     * place.
+     *
+     * @param comparisons
+     *            comparisons[i] holds the comparison count of every
+     *            repetition at the i-th size
+     * @param nanos
+     *            nanos[i] holds the elapsed time of every repetition at the
+     *            i-th size, in the same shape as comparisons
+     */
+    public ComplexityStatistics(int[][] comparisons, long[][] nanos) {
+        if (comparisons.length != nanos.length) {
+            throw new IllegalArgumentException("Sample arrays differ in size");
+        }
+
+        int sizes = comparisons.length;
+        this.meanComparisons = new double[sizes];
+        this.medianComparisons = new int[sizes];
+        this.p99Comparisons = new int[sizes];
+        this.maxComparisons = new int[sizes];
+        this.meanNanos = new double[sizes];
+        this.medianNanos = new long[sizes];
+        this.p99Nanos = new long[sizes];
+        this.maxNanos = new long[sizes];
+
+        for (int i = 0; i < sizes; i++) {
+            int[] counts = comparisons[i];
+            long[] times = nanos[i];
+            if (counts.length == 0 || counts.length != times.length) {
+                throw new IllegalArgumentException(
+                        "Every size needs matching, non-empty samples");
+            }
+
+            Arrays.sort(counts);
+            Arrays.sort(times);
+            long countTotal = 0;
+            long timeTotal = 0;
+            for (int j = 0; j < counts.length; j++) {
+                countTotal += counts[j];
+                timeTotal += times[j];
+            }
+
+            meanComparisons[i] = (double) countTotal / counts.length;
+            medianComparisons[i] = counts[rank(0.5, counts.length)];
+            p99Comparisons[i] = counts[rank(0.99, counts.length)];
+            maxComparisons[i] = counts[counts.length - 1];
+            meanNanos[i] = (double) timeTotal / times.length;
+            medianNanos[i] = times[rank(0.5, times.length)];
+            p99Nanos[i] = times[rank(0.99, times.length)];
+            maxNanos[i] = times[times.length - 1];
+        }
+    }
+
+    // Index of the p-th percentile of n sorted samples.
+    private static int rank(double p, int n) {
+        return Math.max((int) Math.ceil(p * n) - 1, 0);
+    }
+
+    /**
+     * @return the number of sizes summarised
+     */
+    public int size() {
+        return meanComparisons.length;
+    }
+
+    public double getMeanComparisons(int size) {
+        return meanComparisons[size];
+    }
+
+    public int getMedianComparisons(int size) {
+        return medianComparisons[size];
+    }
+
+    public int getP99Comparisons(int size) {
+        return p99Comparisons[size];
+    }
+
+    public int getMaxComparisons(int size) {
+        return maxComparisons[size];
+    }
+
+    public double getMeanNanos(int size) {
+        return meanNanos[size];
+    }
+
+    public long getMedianNanos(int size) {
+        return medianNanos[size];
+    }
+
+    public long getP99Nanos(int size) {
+        return p99Nanos[size];
+    }
+
+    public long getMaxNanos(int size) {
+        return maxNanos[size];
+    }
+
+}
@@ -1,6 +1,13 @@
 package dictionary;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The Dictionary interface provides a simplified interface for implementations
@@ -14,6 +21,10 @@ import java.util.NoSuchElementException;
  * 
  * The iterator returns dictionary-entries in ascending order by key.
  * 
+ * The bulk operations are implemented here one entry at a time.
+ * Implementations override them to make a single pass over their structure
+ * where they can.
+ * 
  * <K> is type for the comparable key element <V> is type for the associated
  * value element
  */
@@ -73,4 +84,94 @@ public interface Dictionary<K extends Comparable<? super K>, V> extends
      */
     public void clear();
 
+    /**
+     * Copies every entry of the given dictionary into this one, replacing the
+     * values of keys that are already present.
+     * 
+     * @param other
+     *            The dictionary whose entries to add
+     */
+    public default void putAll(Dictionary<K, ? extends V> other) {
+        for (DictionaryEntry<K, ? extends V> entry : other) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the entries for each of the given keys that are present.
+     * 
+     * @param keys
+     *            The keys to remove, in any order
+     * @return true if and only if any entry was removed
+     */
+    public default boolean removeAll(Iterable<? extends K> keys) {
+        boolean changed = false;
+        for (K key : keys) {
+            try {
+                remove(key);
+                changed = true;
+            } catch (NoSuchElementException e) {
+                // Absent keys are ignored.
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes every entry that satisfies the given predicate.
+     * 
+     * @param filter
+     *            The predicate which returns true for entries to be removed
+     * @return true if and only if any entry was removed
+     */
+    public default boolean removeIf(
+            Predicate<? super DictionaryEntry<K, V>> filter) {
+        List<K> keys = new ArrayList<K>();
+        for (DictionaryEntry<K, V> entry : this) {
+            if (filter.test(entry)) {
+                keys.add(entry.getKey());
+            }
+        }
+        return removeAll(keys);
+    }
+
+    /**
+     * Passes the key and value of every entry to the given action, in
+     * ascending order by key.
+     * 
+     * @param action
+     *            The action to perform for each entry
+     */
+    public default void forEach(BiConsumer<? super K, ? super V> action) {
+        for (DictionaryEntry<K, V> entry : this) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns a spliterator over the entries in ascending order by key. It
+     * reports ORDERED, SORTED, DISTINCT and NONNULL, and its comparator orders
+     * entries by key. This default splits off batches of entries read from
+     * the iterator, and reports SIZED.
+     */
+    @Override
+    public default Spliterator<DictionaryEntry<K, V>> spliterator() {
+        return EntrySpliterators.fromIterator(this, true, 0);
+    }
+
+    /**
+     * @return a sequential stream over the entries in ascending order by key
+     */
+    public default Stream<DictionaryEntry<K, V>> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a possibly parallel stream over the entries, which is ordered
+     *         by key
+     */
+    public default Stream<DictionaryEntry<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
 }
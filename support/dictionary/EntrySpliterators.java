@@ -0,0 +1,222 @@
+package dictionary;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/*
+ * Spliterators over dictionary entries. Dictionaries iterate in ascending key
+ * order, so every spliterator here reports ORDERED, SORTED, DISTINCT and
+ * NONNULL, and gives a comparator that orders entries by key.
+ */
+final class EntrySpliterators {
+
+    static final int SORTED_ENTRIES = Spliterator.ORDERED | Spliterator.SORTED
+            | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    @SuppressWarnings("rawtypes")
+    private static final Comparator KEY_ORDER =
+            new Comparator<DictionaryEntry<Comparable<Object>, ?>>() {
+                @Override
+                public int compare(DictionaryEntry<Comparable<Object>, ?> a,
+                        DictionaryEntry<Comparable<Object>, ?> b) {
+                    return a.getKey().compareTo(b.getKey());
+                }
+            };
+
+    private EntrySpliterators() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V>
+            Comparator<DictionaryEntry<K, V>> keyOrder() {
+        return KEY_ORDER;
+    }
+
+    /*
+     * A spliterator over the dictionary's iterator, which is created when the
+     * spliterator is first used. Splitting copies successively larger batches
+     * of entries into arrays.
+     */
+    static <K extends Comparable<? super K>, V>
+            Spliterator<DictionaryEntry<K, V>> fromIterator(
+                    Dictionary<K, V> d, boolean sized, int characteristics) {
+        return new IteratorSpliterator<K, V>(d, sized, characteristics
+                | SORTED_ENTRIES);
+    }
+
+    // A spliterator over array[from, to), which must hold sorted entries.
+    static <K extends Comparable<? super K>, V>
+            Spliterator<DictionaryEntry<K, V>> fromArray(Object[] array,
+                    int from, int to, int characteristics) {
+        return new ArraySpliterator<K, V>(array, from, to, characteristics
+                | SORTED_ENTRIES | Spliterator.SIZED | Spliterator.SUBSIZED);
+    }
+
+    private static class IteratorSpliterator<K extends Comparable<? super K>, V>
+            implements Spliterator<DictionaryEntry<K, V>> {
+
+        private static final int BATCH_UNIT = 1 << 10;
+        private static final int MAX_BATCH = 1 << 25;
+
+        private final Dictionary<K, V> d;
+        private final boolean sized;
+        private final int characteristics;
+        private Iterator<DictionaryEntry<K, V>> it;
+        private long estimate;
+        private int batch;
+
+        public IteratorSpliterator(Dictionary<K, V> d, boolean sized,
+                int characteristics) {
+            this.d = d;
+            this.sized = sized;
+            this.characteristics =
+                    sized ? characteristics | Spliterator.SIZED
+                            : characteristics;
+            this.it = null;
+            this.batch = 0;
+        }
+
+        private void bind() {
+            if (it == null) {
+                it = d.iterator();
+                estimate = sized ? d.size() : Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            bind();
+            if (!it.hasNext()) {
+                return false;
+            }
+
+            action.accept(it.next());
+            if (sized) {
+                estimate--;
+            }
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            bind();
+            while (it.hasNext()) {
+                action.accept(it.next());
+            }
+            if (sized) {
+                estimate = 0;
+            }
+        }
+
+        @Override
+        public Spliterator<DictionaryEntry<K, V>> trySplit() {
+            bind();
+            if (estimate <= 1 || !it.hasNext()) {
+                return null;
+            }
+
+            int n = (int) Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH),
+                    estimate);
+            Object[] array = new Object[n];
+            int j = 0;
+            while (j < n && it.hasNext()) {
+                array[j++] = it.next();
+            }
+            batch = j;
+            if (sized) {
+                estimate -= j;
+            }
+            // The batch is a private copy, so it is never concurrent.
+            return new ArraySpliterator<K, V>(array, 0, j,
+                    (characteristics & ~Spliterator.CONCURRENT)
+                            | Spliterator.SIZED | Spliterator.SUBSIZED);
+        }
+
+        @Override
+        public long estimateSize() {
+            bind();
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super DictionaryEntry<K, V>> getComparator() {
+            return keyOrder();
+        }
+    }
+
+    private static class ArraySpliterator<K extends Comparable<? super K>, V>
+            implements Spliterator<DictionaryEntry<K, V>> {
+
+        private final Object[] array;
+        private int from;
+        private final int to;
+        private final int characteristics;
+
+        public ArraySpliterator(Object[] array, int from, int to,
+                int characteristics) {
+            this.array = array;
+            this.from = from;
+            this.to = to;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept((DictionaryEntry<K, V>) array[from++]);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(
+                Consumer<? super DictionaryEntry<K, V>> action) {
+            for (int i = from; i < to; i++) {
+                action.accept((DictionaryEntry<K, V>) array[i]);
+            }
+            from = to;
+        }
+
+        @Override
+        public Spliterator<DictionaryEntry<K, V>> trySplit() {
+            int mid = (from + to) >>> 1;
+            if (mid <= from) {
+                return null;
+            }
+
+            Spliterator<DictionaryEntry<K, V>> prefix =
+                    new ArraySpliterator<K, V>(array, from, mid,
+                            characteristics);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super DictionaryEntry<K, V>> getComparator() {
+            return keyOrder();
+        }
+    }
+}
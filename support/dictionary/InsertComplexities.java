@@ -1,13 +1,36 @@
 package dictionary;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
 /**
  * This is a utility class that can keep track of the number of comparisons
  * performed by the keys that it generates.
+ *
+ * An instance counts comparisons in a single field, so it must only be used by
+ * one thread at a time. Concurrent experiments should give each thread its
+ * own instance.
  */
 public class InsertComplexities {
 
+    /**
+     * The operations whose cost can be analysed.
+     */
+    public enum Operation {
+        /** Inserting a key that is not yet present. */
+        INSERT,
+        /** Looking up a key that is present. */
+        GET_HIT,
+        /** Looking up a key that is not present. */
+        GET_MISS,
+        /** Removing a key that is present. */
+        REMOVE,
+        /** Iterating over every entry. */
+        ITERATE
+    }
+
     private final Random random;
 
     private int keyComparisonCount;
@@ -36,8 +59,8 @@ public class InsertComplexities {
      * @return an array with length maxSize, where the element at index i in the
      *         array is the average number of comparisons needed to insert a
      *         single unique piece of randomly generated data into a dictionary
-     *         of size i. The averaging happens by performing these operations
-     *         reptitions number of times.
+     *         of size i, rounded to the nearest integer. The averaging happens
+     *         by performing these operations reptitions number of times.
      * 
      *         For example, if the returned array was { 0, 1, 3, 6 }, then
      *         inserting into an empty dictionary takes 0 comparisons on
@@ -48,32 +71,173 @@ public class InsertComplexities {
      */
     public int[] getInsertComplexities(Dictionary<InstrumentedKey, Integer> d,
             int maxSize, int repititions) {
-        int[] totals = new int[maxSize];
+        ComplexityStatistics stats =
+                getComplexities(Operation.INSERT, d, maxSize, repititions);
 
-        for (int i = 0; i < repititions; i++) {
-            int[] counts = doInserts(d, maxSize);
+        int[] averages = new int[maxSize];
+        for (int j = 0; j < maxSize; j++) {
+            averages[j] = (int) Math.round(stats.getMeanComparisons(j));
+        }
+        return averages;
+    }
+
+    /**
+     * Analyse the cost of an operation on a Dictionary of various sizes.
+     *
+     * @param op
+     *            The operation to analyse
+     * @param d
+     *            An instance of the Dictionary to analyse.
+     * @param maxSize
+     *            the maximum size of a Dictionary to test up to.
+     * @param repetitions
+     *            The number of times to repeat the operations.
+     * @return statistics over maxSize sizes, where the statistics at index i
+     *         describe a single operation on a dictionary holding i entries.
+     *         Operations that need an entry to be present cost nothing at
+     *         size 0.
+     */
+    public ComplexityStatistics getComplexities(Operation op,
+            Dictionary<InstrumentedKey, Integer> d, int maxSize,
+            int repetitions) {
+        int[][] comparisons = new int[maxSize][repetitions];
+        long[][] nanos = new long[maxSize][repetitions];
+        int[] counts = new int[maxSize];
+        long[] times = new long[maxSize];
+
+        for (int i = 0; i < repetitions; i++) {
+            newTrial(op, d).step(maxSize, counts, times, 0);
 
             for (int j = 0; j < maxSize; j++) {
-                totals[j] += counts[j];
+                comparisons[j][i] = counts[j];
+                nanos[j][i] = times[j];
             }
         }
+        return new ComplexityStatistics(comparisons, nanos);
+    }
 
-        for (int j = 0; j < maxSize; j++) {
-            totals[j] /= repititions;
+    /**
+     * Starts a single repetition of an analysis, which can then be advanced a
+     * few sizes at a time.
+     *
+     * @param op
+     *            The operation to analyse
+     * @param d
+     *            The Dictionary to analyse, which is cleared first
+     * @return a trial positioned at the empty dictionary
+     */
+    public Trial newTrial(Operation op,
+            Dictionary<InstrumentedKey, Integer> d) {
+        return new Trial(op, d);
+    }
+
+    /**
+     * One repetition of an analysis. Each step performs the operation once on
+     * the dictionary at its current size and then grows the dictionary by one
+     * entry.
+     */
+    public class Trial {
+
+        private final Operation op;
+        private final Dictionary<InstrumentedKey, Integer> d;
+        private final List<InstrumentedKey> keys;
+        private int sink;
+
+        private Trial(Operation op, Dictionary<InstrumentedKey, Integer> d) {
+            this.op = op;
+            this.d = d;
+            this.keys = new ArrayList<InstrumentedKey>();
+            d.clear();
         }
 
-        return totals;
-    }
+        /**
+         * @return the number of entries in the dictionary, which is also the
+         *         number of steps performed so far
+         */
+        public int size() {
+            return keys.size();
+        }
 
-    private int[] doInserts(Dictionary<InstrumentedKey, Integer> d, int limit) {
-        int[] counts = new int[limit];
-        d.clear();
-        for (int i = 0; i < limit; i++) {
-            keyComparisonCount = 0;
-            d.put(new InstrumentedKey(random.nextInt() + "-" + i), i);
-            counts[i] = keyComparisonCount;
+        /**
+         * Performs the next count steps.
+         *
+         * @param count
+         *            The number of steps to perform
+         * @param comparisons
+         *            Receives the comparisons made by each step, starting at
+         *            index offset
+         * @param nanos
+         *            Receives the elapsed time of each step, starting at index
+         *            offset
+         * @param offset
+         *            The index at which to record the first step
+         */
+        public void step(int count, int[] comparisons, long[] nanos,
+                int offset) {
+            for (int i = 0; i < count; i++) {
+                int size = keys.size();
+                InstrumentedKey key =
+                        new InstrumentedKey(random.nextInt() + "-" + size);
+                long elapsed = 0;
+                keyComparisonCount = 0;
+
+                switch (op) {
+                case INSERT:
+                    long start = System.nanoTime();
+                    d.put(key, size);
+                    elapsed = System.nanoTime() - start;
+                    break;
+                case GET_HIT:
+                    if (size > 0) {
+                        InstrumentedKey present =
+                                keys.get(random.nextInt(size));
+                        start = System.nanoTime();
+                        sink += d.get(present);
+                        elapsed = System.nanoTime() - start;
+                    }
+                    break;
+                case GET_MISS:
+                    // Present keys never contain an 'm'.
+                    InstrumentedKey absent =
+                            new InstrumentedKey(random.nextInt() + "-m" + size);
+                    start = System.nanoTime();
+                    try {
+                        sink += d.get(absent);
+                    } catch (NoSuchElementException e) {
+                        sink++;
+                    }
+                    elapsed = System.nanoTime() - start;
+                    break;
+                case REMOVE:
+                    if (size > 0) {
+                        int index = random.nextInt(size);
+                        InstrumentedKey present = keys.get(index);
+                        start = System.nanoTime();
+                        d.remove(present);
+                        elapsed = System.nanoTime() - start;
+                        // Put it back so that the dictionary keeps growing.
+                        int recorded = keyComparisonCount;
+                        d.put(present, index);
+                        keyComparisonCount = recorded;
+                    }
+                    break;
+                case ITERATE:
+                    start = System.nanoTime();
+                    for (DictionaryEntry<InstrumentedKey, Integer> e : d) {
+                        sink += e.getValue();
+                    }
+                    elapsed = System.nanoTime() - start;
+                    break;
+                }
+
+                comparisons[offset + i] = keyComparisonCount;
+                nanos[offset + i] = elapsed;
+                if (op != Operation.INSERT) {
+                    d.put(key, size);
+                }
+                keys.add(key);
+            }
         }
-        return counts;
     }
 
     public class InstrumentedKey implements Comparable<InstrumentedKey> {
@@ -90,6 +254,18 @@ public class InsertComplexities {
             return this.key.compareTo(o.key);
         }
 
+        // Consistent with compareTo, for dictionaries with a hash index.
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof InstrumentedKey
+                    && key.equals(((InstrumentedKey) o).key);
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
     }
 
 }
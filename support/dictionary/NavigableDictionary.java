@@ -0,0 +1,61 @@
+package dictionary;
+
+import java.util.Iterator;
+
+/**
+ * A Dictionary that also supports queries relative to the ordering of its
+ * keys: the nearest keys to a given key, ranges of keys, and positions of keys
+ * in ascending order.
+ * 
+ * <K> is type for the comparable key element <V> is type for the associated
+ * value element
+ */
+public interface NavigableDictionary<K extends Comparable<? super K>, V>
+        extends Dictionary<K, V> {
+
+    /**
+     * @param key
+     *            The key to search from
+     * @return the entry with the greatest key less than or equal to the given
+     *         key, or null if there is none
+     */
+    public DictionaryEntry<K, V> floor(K key);
+
+    /**
+     * @param key
+     *            The key to search from
+     * @return the entry with the least key greater than or equal to the given
+     *         key, or null if there is none
+     */
+    public DictionaryEntry<K, V> ceiling(K key);
+
+    /**
+     * Returns the entries whose keys lie in the given range, in ascending
+     * order by key.
+     * 
+     * @param from
+     *            The lowest key of the range, inclusive
+     * @param to
+     *            The highest key of the range, exclusive
+     * @return an iterator over the entries in the range
+     */
+    public Iterator<DictionaryEntry<K, V>> rangeIterator(K from, K to);
+
+    /**
+     * @param key
+     *            The key to find the position of, which need not be present
+     * @return the number of keys in the dictionary strictly less than the key
+     */
+    public int rank(K key);
+
+    /**
+     * @param index
+     *            The position of the entry in ascending order, from 0
+     * @return the entry at that position
+     * @throws IndexOutOfBoundsException
+     *             if index is negative or not less than size()
+     */
+    public DictionaryEntry<K, V> select(int index)
+            throws IndexOutOfBoundsException;
+
+}
@@ -0,0 +1,71 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBPlusTreeDictionary extends TestDictionary {
+
+    @Override
+    public void setUp() {
+        // A small fan-out makes the tests exercise splits and merges.
+        d = new BPlusTreeDictionary<String, Integer>(4);
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testSplitsAndMerges() {
+        BPlusTreeDictionary<Integer, Integer> tree =
+                new BPlusTreeDictionary<Integer, Integer>(3);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (Integer key : keys) {
+            tree.put(key, key * 2);
+        }
+
+        Collections.shuffle(keys, new Random(7));
+        for (Integer key : keys.subList(0, 1500)) {
+            tree.remove(key);
+        }
+
+        List<Integer> remaining =
+                new ArrayList<Integer>(keys.subList(1500, keys.size()));
+        Collections.sort(remaining);
+        assertEquals("size() failed after removals", remaining.size(),
+                tree.size());
+
+        int i = 0;
+        for (DictionaryEntry<Integer, Integer> entry : tree) {
+            assertEquals("Iterator next() returned the wrong element",
+                    remaining.get(i), entry.getKey());
+            assertEquals("get() returned the wrong value",
+                    (Integer) (entry.getKey() * 2), tree.get(entry.getKey()));
+            i++;
+        }
+        assertEquals("Iterator missed entries", remaining.size(), i);
+
+        for (Integer key : remaining) {
+            tree.remove(key);
+        }
+        assertTrue("Tree not empty after removing every key", tree.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFanOut() {
+        new BPlusTreeDictionary<String, Integer>(2);
+    }
+
+}
@@ -1,5 +1,21 @@
 package dictionary;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+
+import org.junit.Test;
+
 public class TestBinarySearchTree extends TestDictionary {
 
     @Override
@@ -12,4 +28,381 @@ public class TestBinarySearchTree extends TestDictionary {
         d = null;
     }
 
+    @Test
+    public void testDegenerateTreeDoesNotOverflowStack() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        int n = 30000;
+        for (int i = 0; i < n; i++) {
+            tree.put(i, i);
+        }
+
+        assertEquals("get() failed at the bottom of the spine",
+                (Integer) (n - 1), tree.get(n - 1));
+        tree.remove(n - 1);
+        assertEquals("remove() failed at the bottom of the spine", n - 1,
+                tree.size());
+        tree.clear();
+        assertTrue("clear() failed for a degenerate tree", tree.isEmpty());
+    }
+
+    @Test
+    public void testBoundedGet() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 10; i++) {
+            tree.put(i, i);
+        }
+
+        assertEquals("bounded get() failed at the bottom of the spine",
+                (Integer) 9, tree.get(9, 10));
+        try {
+            tree.get(9, 9);
+            assertTrue("bounded get() did not give up", false);
+        } catch (ConcurrentModificationException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testFromSortedIsBalanced() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(
+                        sortedEntries(0, 1023, 1).iterator(), 1023);
+
+        assertEquals("size() failed after bulk load", 1023, tree.size());
+        assertEquals("root is not the median key", (Integer) 511, tree
+                .getRoot().getKey());
+        assertEquals("height is not minimal", 10, height(tree.getRoot()));
+        for (int i = 0; i < 1023; i++) {
+            assertEquals("get() failed after bulk load", (Integer) i,
+                    tree.get(i));
+        }
+    }
+
+    @Test
+    public void testFromSortedParallel() {
+        int n = 200000;
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, n, 1).iterator(),
+                        n);
+
+        assertEquals("size() failed after bulk load", n, tree.size());
+        assertTrue("parallel build is not balanced",
+                height(tree.getRoot()) <= 18);
+        int expected = 0;
+        for (DictionaryEntry<Integer, Integer> entry : tree) {
+            assertEquals("Iterator next() returned the wrong element",
+                    (Integer) expected++, entry.getKey());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedRejectsUnsortedInput() {
+        List<DictionaryEntry<String, Integer>> entries =
+                Arrays.<DictionaryEntry<String, Integer>> asList(
+                        new ImmutableDictionaryEntry<String, Integer>("Alonzo",
+                                1),
+                        new ImmutableDictionaryEntry<String, Integer>(
+                                "Admetus", 2));
+        BinarySearchTree.fromSorted(entries.iterator(), entries.size());
+    }
+
+    @Test
+    public void testPutAllSortedMerges() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 100; i += 2) {
+            tree.put(i, -i);
+        }
+
+        tree.putAllSorted(sortedEntries(50, 150, 1).iterator(), 100);
+
+        assertEquals("size() failed after merging", 125, tree.size());
+        assertEquals("existing value lost in merge", (Integer) (-48),
+                tree.get(48));
+        assertEquals("merged value did not replace the old one",
+                (Integer) 50, tree.get(50));
+        assertEquals("new key missing after merge", (Integer) 149,
+                tree.get(149));
+    }
+
+    @Test
+    public void testFloorAndCeiling() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, 100, 10)
+                        .iterator(), 10);
+
+        assertEquals("floor() failed on a present key", (Integer) 40,
+                tree.floor(40).getKey());
+        assertEquals("floor() failed between keys", (Integer) 40,
+                tree.floor(45).getKey());
+        assertNull("floor() failed below the minimum", tree.floor(-1));
+        assertEquals("ceiling() failed between keys", (Integer) 50,
+                tree.ceiling(45).getKey());
+        assertEquals("ceiling() failed on a present key", (Integer) 90,
+                tree.ceiling(90).getKey());
+        assertNull("ceiling() failed above the maximum", tree.ceiling(91));
+    }
+
+    @Test
+    public void testRankAndSelect() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        Random random = new Random(7);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 500; i++) {
+            keys.add(i * 2);
+        }
+        Collections.shuffle(keys, random);
+        for (Integer key : keys) {
+            tree.put(key, key);
+        }
+        for (int i = 0; i < 500; i += 3) {
+            tree.remove(keys.get(i));
+        }
+
+        checkRanks(tree);
+        assertEquals("rank() failed below the minimum", 0, tree.rank(-5));
+        assertEquals("rank() failed above the maximum", tree.size(),
+                tree.rank(5000));
+    }
+
+    @Test
+    public void testRankAfterPutAllSorted() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 100; i += 2) {
+            tree.put(i, i);
+        }
+        tree.putAllSorted(sortedEntries(50, 150, 1).iterator(), 100);
+
+        checkRanks(tree);
+        assertEquals("rank() failed on a missing key", 25, tree.rank(49));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfBounds() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, 10, 1)
+                        .iterator(), 10);
+        tree.select(10);
+    }
+
+    @Test
+    public void testRangeIterator() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, 100, 2)
+                        .iterator(), 50);
+
+        Iterator<DictionaryEntry<Integer, Integer>> it =
+                tree.rangeIterator(15, 25);
+        for (int key = 16; key < 25; key += 2) {
+            assertTrue("Range iterator ended early", it.hasNext());
+            assertEquals("Range iterator returned the wrong element",
+                    (Integer) key, it.next().getKey());
+        }
+        assertFalse("Range iterator ran past the upper bound", it.hasNext());
+        assertFalse("Empty range returned elements",
+                tree.rangeIterator(200, 300).hasNext());
+        assertFalse("Upper bound is not exclusive",
+                tree.rangeIterator(10, 10).hasNext());
+    }
+
+    @Test
+    public void testSpliteratorSplitsByPosition() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            tree.put(i, i);
+        }
+
+        Spliterator<DictionaryEntry<Integer, Integer>> suffix =
+                tree.spliterator();
+        Spliterator<DictionaryEntry<Integer, Integer>> prefix =
+                suffix.trySplit();
+        assertTrue("spliterator() is not SUBSIZED",
+                suffix.hasCharacteristics(Spliterator.SUBSIZED));
+        assertEquals("prefix has the wrong size", 500, prefix.estimateSize());
+        assertEquals("suffix has the wrong size", 500, suffix.estimateSize());
+
+        final int[] next = { 0 };
+        prefix.forEachRemaining(e -> assertEquals("prefix out of order",
+                (Integer) next[0]++, e.getKey()));
+        suffix.forEachRemaining(e -> assertEquals("suffix out of order",
+                (Integer) next[0]++, e.getKey()));
+        assertEquals("spliterators missed entries", 1000, next[0]);
+    }
+
+    @Test
+    public void testParallelStreamSum() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, 100000, 1)
+                        .iterator(), 100000);
+
+        assertEquals("parallel sum failed", 4999950000L, tree
+                .parallelStream().mapToLong(e -> e.getValue()).sum());
+    }
+
+    @Test
+    public void testIteratorOnDegenerateTree() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            tree.put(i, i);
+        }
+
+        Iterator<DictionaryEntry<Integer, Integer>> it = tree.iterator();
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("iterator() out of order", (Integer) i, it.next()
+                    .getKey());
+        }
+        assertFalse("iterator() ran past the last entry", it.hasNext());
+
+        final int[] next = { 0 };
+        tree.forEach((key, value) -> assertEquals("forEach() out of order",
+                (Integer) next[0]++, key));
+        assertEquals("forEach() missed entries", 5000, next[0]);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testForEachConcurrent() {
+        final BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 10; i++) {
+            tree.put(i, i);
+        }
+
+        tree.forEach((key, value) -> tree.remove(key));
+    }
+
+    @Test
+    public void testStats() {
+        BinarySearchTree<Integer, Integer> tree =
+                BinarySearchTree.fromSorted(sortedEntries(0, 7, 1).iterator(),
+                        7);
+        TreeStats stats = tree.stats();
+        assertEquals("size failed", 7, stats.getSize());
+        assertEquals("height failed", 3, stats.getHeight());
+        assertTrue("level sizes failed", Arrays.equals(new int[] { 1, 2, 4 },
+                stats.getLevelSizes()));
+        assertEquals("average depth failed", 10.0 / 7,
+                stats.getAverageDepth(), 1e-9);
+
+        tree.put(7, 7);
+        assertEquals("new level not counted", 1, tree.stats()
+                .getLevelSize(3));
+
+        TreeStats empty = new BinarySearchTree<Integer, Integer>().stats();
+        assertEquals("empty tree has levels", 0, empty.getHeight());
+        assertEquals("empty tree has a depth", -1, empty.getMaxDepth());
+    }
+
+    @Test
+    public void testRebalance() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        tree.rebalance();
+        for (int n = 1; n <= 100; n++) {
+            tree.put(n, n);
+            tree.rebalance();
+            assertEquals("rebalance() left the tree too high",
+                    TreeStats.minimumHeight(n), tree.stats().getHeight());
+            checkLinks(tree.getRoot(), null);
+            checkRanks(tree);
+        }
+
+        tree.clear();
+        for (int i = 0; i < 5000; i++) {
+            tree.put(i, i);
+        }
+        assertEquals("sorted puts did not degenerate", 5000, tree.stats()
+                .getHeight());
+        tree.rebalance();
+        TreeStats stats = tree.stats();
+        assertEquals("rebalance() left the tree too high", 13,
+                stats.getHeight());
+        for (int d = 0; d < 12; d++) {
+            assertEquals("level " + d + " is not full", 1 << d,
+                    stats.getLevelSize(d));
+        }
+        checkLinks(tree.getRoot(), null);
+        checkRanks(tree);
+    }
+
+    @Test
+    public void testAutoRebalance() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        tree.setAutoRebalance(2);
+        for (int i = 0; i < 5000; i++) {
+            tree.put(i, i);
+            assertTrue("height exceeded the bound after " + i, tree.stats()
+                    .getHeightRatio() <= 2);
+        }
+        for (int i = 10000; i > 5000; i -= 3) {
+            tree.put(i, i);
+        }
+        assertTrue("height exceeded the bound",
+                tree.stats().getHeightRatio() <= 2);
+        checkLinks(tree.getRoot(), null);
+        checkRanks(tree);
+
+        tree.setAutoRebalance(0);
+        for (int i = -1; i > -100; i--) {
+            tree.put(i, i);
+        }
+        assertTrue("setAutoRebalance(0) did not turn it off", tree.stats()
+                .getHeightRatio() > 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAutoRebalanceFactorTooSmall() {
+        new BinarySearchTree<Integer, Integer>().setAutoRebalance(1);
+    }
+
+    // Checks select() and rank() against an in-order traversal.
+    private static void checkRanks(BinarySearchTree<Integer, Integer> tree) {
+        int index = 0;
+        for (DictionaryEntry<Integer, Integer> entry : tree) {
+            assertEquals("rank() failed", index, tree.rank(entry.getKey()));
+            assertEquals("select() failed", entry.getKey(),
+                    tree.select(index).getKey());
+            index++;
+        }
+        assertEquals("root size is not the dictionary size", tree.size(),
+                BinarySearchTreeEntry.sizeOf(tree.getRoot()));
+    }
+
+    // Checks the parent links and subtree sizes below node.
+    private static int checkLinks(BinarySearchTreeEntry<?, ?> node,
+            BinarySearchTreeEntry<?, ?> parent) {
+        if (node == null) {
+            return 0;
+        }
+        assertTrue("parent link failed", node.getParent() == parent);
+        int size =
+                1 + checkLinks(node.getLeft(), node)
+                        + checkLinks(node.getRight(), node);
+        assertEquals("subtree size failed", size, node.getSize());
+        return size;
+    }
+
+    private static List<DictionaryEntry<Integer, Integer>> sortedEntries(
+            int from, int to, int step) {
+        List<DictionaryEntry<Integer, Integer>> entries =
+                new ArrayList<DictionaryEntry<Integer, Integer>>();
+        for (int i = from; i < to; i += step) {
+            entries.add(new ImmutableDictionaryEntry<Integer, Integer>(i, i));
+        }
+        return entries;
+    }
+
+    private static int height(BinarySearchTreeEntry<?, ?> node) {
+        if (node == null) {
+            return 0;
+        }
+        return 1 + Math.max(height(node.getLeft()), height(node.getRight()));
+    }
+
 }
@@ -0,0 +1,133 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class TestBloomFilteredDictionary extends TestDictionary {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Override
+    public void setUp() {
+        d =
+                new BloomFilteredDictionary<String, Integer>(
+                        new BinarySearchTree<String, Integer>(),
+                        FALSE_POSITIVE_RATE);
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testMissesAreFiltered() {
+        BloomFilteredDictionary<Integer, Integer> filtered = newFiltered(16);
+        for (int i = 0; i < 10000; i++) {
+            filtered.put(i, i);
+        }
+        int misses = countMisses(filtered, 10000, 20000);
+
+        assertEquals("absent key found", 10000, misses);
+        assertEquals("misses not counted", 10000,
+                filtered.getFilteredCount() + filtered.getFalsePositiveCount());
+        // The filter grew with the entries, so it still meets its target.
+        assertTrue("too many false positives: "
+                + filtered.getFalsePositiveCount(),
+                filtered.getFalsePositiveCount() < 300);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("present key filtered out", (Integer) i,
+                    filtered.get(i));
+        }
+    }
+
+    @Test
+    public void testFilteredMissHasNoStackTrace() {
+        BloomFilteredDictionary<Integer, Integer> filtered = newFiltered(16);
+        try {
+            filtered.get(1);
+            assertTrue("absent key found", false);
+        } catch (NoSuchElementException e) {
+            assertEquals("stack trace filled in", 0, e.getStackTrace().length);
+            // Suppressed exceptions must not leak into later misses.
+            e.addSuppressed(new IllegalStateException());
+        }
+        try {
+            filtered.get(2);
+            assertTrue("absent key found", false);
+        } catch (NoSuchElementException e) {
+            assertEquals("miss exception shared", 0,
+                    e.getSuppressed().length);
+        }
+    }
+
+    @Test
+    public void testRebuildAfterRemoves() {
+        BloomFilteredDictionary<Integer, Integer> filtered = newFiltered(1000);
+        for (int i = 0; i < 1000; i++) {
+            filtered.put(i, i);
+        }
+        for (int i = 0; i < 900; i++) {
+            filtered.remove(i);
+        }
+        // Each rebuild waits for a quarter of the remaining keys to go, so
+        // there are only logarithmically many.
+        long rebuilds = filtered.getRebuildCount();
+        assertTrue("filter not rebuilt", rebuilds > 0);
+        assertTrue("filter rebuilt too often: " + rebuilds, rebuilds < 10);
+
+        // Most removed keys are no longer in the rebuilt filter.
+        assertEquals("removed key found", 900, countMisses(filtered, 0, 900));
+        assertTrue("removed keys got past the filter: "
+                + filtered.getFalsePositiveCount(),
+                filtered.getFalsePositiveCount() < 300);
+        assertEquals("size() failed", 100, filtered.size());
+    }
+
+    @Test
+    public void testWrapsExistingEntries() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, i);
+        }
+        BloomFilteredDictionary<Integer, Integer> filtered =
+                new BloomFilteredDictionary<Integer, Integer>(tree,
+                        FALSE_POSITIVE_RATE);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("existing key filtered out", (Integer) i,
+                    filtered.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFalsePositiveRateOutOfRange() {
+        new BloomFilteredDictionary<String, Integer>(
+                new BinarySearchTree<String, Integer>(), 1.0);
+    }
+
+    private static BloomFilteredDictionary<Integer, Integer> newFiltered(
+            int expectedEntries) {
+        return new BloomFilteredDictionary<Integer, Integer>(
+                new BinarySearchTree<Integer, Integer>(), expectedEntries,
+                FALSE_POSITIVE_RATE);
+    }
+
+    private static int countMisses(Dictionary<Integer, Integer> dictionary,
+            int from, int to) {
+        int misses = 0;
+        for (int i = from; i < to; i++) {
+            try {
+                dictionary.get(i);
+            } catch (NoSuchElementException e) {
+                misses++;
+            }
+        }
+        return misses;
+    }
+
+}
@@ -0,0 +1,174 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class TestCachingDictionary extends TestDictionary {
+
+    @Override
+    public void setUp() {
+        d =
+                new CachingDictionary<String, Integer>(
+                        new BinarySearchTree<String, Integer>(),
+                        Long.MAX_VALUE, EvictionPolicies.<String> lru());
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testLruEvictsLeastRecentlyUsed() {
+        CachingDictionary<Integer, Integer> cache = newCache(3,
+                EvictionPolicies.<Integer> lru());
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.get(1);
+        cache.put(4, 4);
+
+        assertEquals("size() exceeded the maximum", 3, cache.size());
+        assertFalse("least recently used key was kept", contains(cache, 2));
+        assertTrue("recently used key was evicted", contains(cache, 1));
+        assertEquals("eviction not counted", 1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLfuEvictsLeastFrequentlyUsed() {
+        CachingDictionary<Integer, Integer> cache = newCache(3,
+                EvictionPolicies.<Integer> lfu());
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        for (int i = 0; i < 3; i++) {
+            cache.get(1);
+            cache.get(3);
+        }
+        cache.get(2);
+        cache.get(3);
+        cache.put(4, 4);
+        cache.put(5, 5);
+
+        assertFalse("least frequently used key was kept", contains(cache, 2));
+        assertFalse("newer key of equal frequency was kept",
+                contains(cache, 4));
+        assertTrue("frequently used key was evicted", contains(cache, 1));
+        assertTrue("frequently used key was evicted", contains(cache, 3));
+        assertTrue("newest key was evicted", contains(cache, 5));
+    }
+
+    @Test
+    public void testWindowTinyLfuResistsScans() {
+        CachingDictionary<Integer, Integer> cache = newCache(100,
+                EvictionPolicies.<Integer> windowTinyLfu(100));
+        for (int i = 0; i < 50; i++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.getOrCompute(hot, k -> k);
+            }
+        }
+
+        // A long scan of keys that are each used once, which pushes every hot
+        // key out of an LRU cache of this size between its uses.
+        for (int i = 1000; i < 100000; i++) {
+            cache.getOrCompute(i, k -> k);
+            if (i % 2 == 0) {
+                cache.getOrCompute(i / 2 % 50, k -> k);
+            }
+            assertTrue("size() exceeded the maximum", cache.size() <= 100);
+        }
+
+        for (int hot = 0; hot < 50; hot++) {
+            assertTrue("scan evicted a frequently used key",
+                    contains(cache, hot));
+        }
+    }
+
+    @Test
+    public void testWeightedEviction() {
+        CachingDictionary<Integer, String> cache =
+                new CachingDictionary<Integer, String>(
+                        new RedBlackTree<Integer, String>(), 10,
+                        (key, value) -> value.length(),
+                        EvictionPolicies.<Integer> lru());
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        assertEquals("getWeight() failed", 8, cache.getWeight());
+
+        cache.put(1, "a");
+        assertEquals("getWeight() failed after replacing", 5,
+                cache.getWeight());
+
+        cache.put(3, "cccccc");
+        assertEquals("getWeight() exceeded the maximum", 7, cache.getWeight());
+        assertEquals("the wrong entries were evicted", 2, cache.size());
+
+        cache.put(4, "too heavy to keep");
+        assertEquals("an overweight entry changed the weight", 7,
+                cache.getWeight());
+        assertFalse("an overweight entry was kept", contains(cache, 4));
+        cache.put(3, "too heavy to keep");
+        assertFalse("an overweight value did not displace the old one",
+                contains(cache, 3));
+        assertEquals("getWeight() failed after displacing", 1,
+                cache.getWeight());
+    }
+
+    @Test
+    public void testCounters() {
+        CachingDictionary<Integer, Integer> cache = newCache(10,
+                EvictionPolicies.<Integer> lru());
+        assertEquals("getOrCompute() failed", (Integer) 2,
+                cache.getOrCompute(1, k -> k * 2));
+        assertEquals("getOrCompute() recomputed a present key", (Integer) 2,
+                cache.getOrCompute(1, k -> k * 3));
+        cache.get(1);
+        try {
+            cache.get(2);
+        } catch (NoSuchElementException e) {
+            // A miss.
+        }
+
+        assertEquals("hits not counted", 2, cache.getHitCount());
+        assertEquals("misses not counted", 2, cache.getMissCount());
+        assertEquals("getHitRate() failed", 0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testExistingEntriesAreAdopted() {
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 10; i++) {
+            tree.put(i, i);
+        }
+
+        CachingDictionary<Integer, Integer> cache =
+                new CachingDictionary<Integer, Integer>(tree, 5,
+                        EvictionPolicies.<Integer> lru());
+        assertEquals("existing entries exceeded the maximum", 5, cache.size());
+        assertEquals("existing entries were not tracked", (Integer) 9,
+                cache.get(9));
+    }
+
+    private static CachingDictionary<Integer, Integer> newCache(
+            long maximumSize, EvictionPolicy<Integer> policy) {
+        return new CachingDictionary<Integer, Integer>(
+                new BinarySearchTree<Integer, Integer>(), maximumSize, policy);
+    }
+
+    // Looks for a key without counting it as an access.
+    private static boolean contains(Dictionary<Integer, ?> dict, int key) {
+        for (DictionaryEntry<Integer, ?> entry : dict) {
+            if (entry.getKey() == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
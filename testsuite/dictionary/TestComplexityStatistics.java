@@ -0,0 +1,81 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dictionary.InsertComplexities.InstrumentedKey;
+import dictionary.InsertComplexities.Operation;
+
+public class TestComplexityStatistics {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void testPercentiles() {
+        int[][] comparisons = new int[1][100];
+        long[][] nanos = new long[1][100];
+        for (int i = 0; i < 100; i++) {
+            // Stored out of order to check that the samples are sorted.
+            comparisons[0][i] = 100 - i;
+            nanos[0][i] = 1000 - i;
+        }
+
+        ComplexityStatistics stats =
+                new ComplexityStatistics(comparisons, nanos);
+
+        assertEquals("mean failed", 50.5, stats.getMeanComparisons(0), DELTA);
+        assertEquals("median failed", 50, stats.getMedianComparisons(0));
+        assertEquals("p99 failed", 99, stats.getP99Comparisons(0));
+        assertEquals("max failed", 100, stats.getMaxComparisons(0));
+        assertEquals("nanosecond median failed", 950,
+                stats.getMedianNanos(0));
+        assertEquals("nanosecond max failed", 1000, stats.getMaxNanos(0));
+    }
+
+    @Test
+    public void testMeansKeepFractions() {
+        ComplexityStatistics stats =
+                new ComplexityStatistics(new int[][] { { 1, 2 } },
+                        new long[][] { { 0, 0 } });
+        assertEquals("mean was truncated", 1.5, stats.getMeanComparisons(0),
+                DELTA);
+    }
+
+    @Test
+    public void testMissesAreBoundedBySize() {
+        InsertComplexities iC = new InsertComplexities(new Random(1));
+        ComplexityStatistics stats =
+                iC.getComplexities(Operation.GET_MISS,
+                        new BinarySearchTree<InstrumentedKey, Integer>(), 50,
+                        20);
+
+        assertEquals("size() failed", 50, stats.size());
+        assertEquals("a miss in an empty dictionary compared keys", 0,
+                stats.getMaxComparisons(0));
+        for (int i = 1; i < 50; i++) {
+            assertTrue("a miss compared no keys",
+                    stats.getMedianComparisons(i) >= 1);
+            assertTrue("a miss compared more keys than are present",
+                    stats.getMaxComparisons(i) <= i);
+        }
+    }
+
+    @Test
+    public void testIterationMakesNoComparisons() {
+        InsertComplexities iC = new InsertComplexities(new Random(1));
+        ComplexityStatistics stats =
+                iC.getComplexities(Operation.ITERATE,
+                        new BinarySearchTree<InstrumentedKey, Integer>(), 20,
+                        5);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("iteration compared keys", 0,
+                    stats.getMaxComparisons(i));
+        }
+    }
+
+}
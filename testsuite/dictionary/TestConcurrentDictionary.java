@@ -0,0 +1,156 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestConcurrentDictionary extends TestDictionary {
+
+    private static final int THREADS = 8;
+    private static final int KEYS_PER_THREAD = 5000;
+
+    @Override
+    public void setUp() {
+        d = new ConcurrentDictionary<String, Integer>();
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    // Iterators are weakly consistent rather than fail-fast.
+    @Override
+    @Test
+    public void testListIteratorConcurrent() {
+        List<String> cats = Arrays.asList("Bustopher", "Gus", "Skimbleshanks");
+
+        for (int i = 0; i < cats.size(); i++) {
+            d.put(cats.get(i), i);
+        }
+
+        Iterator<DictionaryEntry<String, Integer>> it = d.iterator();
+
+        d.remove("Gus");
+
+        assertEquals("Iterator next() returned the wrong element",
+                "Bustopher", it.next().getKey());
+        assertEquals("Iterator returned a removed element", "Skimbleshanks",
+                it.next().getKey());
+        assertTrue("Iterator hasNext() failed at the end of the dictionary",
+                !it.hasNext());
+    }
+
+    @Test
+    public void testConcurrentPutsAndRemoves() throws Exception {
+        final ConcurrentDictionary<Integer, Integer> dict =
+                new ConcurrentDictionary<Integer, Integer>();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Random random = new Random(thread);
+                    // Interleave the threads' keys so that they contend for
+                    // the same links.
+                    for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                        dict.put(i * THREADS + thread, thread);
+                    }
+                    for (int i = 0; i < KEYS_PER_THREAD; i += 2) {
+                        dict.remove(i * THREADS + thread);
+                    }
+                    for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                        int key = random.nextInt(KEYS_PER_THREAD * THREADS);
+                        try {
+                            dict.get(key);
+                        } catch (NoSuchElementException e) {
+                            // Misses are expected for removed keys.
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        int expected = THREADS * (KEYS_PER_THREAD / 2);
+        assertEquals("size() failed after concurrent updates", expected,
+                dict.size());
+
+        int count = 0;
+        Integer prev = null;
+        for (DictionaryEntry<Integer, Integer> entry : dict) {
+            int key = entry.getKey();
+            assertTrue("Iterator returned keys out of order",
+                    prev == null || prev < key);
+            assertTrue("Removed key still present",
+                    (key / THREADS) % 2 == 1);
+            assertEquals("Wrong value stored", (Integer) (key % THREADS),
+                    entry.getValue());
+            prev = key;
+            count++;
+        }
+        assertEquals("Iterator missed entries", expected, count);
+    }
+
+    @Test
+    public void testConcurrentRemoveOfSameKey() throws Exception {
+        final ConcurrentDictionary<Integer, Integer> dict =
+                new ConcurrentDictionary<Integer, Integer>();
+        for (int i = 0; i < KEYS_PER_THREAD; i++) {
+            dict.put(i, i);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int removed = 0;
+                    for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                        try {
+                            dict.remove(i);
+                            removed++;
+                        } catch (NoSuchElementException e) {
+                            // Another thread got there first.
+                        }
+                    }
+                    return removed;
+                }
+            }));
+        }
+
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        pool.shutdown();
+
+        assertEquals("Each key must be removed exactly once",
+                KEYS_PER_THREAD, total);
+        assertTrue("Dictionary not empty after removing every key",
+                dict.isEmpty());
+        assertEquals("size() failed after concurrent removes", 0, dict.size());
+    }
+
+}
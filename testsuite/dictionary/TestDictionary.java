@@ -11,6 +11,8 @@ import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.junit.After;
 import org.junit.Before;
@@ -52,6 +54,43 @@ public abstract class TestDictionary {
         assertEquals("size() failed for multiple cats", cats.size(), d.size());
     }
 
+    @Test
+    public void testGetAfterPut() {
+        List<String> cats =
+                Arrays.asList("Macavity", "Mistoffelees", "Old Deuteronomy",
+                        "Jennyanydots", "Bombalurina", "Demeter");
+        for (int i = 0; i < cats.size(); i++) {
+            d.put(cats.get(i), i);
+        }
+        for (int i = 0; i < cats.size(); i++) {
+            assertEquals("get() returned the wrong value", (Integer) i,
+                    d.get(cats.get(i)));
+        }
+
+        d.put("Macavity", 10);
+        assertEquals("put() did not replace the value", (Integer) 10,
+                d.get("Macavity"));
+        d.put("Old Deuteronomy", 12);
+        assertEquals("put() did not replace the value", (Integer) 12,
+                d.get("Old Deuteronomy"));
+        assertEquals("put() of a present key changed size()", cats.size(),
+                d.size());
+        checkAscending(cats.size());
+    }
+
+    @Test
+    public void testGetEqualKey() {
+        d.put("Rum Tum Tugger", 1);
+        d.put("Mungojerrie", 2);
+        d.put("Rumpleteazer", 3);
+
+        // Equal to, but not the same object as, the stored key.
+        String key = new String("Rumpleteazer");
+        assertEquals("get() of an equal key failed", (Integer) 3, d.get(key));
+        d.remove(key);
+        assertEquals("remove() of an equal key failed", 2, d.size());
+    }
+
     @Test(expected = NoSuchElementException.class)
     public void testGetException() {
         d.get("Tiddles");
@@ -162,4 +201,171 @@ public abstract class TestDictionary {
         d.put("hi", 1);
         assertTrue("size did not change to 2", d.size() == 2);
     }
+
+    @Test
+    public void testPutAllMerges() {
+        for (int i = 0; i < 20; i += 2) {
+            d.put(key(i), -i);
+        }
+        Dictionary<String, Integer> other =
+                new BinarySearchTree<String, Integer>();
+        for (int i = 10; i < 200; i++) {
+            other.put(key(i), i);
+        }
+
+        d.putAll(other);
+
+        assertEquals("size() failed after putAll()", 195, d.size());
+        assertEquals("existing entry lost by putAll()", (Integer) (-4),
+                d.get(key(4)));
+        assertEquals("putAll() did not replace a value", (Integer) 10,
+                d.get(key(10)));
+        checkAscending(195);
+    }
+
+    @Test
+    public void testPutAllFew() {
+        for (int i = 0; i < 200; i++) {
+            d.put(key(i), i);
+        }
+        Dictionary<String, Integer> other =
+                new OrderedLinkedList<String, Integer>();
+        other.put(key(50), -50);
+        other.put(key(500), 500);
+
+        d.putAll(other);
+
+        assertEquals("size() failed after putAll()", 201, d.size());
+        assertEquals("putAll() did not replace a value", (Integer) (-50),
+                d.get(key(50)));
+        assertEquals("putAll() did not add a key", (Integer) 500,
+                d.get(key(500)));
+        checkAscending(201);
+    }
+
+    @Test
+    public void testRemoveAll() {
+        for (int i = 0; i < 100; i++) {
+            d.put(key(i), i);
+        }
+        List<String> keys = new ArrayList<String>();
+        for (int i = 150; i >= 0; i -= 3) {
+            keys.add(key(i));
+        }
+
+        assertTrue("removeAll() reported no change", d.removeAll(keys));
+        assertEquals("size() failed after removeAll()", 66, d.size());
+        assertEquals("removeAll() removed the wrong key", (Integer) 1,
+                d.get(key(1)));
+        assertFalse("removeAll() of absent keys reported a change",
+                d.removeAll(Arrays.asList(key(0), key(300))));
+        checkAscending(66);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testRemoveAllRemoves() {
+        d.put(key(1), 1);
+        d.put(key(2), 2);
+        d.removeAll(Arrays.asList(key(2)));
+        d.get(key(2));
+    }
+
+    @Test
+    public void testRemoveIf() {
+        for (int i = 0; i < 100; i++) {
+            d.put(key(i), i);
+        }
+
+        assertTrue("removeIf() reported no change",
+                d.removeIf(e -> e.getValue() % 2 == 0));
+        assertEquals("size() failed after removeIf()", 50, d.size());
+        for (DictionaryEntry<String, Integer> entry : d) {
+            assertTrue("removeIf() kept a matching entry",
+                    entry.getValue() % 2 == 1);
+        }
+        assertFalse("removeIf() matching nothing reported a change",
+                d.removeIf(e -> e.getValue() > 1000));
+        checkAscending(50);
+    }
+
+    @Test
+    public void testStream() {
+        for (int i = 0; i < 100; i++) {
+            d.put(key(i), i);
+        }
+
+        assertEquals("stream() returned the wrong number of entries", 100,
+                d.stream().count());
+        assertEquals("stream() returned the wrong values", 4950, d.stream()
+                .mapToInt(e -> e.getValue()).sum());
+    }
+
+    @Test
+    public void testForEach() {
+        for (int i = 0; i < 100; i++) {
+            d.put(key(i), i);
+        }
+
+        final List<String> keys = new ArrayList<String>();
+        final int[] sum = { 0 };
+        d.forEach((key, value) -> {
+            keys.add(key);
+            sum[0] += value;
+        });
+        assertEquals("forEach() visited the wrong number of entries", 100,
+                keys.size());
+        assertEquals("forEach() passed the wrong values", 4950, sum[0]);
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue("forEach() is not in ascending order", keys.get(i - 1)
+                    .compareTo(keys.get(i)) < 0);
+        }
+    }
+
+    @Test
+    public void testParallelStreamKeepsOrder() {
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            d.put(key(i), i);
+            expected.add(key(i));
+        }
+
+        assertEquals("parallelStream() lost the key order", expected, d
+                .parallelStream().map(e -> e.getKey())
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSpliteratorCharacteristics() {
+        d.put("Grizabella", 1);
+        d.put("Bombalurina", 2);
+        Spliterator<DictionaryEntry<String, Integer>> spliterator =
+                d.spliterator();
+
+        assertTrue("spliterator() is not ORDERED, SORTED, DISTINCT",
+                spliterator.hasCharacteristics(Spliterator.ORDERED
+                        | Spliterator.SORTED | Spliterator.DISTINCT));
+        DictionaryEntry<String, Integer> first = d.iterator().next();
+        DictionaryEntry<String, Integer> last = d.stream()
+                .reduce((a, b) -> b).get();
+        assertTrue("spliterator() comparator does not order by key",
+                spliterator.getComparator().compare(first, last) < 0);
+    }
+
+    private static String key(int i) {
+        return String.format("key%04d", i);
+    }
+
+    // Checks that iteration returns the expected number of ascending keys.
+    private void checkAscending(int expected) {
+        String prev = null;
+        int count = 0;
+        for (DictionaryEntry<String, Integer> entry : d) {
+            assertTrue("iterator returned keys out of order",
+                    prev == null || prev.compareTo(entry.getKey()) < 0);
+            prev = entry.getKey();
+            count++;
+        }
+        assertEquals("iterator returned the wrong number of entries",
+                expected, count);
+    }
 }
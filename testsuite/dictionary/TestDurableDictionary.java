@@ -0,0 +1,315 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import dictionary.DurableDictionary.Durability;
+
+public class TestDurableDictionary extends TestDictionary {
+
+    // Small segments make the tests rotate and checkpoint.
+    private static final long SEGMENT_SIZE = 4096;
+    private static final int THREADS = 4;
+
+    private File directory;
+    private DurableDictionary<String, Integer> durable;
+
+    @Override
+    public void setUp() {
+        try {
+            directory = Files.createTempDirectory("dictionary").toFile();
+            durable = open(Durability.SYNC, 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        d = durable;
+    }
+
+    @Override
+    public void tearDown() {
+        try {
+            durable.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        d = null;
+    }
+
+    private DurableDictionary<String, Integer> open(Durability durability,
+            int checkpointSegments) throws IOException {
+        return new DurableDictionary<String, Integer>(
+                new BinarySearchTree<String, Integer>(), directory,
+                Codecs.stringCodec(), Codecs.integerCodec(), durability, 10,
+                SEGMENT_SIZE, checkpointSegments);
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            durable.put("key" + i, i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            durable.remove("key" + i);
+        }
+        assertTrue("segments did not rotate", countFiles(".log") > 1);
+
+        // Every change is forced before it returns, so reopening the
+        // directory without closing sees them all.
+        DurableDictionary<String, Integer> recovered =
+                open(Durability.SYNC, 0);
+        try {
+            checkRecovered(recovered);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        durable.close();
+        durable = open(Durability.NONE, 2);
+        for (int i = 0; i < 1000; i++) {
+            durable.put("key" + i, i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            durable.remove("key" + i);
+        }
+        durable.checkpoint();
+        assertEquals("old segments not deleted", 1, countFiles(".log"));
+        assertEquals("old checkpoints not deleted", 1,
+                countFiles(".snapshot"));
+        durable.close();
+
+        durable = open(Durability.NONE, 2);
+        checkRecovered(durable);
+        durable.clear();
+        durable.close();
+        durable = open(Durability.NONE, 2);
+        assertTrue("clear() not replayed", durable.isEmpty());
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws IOException {
+        durable.put("Bustopher", 1);
+        durable.put("Jones", 2);
+        durable.close();
+        File segment = lastSegment();
+        long length = segment.length();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(length - 3);
+        file.close();
+
+        durable = open(Durability.SYNC, 0);
+        assertEquals("torn record replayed", 1, durable.size());
+        assertEquals("intact record lost", (Integer) 1,
+                durable.get("Bustopher"));
+        // A header, a type, and a length and 4 bytes for "Jones" and for 2.
+        int recordLength = 8 + 1 + 4 + 5 + 4 + 4;
+        assertEquals("torn tail not cut off", length - recordLength,
+                segment.length());
+
+        durable.put("Jones", 3);
+        durable.close();
+        durable = open(Durability.SYNC, 0);
+        assertEquals("put after recovery lost", (Integer) 3,
+                durable.get("Jones"));
+    }
+
+    @Test
+    public void testChecksumMismatchStopsReplay() throws IOException {
+        durable.put("Bustopher", 1);
+        durable.put("Jones", 2);
+        durable.close();
+        File segment = lastSegment();
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(segment.length() - 1);
+        file.write(0x7F);
+        file.close();
+
+        durable = open(Durability.SYNC, 0);
+        assertEquals("corrupt record replayed", 1, durable.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptionBeforeLastSegment() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            durable.put("key" + i, i);
+        }
+        durable.close();
+        File first = new File(directory, "wal-0.log");
+        RandomAccessFile file = new RandomAccessFile(first, "rw");
+        file.seek(20);
+        file.write(~file.read());
+        file.close();
+
+        durable = open(Durability.SYNC, 0);
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 500; i++) {
+                        durable.put("key" + thread + "-" + i, i);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        DurableDictionary<String, Integer> recovered =
+                open(Durability.SYNC, 0);
+        try {
+            assertEquals("concurrent puts lost", THREADS * 500,
+                    recovered.size());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void testPeriodicSync() throws Exception {
+        durable.close();
+        durable = open(Durability.PERIODIC, 0);
+        durable.put("Growltiger", 1);
+        durable.sync();
+
+        DurableDictionary<String, Integer> recovered =
+                open(Durability.SYNC, 0);
+        try {
+            assertEquals("sync() did not write the log", (Integer) 1,
+                    recovered.get("Growltiger"));
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void testInterruptedWriter() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            Thread.currentThread().interrupt();
+            durable.put("key" + i, i);
+            assertTrue("interrupt not kept", Thread.interrupted());
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            Thread.currentThread().interrupt();
+            durable.remove("key" + i);
+            assertTrue("interrupt not kept", Thread.interrupted());
+        }
+        Thread.currentThread().interrupt();
+        durable.checkpoint();
+        assertTrue("interrupt not kept", Thread.interrupted());
+
+        // The interrupts must not have closed the segment before the forces
+        // every SYNC change waits for.
+        DurableDictionary<String, Integer> recovered =
+                open(Durability.SYNC, 0);
+        try {
+            checkRecovered(recovered);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    public void testInterruptsDuringWrites() throws Exception {
+        final Thread writer = Thread.currentThread();
+        Thread interrupter = new Thread() {
+            @Override
+            public void run() {
+                while (!isInterrupted()) {
+                    writer.interrupt();
+                    Thread.yield();
+                }
+            }
+        };
+        interrupter.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                durable.put("key" + i, i);
+            }
+            for (int i = 0; i < 1000; i += 3) {
+                durable.remove("key" + i);
+            }
+        } finally {
+            interrupter.interrupt();
+            while (interrupter.isAlive()) {
+                Thread.interrupted();
+                Thread.yield();
+            }
+            Thread.interrupted();
+        }
+
+        DurableDictionary<String, Integer> recovered =
+                open(Durability.SYNC, 0);
+        try {
+            checkRecovered(recovered);
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosedDictionaryRefusesChanges() throws IOException {
+        durable.close();
+        durable.put("Griddlebone", 1);
+    }
+
+    private void checkRecovered(Dictionary<String, Integer> recovered) {
+        assertEquals("size() failed after recovery", 666, recovered.size());
+        for (int i = 1; i < 1000; i += 3) {
+            assertEquals("get() failed after recovery", (Integer) i,
+                    recovered.get("key" + i));
+        }
+    }
+
+    private int countFiles(String suffix) {
+        int n = 0;
+        for (String name : directory.list()) {
+            if (name.endsWith(suffix)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // The newest segment that holds any records.
+    private File lastSegment() {
+        File last = null;
+        File segment = new File(directory, "wal-0.log");
+        for (int i = 1; segment.exists(); i++) {
+            if (segment.length() > 0) {
+                last = segment;
+            }
+            segment = new File(directory, "wal-" + i + ".log");
+        }
+        return last;
+    }
+
+}
@@ -0,0 +1,131 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.NoSuchElementException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+import dictionary.InstrumentedDictionary.Operation;
+
+public class TestInstrumentedDictionary extends TestDictionary {
+
+    private static final double DELTA = 1e-9;
+
+    @Override
+    public void setUp() {
+        d =
+                new InstrumentedDictionary<String, Integer>(
+                        new RedBlackTree<String, Integer>());
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testCountsAndMisses() {
+        InstrumentedDictionary<String, Integer> dict =
+                new InstrumentedDictionary<String, Integer>(
+                        new RedBlackTree<String, Integer>(), 1);
+        dict.put("Grizabella", 1);
+        dict.put("Grizabella", 2);
+        dict.put("Jemima", 3);
+        dict.get("Grizabella");
+        try {
+            dict.get("Tiddles");
+        } catch (NoSuchElementException e) {
+            // A miss.
+        }
+        dict.remove("Jemima");
+        try {
+            dict.remove("Jemima");
+        } catch (NoSuchElementException e) {
+            // A miss.
+        }
+
+        OperationMetrics puts = dict.snapshot(Operation.PUT);
+        assertEquals("puts not counted", 3, puts.getCount());
+        assertEquals("new keys not counted as misses", 2, puts.getMisses());
+        OperationMetrics gets = dict.snapshot(Operation.GET);
+        assertEquals("gets not counted", 2, gets.getCount());
+        assertEquals("get miss rate failed", 0.5, gets.getMissRate(), DELTA);
+        assertEquals("latencies not recorded", 2, gets.latency().getCount());
+        OperationMetrics removes = dict.snapshot(Operation.REMOVE);
+        assertEquals("remove misses not counted", 1, removes.getMisses());
+
+        dict.reset();
+        assertEquals("reset() kept counts", 0, dict.getGet().getCount());
+    }
+
+    @Test
+    public void testLatencyIsSampled() {
+        InstrumentedDictionary<Integer, Integer> dict =
+                new InstrumentedDictionary<Integer, Integer>(
+                        new RedBlackTree<Integer, Integer>(), 5);
+        dict.put(1, 1);
+        for (int i = 0; i < 80000; i++) {
+            dict.get(1);
+        }
+
+        OperationMetrics gets = dict.snapshot(Operation.GET);
+        assertEquals("counts are not exact", 80000, gets.getCount());
+        // One call in five is sampled on average, at random strides.
+        long sampled = gets.latency().getCount();
+        assertTrue("latency not sampled once every interval: " + sampled,
+                sampled > 15000 && sampled < 17000);
+    }
+
+    @Test
+    public void testSamplingIgnoresInterleaving() {
+        InstrumentedDictionary<Integer, Integer> dict =
+                new InstrumentedDictionary<Integer, Integer>(
+                        new RedBlackTree<Integer, Integer>(), 2);
+        for (int i = 0; i < 20000; i++) {
+            dict.put(i, i);
+            dict.get(i);
+        }
+
+        // Alternating operations must not starve either one of samples.
+        long puts = dict.snapshot(Operation.PUT).latency().getCount();
+        long gets = dict.snapshot(Operation.GET).latency().getCount();
+        assertTrue("puts not sampled: " + puts, puts > 9000 && puts < 11000);
+        assertTrue("gets not sampled: " + gets, gets > 9000 && gets < 11000);
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        InstrumentedDictionary<String, Integer> dict =
+                new InstrumentedDictionary<String, Integer>(
+                        new BinarySearchTree<String, Integer>());
+        ObjectName name =
+                new ObjectName("dictionary:type=InstrumentedDictionary,name="
+                        + System.identityHashCode(dict));
+        dict.registerMBean(name);
+        try {
+            dict.put("Macavity", 1);
+            dict.get("Macavity");
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals("Size attribute failed", 1,
+                    server.getAttribute(name, "Size"));
+            CompositeData gets =
+                    (CompositeData) server.getAttribute(name, "Get");
+            assertEquals("Get count attribute failed", 1L, gets.get("count"));
+            assertTrue("Get latency attribute missing",
+                    (Long) gets.get("maxNanos") >= 0);
+        } finally {
+            dict.unregisterMBean();
+        }
+        assertTrue("unregisterMBean() failed", !ManagementFactory
+                .getPlatformMBeanServer().isRegistered(name));
+    }
+
+}
@@ -0,0 +1,160 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestIntIntDictionary {
+
+    IntIntDictionary d;
+
+    @Before
+    public void setUp() {
+        d = new IntIntDictionary();
+    }
+
+    @After
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue("isEmpty() failed for empty dictionary", d.isEmpty());
+    }
+
+    @Test
+    public void testPutAndGet() {
+        d.put(5, 50);
+        d.put(-3, -30);
+        d.put(12, 120);
+        d.put(5, 55);
+        assertEquals("size() failed after puts", 3, d.size());
+        assertEquals("get() returned the wrong value", 55, d.get(5));
+        assertEquals("get() returned the wrong value", -30, d.get(-3));
+        assertEquals("get() with default failed for a missing key", 7,
+                d.get(6, 7));
+        assertFalse("containsKey() failed for a missing key",
+                d.containsKey(6));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testGetException() {
+        d.get(1);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testRemoveEmpty() {
+        d.remove(1);
+    }
+
+    @Test
+    public void testCursorAscending() {
+        int[] keys = { 40, 7, 99, 0, -5, 23, 64, 1000, 3 };
+        for (int key : keys) {
+            d.put(key, key * 2);
+        }
+        d.remove(99);
+
+        IntIntDictionary.Cursor cursor = d.cursor();
+        int count = 0;
+        int prev = Integer.MIN_VALUE;
+        while (cursor.next()) {
+            assertTrue("Cursor returned keys out of order", cursor.key() > prev);
+            assertEquals("Cursor returned the wrong value", cursor.key() * 2,
+                    cursor.value());
+            prev = cursor.key();
+            count++;
+        }
+        assertEquals("Cursor missed entries", keys.length - 1, count);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testCursorConcurrent() {
+        d.put(1, 1);
+        d.put(2, 2);
+        IntIntDictionary.Cursor cursor = d.cursor();
+        d.remove(1);
+        cursor.next();
+    }
+
+    @Test
+    public void testRandomUpdatesMatchTreeMap() {
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(42);
+        // Enough keys for several levels of nodes, which the removals then
+        // shrink by merging.
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(50000) - 25000;
+            if (random.nextInt(3) == 0) {
+                boolean present = expected.remove(key) != null;
+                try {
+                    d.remove(key);
+                    assertTrue("remove() found an absent key", present);
+                } catch (NoSuchElementException e) {
+                    assertFalse("remove() missed a key", present);
+                }
+            } else {
+                expected.put(key, i);
+                d.put(key, i);
+            }
+        }
+        assertEquals("size() failed after random updates", expected.size(),
+                d.size());
+
+        IntIntDictionary.Cursor cursor = d.cursor();
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue("Cursor missed entries", cursor.next());
+            assertEquals("Cursor returned the wrong key",
+                    (int) entry.getKey(), cursor.key());
+            assertEquals("Cursor returned the wrong value",
+                    (int) entry.getValue(), cursor.value());
+            assertEquals("get() returned the wrong value",
+                    (int) entry.getValue(), d.get(entry.getKey()));
+        }
+        assertFalse("Cursor returned extra entries", cursor.next());
+
+        for (Integer key : expected.keySet()) {
+            d.remove(key);
+        }
+        assertTrue("remove() left entries behind", d.isEmpty());
+        assertFalse("Cursor of an empty dictionary moved", d.cursor().next());
+    }
+
+    @Test
+    public void testAscendingAndDescendingPuts() {
+        for (int i = 0; i < 10000; i++) {
+            d.put(i, i);
+            d.put(-i - 1, -i - 1);
+        }
+        assertEquals("size() failed after puts", 20000, d.size());
+        IntIntDictionary.Cursor cursor = d.cursor();
+        for (int i = -10000; i < 10000; i++) {
+            assertTrue("Cursor missed entries", cursor.next());
+            assertEquals("Cursor returned the wrong key", i, cursor.key());
+        }
+        assertFalse("Cursor returned extra entries", cursor.next());
+    }
+
+    @Test
+    public void testClearKeepsWorking() {
+        for (int i = 0; i < 100; i++) {
+            d.put(i, i);
+        }
+        d.clear();
+        assertTrue("clear() failed", d.isEmpty());
+        d.put(3, 4);
+        assertEquals("put() failed after clear()", 4, d.get(3));
+    }
+
+}
@@ -0,0 +1,92 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    private static final int THREADS = 4;
+
+    @Test
+    public void testBucketsAreContiguous() {
+        long expected = 0;
+        for (int i = 0; i < 2000 && expected >= 0; i++) {
+            long low = LatencyHistogram.lowestValueAt(i);
+            assertEquals("buckets leave a gap", expected, low);
+            assertEquals("lowest value is in another bucket", i,
+                    LatencyHistogram.indexOf(low));
+            long high = LatencyHistogram.highestValueAt(i);
+            if (high == Long.MAX_VALUE) {
+                break;
+            }
+            assertEquals("highest value is in another bucket", i,
+                    LatencyHistogram.indexOf(high));
+            expected = high + 1;
+        }
+        assertEquals("largest value has no bucket",
+                LatencyHistogram.indexOf(Long.MAX_VALUE), LatencyHistogram
+                        .indexOf(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void testQuantilesWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals("count failed", 100000, snapshot.getCount());
+        assertEquals("max failed", 100000, snapshot.getMax());
+        checkWithinPrecision("median failed", 50000,
+                snapshot.getValueAtQuantile(0.5));
+        checkWithinPrecision("p99 failed", 99000,
+                snapshot.getValueAtQuantile(0.99));
+        checkWithinPrecision("mean failed", 50000, (long) snapshot.getMean());
+        assertEquals("small values are not exact", 1,
+                snapshot.getValueAtQuantile(0));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i % 1000);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals("lost a value", THREADS * 100000, snapshot.getCount());
+        assertEquals("max failed", 999, snapshot.getMax());
+    }
+
+    private static void checkWithinPrecision(String message, long expected,
+            long actual) {
+        assertTrue(message + ": " + actual, actual >= expected - expected / 32
+                && actual <= expected + expected / 32);
+    }
+
+}
@@ -0,0 +1,82 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestLinkedHashIndexedDictionary extends TestDictionary {
+
+    @Override
+    public void setUp() {
+        d = new LinkedHashIndexedDictionary<String, Integer>();
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testLookupsDoNotCompare() {
+        LinkedHashIndexedDictionary<CountingKey, Integer> dict =
+                new LinkedHashIndexedDictionary<CountingKey, Integer>();
+        for (int i = 0; i < 100; i++) {
+            dict.put(new CountingKey(i), i);
+        }
+
+        CountingKey.comparisons = 0;
+        for (int i = 0; i < 100; i++) {
+            assertEquals("get() returned the wrong value", (Integer) i,
+                    dict.get(new CountingKey(i)));
+            dict.put(new CountingKey(i), -i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            dict.remove(new CountingKey(i));
+        }
+        assertEquals("lookups compared keys", 0, CountingKey.comparisons);
+        assertEquals("remove() failed", 50, dict.size());
+    }
+
+    @Test
+    public void testOutOfOrderPuts() {
+        for (int i = 0; i < 10; i++) {
+            d.put(String.format("Jellicle%02d", 9 - i), i);
+            d.put(String.format("Jellicle%02d", 10 + i), i);
+        }
+
+        int expected = 0;
+        for (DictionaryEntry<String, Integer> entry : d) {
+            assertEquals("iterator returned keys out of order",
+                    String.format("Jellicle%02d", expected++), entry.getKey());
+        }
+        assertEquals("iterator missed entries", 20, expected);
+    }
+
+    private static class CountingKey implements Comparable<CountingKey> {
+
+        static int comparisons;
+
+        private final int key;
+
+        CountingKey(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(CountingKey o) {
+            comparisons++;
+            return Integer.compare(key, o.key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingKey && ((CountingKey) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return key;
+        }
+    }
+
+}
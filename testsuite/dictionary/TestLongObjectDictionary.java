@@ -0,0 +1,106 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestLongObjectDictionary {
+
+    LongObjectDictionary<String> d;
+
+    @Before
+    public void setUp() {
+        d = new LongObjectDictionary<String>(2);
+    }
+
+    @After
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        d.put(Long.MAX_VALUE, "Jennyanydots");
+        d.put(Long.MIN_VALUE, "Bombalurina");
+        d.put(0L, "Demeter");
+        assertEquals("size() failed after puts", 3, d.size());
+        assertEquals("get() returned the wrong value", "Jennyanydots",
+                d.get(Long.MAX_VALUE));
+        assertEquals("get() returned the wrong value", "Bombalurina",
+                d.get(Long.MIN_VALUE));
+        assertNull("get() with default failed for a missing key",
+                d.get(1L, null));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testDoubleDelete() {
+        d.put(1L, "Mungojerrie");
+        d.remove(1L);
+        d.remove(1L);
+    }
+
+    @Test
+    public void testCursorAscending() {
+        for (long key = 100; key > 0; key -= 7) {
+            d.put(key, Long.toString(key));
+        }
+
+        LongObjectDictionary<String>.Cursor cursor = d.cursor();
+        long prev = Long.MIN_VALUE;
+        int count = 0;
+        while (cursor.next()) {
+            assertTrue("Cursor returned keys out of order", cursor.key() > prev);
+            assertEquals("Cursor returned the wrong value",
+                    Long.toString(cursor.key()), cursor.value());
+            prev = cursor.key();
+            count++;
+        }
+        assertEquals("Cursor missed entries", d.size(), count);
+    }
+
+    @Test
+    public void testRandomUpdatesMatchTreeMap() {
+        TreeMap<Long, String> expected = new TreeMap<Long, String>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(50000) * 0x100000001L;
+            if (random.nextInt(3) == 0) {
+                boolean present = expected.remove(key) != null;
+                try {
+                    d.remove(key);
+                    assertTrue("remove() found an absent key", present);
+                } catch (NoSuchElementException e) {
+                    assertFalse("remove() missed a key", present);
+                }
+            } else {
+                expected.put(key, Integer.toString(i));
+                d.put(key, Integer.toString(i));
+            }
+        }
+        assertEquals("size() failed after random updates", expected.size(),
+                d.size());
+
+        LongObjectDictionary<String>.Cursor cursor = d.cursor();
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertTrue("Cursor missed entries", cursor.next());
+            assertEquals("Cursor returned the wrong key",
+                    (long) entry.getKey(), cursor.key());
+            assertEquals("Cursor returned the wrong value", entry.getValue(),
+                    cursor.value());
+            assertEquals("get() returned the wrong value", entry.getValue(),
+                    d.get(entry.getKey()));
+        }
+        assertFalse("Cursor returned extra entries", cursor.next());
+    }
+
+}
@@ -0,0 +1,214 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class TestLsmDictionary extends TestDictionary {
+
+    // Small memtables make the tests flush and compact.
+    private static final int MEMTABLE_SIZE = 8;
+    private static final int FANOUT = 2;
+
+    private File directory;
+    private LsmDictionary<String, Integer> lsm;
+
+    @Override
+    public void setUp() {
+        try {
+            directory = Files.createTempDirectory("dictionary").toFile();
+            lsm = open();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        d = lsm;
+    }
+
+    @Override
+    public void tearDown() {
+        try {
+            lsm.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+        d = null;
+    }
+
+    private LsmDictionary<String, Integer> open() throws IOException {
+        return new LsmDictionary<String, Integer>(directory,
+                Codecs.stringCodec(), Codecs.integerCodec(), MEMTABLE_SIZE,
+                FANOUT);
+    }
+
+    @Test
+    public void testGetAcrossRuns() {
+        for (int i = 0; i < 1000; i++) {
+            lsm.put(key(i), i);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            lsm.put(key(i), -i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            lsm.remove(key(i));
+        }
+        lsm.flush();
+
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 == 0) {
+                try {
+                    lsm.get(key(i));
+                    assertTrue("removed key found", false);
+                } catch (NoSuchElementException e) {
+                    // Expected.
+                }
+            } else {
+                assertEquals("newest value not found", (Integer) (i % 2 == 0
+                        ? -i : i), lsm.get(key(i)));
+            }
+        }
+        assertEquals("size() failed", 666, lsm.size());
+    }
+
+    @Test
+    public void testIteratorMergesRuns() {
+        for (int i = 999; i >= 0; i--) {
+            lsm.put(key(i), i);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            lsm.remove(key(i));
+        }
+
+        Iterator<DictionaryEntry<String, Integer>> it = lsm.iterator();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 3 != 0) {
+                DictionaryEntry<String, Integer> entry = it.next();
+                assertEquals("iterator() out of order", key(i),
+                        entry.getKey());
+                assertEquals("iterator() returned an old value", (Integer) i,
+                        entry.getValue());
+            }
+        }
+        assertFalse("iterator() returned a removed key", it.hasNext());
+    }
+
+    @Test
+    public void testCompaction() {
+        for (int i = 0; i < 1024; i++) {
+            lsm.put(key(i), i);
+        }
+        for (int i = 0; i < 1024; i++) {
+            lsm.remove(key(i));
+        }
+        lsm.put(key(0), 0);
+        lsm.flush();
+        // Replaced runs are deleted by the next change.
+        lsm.put(key(1), 1);
+
+        // The last merge included the oldest run, so it dropped the
+        // tombstones along with the entries they hid, leaving nothing but
+        // the run holding key(0).
+        assertEquals("runs were not compacted", 1, countRuns());
+        assertEquals("size() failed after compaction", 2, lsm.size());
+        assertEquals("get() failed after compaction", (Integer) 0,
+                lsm.get(key(0)));
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            lsm.put(key(i), i);
+        }
+        lsm.remove(key(7));
+        lsm.close();
+
+        lsm = open();
+        assertEquals("size() failed after reopening", 499, lsm.size());
+        assertEquals("get() failed after reopening", (Integer) 499,
+                lsm.get(key(499)));
+        lsm.put(key(7), 7);
+        assertEquals("put() failed after reopening", (Integer) 7,
+                lsm.get(key(7)));
+    }
+
+    @Test
+    public void testReopenAfterInterruptedWrite() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            lsm.put(key(i), i);
+        }
+        lsm.close();
+
+        // A flush that crashed before finishing its run leaves it with a
+        // zeroed header under a temporary name.
+        File partial = new File(directory, "run-100.sst.tmp");
+        Files.write(partial.toPath(), new byte[200]);
+
+        lsm = open();
+        assertFalse("partial run not deleted", partial.exists());
+        assertEquals("size() failed after reopening", 100, lsm.size());
+        assertEquals("get() failed after reopening", (Integer) 42,
+                lsm.get(key(42)));
+    }
+
+    @Test
+    public void testReadOnInterruptedThread() {
+        for (int i = 0; i < 100; i++) {
+            lsm.put(key(i), i);
+        }
+        lsm.flush();
+
+        // An interrupt would close a run's channel during the read.
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals("get() failed on an interrupted thread", (Integer) 7,
+                    lsm.get(key(7)));
+            Iterator<DictionaryEntry<String, Integer>> it = lsm.iterator();
+            assertEquals("iterator() failed on an interrupted thread",
+                    key(0), it.next().getKey());
+            assertTrue("interrupt was lost", Thread.interrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals("get() failed after an interrupted read", (Integer) 42,
+                lsm.get(key(42)));
+        assertEquals("size() failed after an interrupted read", 100,
+                lsm.size());
+    }
+
+    @Test
+    public void testClearDeletesRuns() {
+        for (int i = 0; i < 100; i++) {
+            lsm.put(key(i), i);
+        }
+        lsm.clear();
+        assertEquals("clear() left runs behind", 0, countRuns());
+        assertTrue("clear() left entries", lsm.isEmpty());
+    }
+
+    private static String key(int i) {
+        return String.format("key%04d", i);
+    }
+
+    private int countRuns() {
+        int n = 0;
+        for (String name : directory.list()) {
+            if (name.endsWith(".sst")) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,115 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class TestMappedDictionary extends TestDictionary {
+
+    // Small segments make the tests cross segment boundaries.
+    private static final int SEGMENT_SIZE = 4096;
+
+    private File file;
+    private MappedDictionary<String, Integer> mapped;
+
+    @Override
+    public void setUp() {
+        try {
+            file = File.createTempFile("dictionary", ".map");
+            mapped =
+                    new MappedDictionary<String, Integer>(file,
+                            Codecs.stringCodec(), Codecs.integerCodec(),
+                            SEGMENT_SIZE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        d = mapped;
+    }
+
+    @Override
+    public void tearDown() {
+        try {
+            mapped.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        file.delete();
+        d = null;
+    }
+
+    // Keys are decoded afresh on every read, so compare them by value.
+    @Override
+    @Test
+    public void testRemove() {
+        d.put("hello", 10);
+        d.put("hi", 7);
+        d.remove("hello");
+        assertTrue("element not removed on remove()", d.size() == 1);
+        assertEquals("head/root not fixed after remove()", "hi", d.getRoot()
+                .getKey());
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        for (int i = 0; i < 2000; i++) {
+            mapped.put("key" + i, i);
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            mapped.remove("key" + i);
+        }
+        mapped.put("key1", -1);
+        mapped.close();
+
+        mapped =
+                new MappedDictionary<String, Integer>(file,
+                        Codecs.stringCodec(), Codecs.integerCodec());
+        assertEquals("size() failed after reopening", 1000, mapped.size());
+        assertEquals("get() failed after reopening", (Integer) (-1),
+                mapped.get("key1"));
+        for (int i = 3; i < 2000; i += 2) {
+            assertEquals("get() failed after reopening", (Integer) i,
+                    mapped.get("key" + i));
+        }
+
+        String prev = "";
+        int count = 0;
+        for (DictionaryEntry<String, Integer> entry : mapped) {
+            assertTrue("Iterator returned keys out of order",
+                    prev.compareTo(entry.getKey()) < 0);
+            prev = entry.getKey();
+            count++;
+        }
+        assertEquals("Iterator missed entries after reopening", 1000, count);
+    }
+
+    @Test
+    public void testGrowingValues() throws IOException {
+        MappedDictionary<Integer, String> strings = null;
+        File other = File.createTempFile("dictionary", ".map");
+        try {
+            strings =
+                    new MappedDictionary<Integer, String>(other,
+                            Codecs.integerCodec(), Codecs.stringCodec(),
+                            SEGMENT_SIZE);
+            String value = "";
+            for (int i = 0; i < 200; i++) {
+                value += "x";
+                strings.put(i % 7, value);
+            }
+            assertEquals("size() failed after replacing values", 7,
+                    strings.size());
+            assertEquals("get() failed after growing a value", value,
+                    strings.get(199 % 7));
+        } finally {
+            if (strings != null) {
+                strings.close();
+            }
+            other.delete();
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestPersistentBinarySearchTree extends TestDictionary {
+
+    private static final int READERS = 4;
+    private static final int KEYS = 2000;
+
+    @Override
+    public void setUp() {
+        d = new PersistentBinarySearchTree<String, Integer>();
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    // Iterators run over the version they started from.
+    @Override
+    @Test
+    public void testListIteratorConcurrent() {
+        List<String> cats = Arrays.asList("Bustopher", "Gus", "Skimbleshanks");
+
+        for (int i = 0; i < cats.size(); i++) {
+            d.put(cats.get(i), i);
+        }
+
+        Iterator<DictionaryEntry<String, Integer>> it = d.iterator();
+
+        d.remove("Bustopher");
+
+        for (String cat : cats) {
+            assertEquals("Iterator returned the wrong element", cat, it
+                    .next().getKey());
+        }
+        assertFalse("Iterator hasNext() failed at the end of the version",
+                it.hasNext());
+    }
+
+    @Test
+    public void testSnapshotIsIndependent() {
+        PersistentBinarySearchTree<Integer, Integer> tree =
+                new PersistentBinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 100; i++) {
+            tree.put(i, i);
+        }
+
+        PersistentBinarySearchTree<Integer, Integer> snapshot =
+                tree.snapshot();
+        assertSame("snapshot() copied the tree", tree.getRoot(),
+                snapshot.getRoot());
+
+        tree.remove(0);
+        tree.put(1, -1);
+        tree.put(100, 100);
+        snapshot.put(200, 200);
+
+        assertEquals("snapshot saw later removals", (Integer) 0,
+                snapshot.get(0));
+        assertEquals("snapshot saw later puts", (Integer) 1, snapshot.get(1));
+        assertEquals("snapshot has the wrong size", 101, snapshot.size());
+        assertEquals("tree saw updates to the snapshot", 100, tree.size());
+        assertFalse("tree saw updates to the snapshot",
+                tree.getRoot().getKey() == 200);
+    }
+
+    @Test
+    public void testBalancedAfterSortedInsertsAndRemoves() {
+        PersistentBinarySearchTree<Integer, Integer> tree =
+                new PersistentBinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            tree.put(i, i);
+        }
+
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i += 2) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (Integer key : keys) {
+            tree.remove(key);
+        }
+
+        assertEquals("size() failed after removals", 500, tree.size());
+        checkBalanced(tree.getRoot());
+        for (int i = 1; i < 1000; i += 2) {
+            assertEquals("get() failed after rebalancing", (Integer) i,
+                    tree.get(i));
+        }
+    }
+
+    @Test
+    public void testReadersSeeConsistentVersions() throws Exception {
+        final PersistentBinarySearchTree<Integer, Integer> tree =
+                new PersistentBinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            tree.put(i, 0);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        // Every version holds the keys [0, KEYS) with one value throughout.
+        results.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                Dictionary<Integer, Integer> next =
+                        new PersistentBinarySearchTree<Integer, Integer>();
+                for (int v = 1; v <= 50; v++) {
+                    next.clear();
+                    for (int i = 0; i < KEYS; i++) {
+                        next.put(i, v);
+                    }
+                    tree.putAll(next);
+                }
+                return null;
+            }
+        }));
+        for (int t = 0; t < READERS; t++) {
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int r = 0; r < 50; r++) {
+                        int count = 0;
+                        Integer value = null;
+                        for (DictionaryEntry<Integer, Integer> e : tree) {
+                            if (value == null) {
+                                value = e.getValue();
+                            }
+                            assertEquals("Iterator mixed two versions",
+                                    value, e.getValue());
+                            assertEquals("Iterator returned the wrong key",
+                                    (Integer) count++, e.getKey());
+                        }
+                        assertEquals("Iterator missed entries", KEYS, count);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertEquals("size() failed after concurrent updates", KEYS,
+                tree.size());
+        assertEquals("putAll() lost an update", (Integer) 50, tree.get(0));
+    }
+
+    // Checks the AVL invariant and the recorded heights and sizes.
+    private static int checkBalanced(
+            PersistentBinarySearchTreeEntry<Integer, Integer> node) {
+        if (node == null) {
+            return 0;
+        }
+
+        int left = checkBalanced(node.getLeft());
+        int right = checkBalanced(node.getRight());
+        assertTrue("subtree heights differ by more than one",
+                Math.abs(left - right) <= 1);
+        assertEquals("recorded height is wrong", 1 + Math.max(left, right),
+                node.getHeight());
+        assertEquals("recorded size is wrong", 1
+                + PersistentBinarySearchTreeEntry.sizeOf(node.getLeft())
+                + PersistentBinarySearchTreeEntry.sizeOf(node.getRight()),
+                node.getSize());
+        return node.getHeight();
+    }
+
+}
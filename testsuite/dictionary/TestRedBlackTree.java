@@ -0,0 +1,87 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestRedBlackTree extends TestDictionary {
+
+    @Override
+    public void setUp() {
+        d = new RedBlackTree<String, Integer>();
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void testBoundedGetGivesUp() {
+        RedBlackTree<Integer, Integer> tree =
+                new RedBlackTree<Integer, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            tree.put(i, i);
+        }
+
+        assertEquals("bounded get() failed", (Integer) 999,
+                tree.get(999, tree.size()));
+        // The deepest key is more than one level down.
+        tree.get(999, 1);
+    }
+
+    @Test
+    public void testBalancedAfterSortedInsertsAndRemoves() {
+        RedBlackTree<Integer, Integer> tree =
+                new RedBlackTree<Integer, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            tree.put(i, i);
+        }
+
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i += 2) {
+            keys.add(i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (Integer key : keys) {
+            tree.remove(key);
+        }
+
+        assertEquals("size() failed after removals", 500, tree.size());
+        assertTrue("root is not black", tree.getRoot().isBlack());
+        assertTrue("red-black invariants violated",
+                blackHeight(tree.getRoot()) > 0);
+        for (int i = 1; i < 1000; i += 2) {
+            assertEquals("get() failed after rebalancing", (Integer) i,
+                    tree.get(i));
+        }
+    }
+
+    // Returns the black height of the subtree, or -1 if it is invalid.
+    private int blackHeight(RedBlackTreeEntry<Integer, Integer> node) {
+        if (node == null) {
+            return 1;
+        }
+
+        if (!node.isBlack()
+                && ((node.getLeft() != null && !node.getLeft().isBlack()) || (node
+                        .getRight() != null && !node.getRight().isBlack()))) {
+            return -1;
+        }
+
+        int left = blackHeight(node.getLeft());
+        int right = blackHeight(node.getRight());
+        if (left < 0 || left != right) {
+            return -1;
+        }
+        return left + (node.isBlack() ? 1 : 0);
+    }
+
+}
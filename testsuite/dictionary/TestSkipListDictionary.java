@@ -0,0 +1,24 @@
+package dictionary;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestSkipListDictionary extends TestDictionary {
+
+    @Override
+    public void setUp() {
+        d = new SkipListDictionary<String, Integer>(0.5, new Random(42));
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidProbability() {
+        new SkipListDictionary<String, Integer>(1.0, new Random());
+    }
+
+}
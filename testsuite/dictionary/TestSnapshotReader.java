@@ -0,0 +1,197 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSnapshotReader {
+
+    // Small buffers make the tests split entries across refills.
+    private static final int BUFFER_SIZE = 16;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("dictionary", ".snapshot");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        RedBlackTree<String, Integer> original =
+                new RedBlackTree<String, Integer>();
+        for (int i = 0; i < 5000; i++) {
+            original.put("key" + i, i);
+        }
+
+        SnapshotWriter.write(original, file, Codecs.stringCodec(),
+                Codecs.integerCodec());
+        BinarySearchTree<String, Integer> loaded =
+                SnapshotReader.load(file, Codecs.stringCodec(),
+                        Codecs.integerCodec());
+
+        assertEquals("size() failed after loading", 5000, loaded.size());
+        Iterator<DictionaryEntry<String, Integer>> it = loaded.iterator();
+        for (DictionaryEntry<String, Integer> entry : original) {
+            DictionaryEntry<String, Integer> copy = it.next();
+            assertEquals("loaded key differs", entry.getKey(), copy.getKey());
+            assertEquals("loaded value differs", entry.getValue(),
+                    copy.getValue());
+        }
+        assertTrue("loaded tree is not balanced", loaded.stats()
+                .getHeight() == TreeStats.minimumHeight(5000));
+    }
+
+    @Test
+    public void testEntriesLargerThanBuffer() throws IOException {
+        SnapshotWriter<Integer, String> writer =
+                new SnapshotWriter<Integer, String>(file,
+                        Codecs.integerCodec(), Codecs.stringCodec(),
+                        BUFFER_SIZE);
+        String value = "";
+        for (int i = 0; i < 100; i++) {
+            writer.write(i, value);
+            value += "Skimbleshanks";
+        }
+        writer.close();
+
+        SnapshotReader<Integer, String> reader =
+                new SnapshotReader<Integer, String>(file,
+                        Codecs.integerCodec(), Codecs.stringCodec(),
+                        BUFFER_SIZE);
+        try {
+            assertEquals("size() failed", 100, reader.size());
+            value = "";
+            for (int i = 0; i < 100; i++) {
+                DictionaryEntry<Integer, String> entry = reader.next();
+                assertEquals("key failed", (Integer) i, entry.getKey());
+                assertEquals("value failed", value, entry.getValue());
+                value += "Skimbleshanks";
+            }
+            assertFalse("reader ran past the last entry", reader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        SnapshotWriter.write(new BinarySearchTree<String, Integer>(), file,
+                Codecs.stringCodec(), Codecs.integerCodec());
+        BinarySearchTree<String, Integer> loaded =
+                SnapshotReader.load(file, Codecs.stringCodec(),
+                        Codecs.integerCodec());
+        assertTrue("empty snapshot loaded entries", loaded.isEmpty());
+    }
+
+    @Test
+    public void testLoadInto() throws IOException {
+        BinarySearchTree<Integer, Integer> saved =
+                new BinarySearchTree<Integer, Integer>();
+        for (int i = 0; i < 100; i += 2) {
+            saved.put(i, i);
+        }
+        SnapshotWriter.write(saved, file, Codecs.integerCodec(),
+                Codecs.integerCodec());
+
+        BinarySearchTree<Integer, Integer> tree =
+                new BinarySearchTree<Integer, Integer>();
+        SkipListDictionary<Integer, Integer> list =
+                new SkipListDictionary<Integer, Integer>();
+        for (int i = 0; i < 100; i += 3) {
+            tree.put(i, -i);
+            list.put(i, -i);
+        }
+        SnapshotReader.loadInto(file, tree, Codecs.integerCodec(),
+                Codecs.integerCodec());
+        SnapshotReader.loadInto(file, list, Codecs.integerCodec(),
+                Codecs.integerCodec());
+
+        checkMerged(tree);
+        checkMerged(list);
+        checkRanks(tree);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWriterRejectsUnsortedKeys() throws IOException {
+        SnapshotWriter<String, Integer> writer =
+                new SnapshotWriter<String, Integer>(file,
+                        Codecs.stringCodec(), Codecs.integerCodec());
+        try {
+            writer.write("Rumpleteazer", 1);
+            writer.write("Mungojerrie", 2);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnfinishedSnapshotIsRejected() throws IOException {
+        SnapshotWriter<String, Integer> writer =
+                new SnapshotWriter<String, Integer>(file,
+                        Codecs.stringCodec(), Codecs.integerCodec());
+        writer.write("Rumpleteazer", 1);
+        writer.abort();
+
+        new SnapshotReader<String, Integer>(file, Codecs.stringCodec(),
+                Codecs.integerCodec());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testTruncatedSnapshot() throws IOException {
+        SnapshotWriter<String, Integer> writer =
+                new SnapshotWriter<String, Integer>(file,
+                        Codecs.stringCodec(), Codecs.integerCodec());
+        writer.write("Mungojerrie", 1);
+        writer.write("Rumpleteazer", 2);
+        writer.close();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 2);
+        raf.close();
+
+        SnapshotReader<String, Integer> reader =
+                new SnapshotReader<String, Integer>(file,
+                        Codecs.stringCodec(), Codecs.integerCodec());
+        try {
+            reader.next();
+            reader.next();
+        } finally {
+            reader.close();
+        }
+    }
+
+    // Checks the even keys below 100 were loaded over the multiples of 3.
+    private static void checkMerged(Dictionary<Integer, Integer> d) {
+        assertEquals("size() failed after loading", 67, d.size());
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                assertEquals("loaded value missing", (Integer) i, d.get(i));
+            } else if (i % 3 == 0) {
+                assertEquals("existing value lost", (Integer) (-i), d.get(i));
+            }
+        }
+    }
+
+    private static void checkRanks(BinarySearchTree<Integer, Integer> tree) {
+        int index = 0;
+        for (DictionaryEntry<Integer, Integer> entry : tree) {
+            assertEquals("rank() failed", index++, tree.rank(entry.getKey()));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestSynchronizedDictionary extends TestDictionary {
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 2000;
+
+    @Override
+    public void setUp() {
+        d =
+                new SynchronizedDictionary<String, Integer>(
+                        new BinarySearchTree<String, Integer>());
+    }
+
+    @Override
+    public void tearDown() {
+        d = null;
+    }
+
+    // Iterators run over a snapshot, so later updates are not visible.
+    @Override
+    @Test
+    public void testListIteratorConcurrent() {
+        List<String> cats = Arrays.asList("Bustopher", "Gus", "Skimbleshanks");
+
+        for (int i = 0; i < cats.size(); i++) {
+            d.put(cats.get(i), i);
+        }
+
+        Iterator<DictionaryEntry<String, Integer>> it = d.iterator();
+
+        d.remove("Bustopher");
+
+        for (String cat : cats) {
+            assertEquals("Snapshot iterator returned the wrong element", cat,
+                    it.next().getKey());
+        }
+        assertFalse("Iterator hasNext() failed at the end of the snapshot",
+                it.hasNext());
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() throws Exception {
+        checkConcurrentReadersAndWriters(
+                new BinarySearchTree<Integer, Integer>());
+    }
+
+    // Reads of a dictionary that cannot bound its lookups take the lock.
+    @Test
+    public void testConcurrentReadersAndWritersLocked() throws Exception {
+        checkConcurrentReadersAndWriters(
+                new OrderedLinkedList<Integer, Integer>());
+    }
+
+    private void checkConcurrentReadersAndWriters(
+            Dictionary<Integer, Integer> inner) throws Exception {
+        final SynchronizedDictionary<Integer, Integer> dict =
+                new SynchronizedDictionary<Integer, Integer>(inner);
+        for (int i = 0; i < KEYS; i += 2) {
+            dict.put(i, i);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int t = 0; t < THREADS; t++) {
+            final boolean writer = t == 0;
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < KEYS; i++) {
+                        if (writer) {
+                            dict.put(i, i);
+                        } else if (i % 2 == 0) {
+                            // Even keys are present throughout.
+                            assertEquals("get() failed under concurrent puts",
+                                    (Integer) i, dict.get(i));
+                        } else {
+                            try {
+                                assertEquals("get() returned the wrong value",
+                                        (Integer) i, dict.get(i));
+                            } catch (NoSuchElementException e) {
+                                // Not yet written.
+                            }
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        pool.shutdown();
+
+        assertEquals("size() failed after concurrent updates", KEYS,
+                dict.size());
+    }
+
+}